@@ -0,0 +1,57 @@
+package dev.pyro.homepoints.benchmark;
+
+import dev.pyro.homepoints.data.Home;
+import dev.pyro.homepoints.data.PlayerHomesData;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Deterministic home data shaped like a real server: a few common words as name prefixes, most
+ * homes in the overworld and coordinates within a few thousand blocks of spawn.
+ */
+final class HomeFixtures {
+    static final String[] WORDS = {"base", "farm", "mine", "portal", "village", "spawn", "nether", "tower",
+            "castle", "shop", "storage", "bed", "camp", "island", "temple", "outpost"};
+
+    private static final RegistryKey<World>[] DIMENSIONS = dimensions();
+
+    private HomeFixtures() {
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RegistryKey<World>[] dimensions() {
+        return new RegistryKey[]{World.OVERWORLD, World.OVERWORLD, World.OVERWORLD, World.NETHER, World.END};
+    }
+
+    static UUID playerId(Random random) {
+        return new UUID(random.nextLong(), random.nextLong());
+    }
+
+    static String homeName(Random random, int index) {
+        return WORDS[random.nextInt(WORDS.length)] + "_" + index;
+    }
+
+    static Home home(Random random, String name, String owner) {
+        return new Home(
+                name,
+                new BlockPos(random.nextInt(8000) - 4000, random.nextInt(256) - 64, random.nextInt(8000) - 4000),
+                DIMENSIONS[random.nextInt(DIMENSIONS.length)],
+                random.nextFloat() * 360 - 180,
+                random.nextFloat() * 180 - 90,
+                owner
+        );
+    }
+
+    static PlayerHomesData player(Random random, UUID playerUUID, int homes) {
+        PlayerHomesData data = new PlayerHomesData();
+        String owner = playerUUID.toString();
+        for (int i = 0; i < homes; i++) {
+            data.setHome(home(random, homeName(random, i), owner));
+        }
+        return data;
+    }
+}
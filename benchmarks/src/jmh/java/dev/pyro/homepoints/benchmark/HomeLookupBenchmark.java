@@ -0,0 +1,70 @@
+package dev.pyro.homepoints.benchmark;
+
+import dev.pyro.homepoints.config.HomePointsConfig;
+import dev.pyro.homepoints.data.Home;
+import dev.pyro.homepoints.data.HomeNameIndex;
+import dev.pyro.homepoints.data.PlayerHomesData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups a player's own commands do: finding a home by name, and tab completing a partly typed
+ * name. Runs with both the map-backed and the packed home store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HomeLookupBenchmark {
+    @Param({"10", "100"})
+    public int homes;
+
+    @Param({"false", "true"})
+    public boolean compactHomes;
+
+    private PlayerHomesData data;
+    private String[] names;
+    private int next;
+
+    @Setup
+    public void setup() {
+        HomePointsConfig.compactHomes = compactHomes;
+        Random random = new Random(42);
+        data = HomeFixtures.player(random, UUID.randomUUID(), homes);
+
+        List<String> homeNames = new ArrayList<>(data.getHomeNames());
+        names = homeNames.toArray(new String[0]);
+        data.getNameIndex();
+    }
+
+    @Benchmark
+    public Home getHome() {
+        return data.getHome(names[(next++ & Integer.MAX_VALUE) % names.length]);
+    }
+
+    @Benchmark
+    public Home getMissingHome() {
+        return data.getHome("missing_home");
+    }
+
+    @Benchmark
+    public List<String> suggestEmpty() {
+        return data.getNameIndex().startingWith("", HomeNameIndex.MAX_SUGGESTIONS);
+    }
+
+    @Benchmark
+    public List<String> suggestPrefix() {
+        return data.getNameIndex().startingWith("ba", HomeNameIndex.MAX_SUGGESTIONS);
+    }
+}
@@ -0,0 +1,180 @@
+package dev.pyro.homepoints.benchmark;
+
+import dev.pyro.homepoints.data.Home;
+import dev.pyro.homepoints.data.HomesCodec;
+import dev.pyro.homepoints.data.PlayerHomesData;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.nbt.NbtSizeTracker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding the whole homes file, the way a save and a world load do, in the legacy
+ * format 1 and the current format 2, plus the per-home NBT format still used by legacy files and
+ * shards. The raw and compressed size of the file is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HomesCodecBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int players;
+
+    @Param({"5", "50"})
+    public int homesPerPlayer;
+
+    @Param({"1", "2"})
+    public int format;
+
+    private Map<UUID, PlayerHomesData> playerData;
+    private List<Home> homes;
+    private List<NbtCompound> legacyHomes;
+    private NbtCompound file;
+    private byte[] compressedFile;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(42);
+        playerData = new LinkedHashMap<>();
+        homes = new ArrayList<>();
+        for (int i = 0; i < players; i++) {
+            UUID playerUUID = HomeFixtures.playerId(random);
+            PlayerHomesData data = HomeFixtures.player(random, playerUUID, homesPerPlayer);
+            playerData.put(playerUUID, data);
+            homes.addAll(data.getHomes());
+        }
+
+        legacyHomes = new ArrayList<>(homes.size());
+        for (Home home : homes) {
+            legacyHomes.add(home.toNbt());
+        }
+        file = encodeFile();
+        compressedFile = compress(file);
+        System.out.printf("%nformat %d, %d x %d homes: %d bytes, %d bytes compressed%n",
+                format, players, homesPerPlayer, uncompressedSize(file), compressedFile.length);
+    }
+
+    @Benchmark
+    public NbtCompound encode() {
+        return encodeFile();
+    }
+
+    @Benchmark
+    public byte[] encodeAndCompress() throws IOException {
+        return compress(encodeFile());
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole) {
+        decodeFile(file, blackhole);
+    }
+
+    @Benchmark
+    public void decompressAndDecode(Blackhole blackhole) throws IOException {
+        decodeFile(NbtIo.readCompressed(new ByteArrayInputStream(compressedFile), NbtSizeTracker.ofUnlimitedBytes()),
+                blackhole);
+    }
+
+    @Benchmark
+    public void homeToNbt(Blackhole blackhole) {
+        for (Home home : homes) {
+            blackhole.consume(home.toNbt());
+        }
+    }
+
+    @Benchmark
+    public void homeFromNbt(Blackhole blackhole) {
+        for (NbtCompound nbt : legacyHomes) {
+            blackhole.consume(Home.fromNbt(nbt));
+        }
+    }
+
+    private NbtCompound encodeFile() {
+        if (format == HomesCodec.LEGACY_FORMAT) {
+            return encodeLegacyFile();
+        }
+
+        HomesCodec.DimensionTable dimensions = new HomesCodec.DimensionTable();
+        HomesCodec.OwnerTable owners = new HomesCodec.OwnerTable();
+        NbtList playerList = new NbtList();
+        for (Map.Entry<UUID, PlayerHomesData> entry : playerData.entrySet()) {
+            playerList.add(HomesCodec.encodePlayer(entry.getKey(), entry.getValue(), dimensions, owners));
+        }
+
+        NbtCompound nbt = new NbtCompound();
+        nbt.put("players", playerList);
+        nbt.put("public", HomesCodec.encodeHomes(List.of(), null, dimensions, owners));
+        HomesCodec.writeHeader(nbt, dimensions, owners);
+        return nbt;
+    }
+
+    private NbtCompound encodeLegacyFile() {
+        NbtList playerList = new NbtList();
+        for (Map.Entry<UUID, PlayerHomesData> entry : playerData.entrySet()) {
+            NbtCompound playerNbt = new NbtCompound();
+            playerNbt.putString("uuid", entry.getKey().toString());
+            playerNbt.put("data", entry.getValue().toNbt());
+            playerList.add(playerNbt);
+        }
+
+        NbtCompound publicNbt = new NbtCompound();
+        publicNbt.put("publicHomes", new NbtList());
+        NbtCompound nbt = new NbtCompound();
+        nbt.put("playerHomes", playerList);
+        nbt.put("publicHomes", publicNbt);
+        return nbt;
+    }
+
+    private static void decodeFile(NbtCompound nbt, Blackhole blackhole) {
+        if (HomesCodec.getFormat(nbt) == HomesCodec.LEGACY_FORMAT) {
+            NbtList playerList = nbt.getList("playerHomes");
+            for (int i = 0; i < playerList.size(); i++) {
+                NbtCompound playerNbt = playerList.getCompound(i);
+                blackhole.consume(UUID.fromString(playerNbt.getString("uuid")));
+                blackhole.consume(PlayerHomesData.fromNbt(playerNbt.getCompound("data")));
+            }
+            return;
+        }
+
+        HomesCodec.DimensionTable dimensions = new HomesCodec.DimensionTable().readFrom(nbt);
+        HomesCodec.OwnerTable owners = new HomesCodec.OwnerTable().readFrom(nbt);
+        NbtList playerList = nbt.getList("players");
+        for (int i = 0; i < playerList.size(); i++) {
+            NbtCompound playerNbt = playerList.getCompound(i);
+            blackhole.consume(HomesCodec.decodePlayer(playerNbt, HomesCodec.readPlayerId(playerNbt), dimensions, owners));
+        }
+    }
+
+    private static int uncompressedSize(NbtCompound nbt) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NbtIo.write(nbt, new DataOutputStream(out));
+        return out.size();
+    }
+
+    private static byte[] compress(NbtCompound nbt) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NbtIo.writeCompressed(nbt, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,119 @@
+package dev.pyro.homepoints.benchmark;
+
+import dev.pyro.homepoints.config.HomePointsConfig;
+import dev.pyro.homepoints.data.Home;
+import dev.pyro.homepoints.data.HomeSpatialIndex;
+import dev.pyro.homepoints.data.PlayerHomesData;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.ref.Reference;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Heap kept by every player's homes: the player stores, map-backed or packed (storage.compactHomes),
+ * and the spatial index that covers every player whether they're cached or not. Sizes are used heap
+ * after a full GC, so this runs in its own JVM with a fixed heap instead of under JMH:
+ * ./gradlew :benchmarks:homesFootprint
+ * <p>
+ * Every column includes the home names and player ids, which are kept whatever the layout. "index"
+ * is what a player costs once only the index holds them; the last two columns are a cached player.
+ */
+public final class HomesFootprint {
+    private static final int[] PLAYERS = {10_000, 100_000};
+    private static final int[] HOMES = {10, 50};
+    private static final long SEED = 42;
+
+    private HomesFootprint() {
+    }
+
+    public static void main(String[] args) {
+        System.out.printf("%-9s %-6s %10s %10s %10s %10s %12s %15s%n",
+                "players", "homes", "names", "index", "map", "packed", "map + index", "packed + index");
+        for (int players : PLAYERS) {
+            for (int homes : HOMES) {
+                // Collecting only from inside measure() can still find the previous row reachable.
+                usedHeap();
+                measure(players, homes);
+            }
+        }
+    }
+
+    private static void measure(int playerCount, int homeCount) {
+        long before = usedHeap();
+        Random random = new Random(SEED);
+        UUID[] players = new UUID[playerCount];
+        String[][] names = new String[playerCount][homeCount];
+        for (int player = 0; player < playerCount; player++) {
+            players[player] = HomeFixtures.playerId(random);
+            for (int home = 0; home < homeCount; home++) {
+                names[player][home] = HomeFixtures.homeName(random, home);
+            }
+        }
+        long namesSize = usedHeap() - before;
+
+        long[] map = measureStores(players, names, false);
+        long[] packed = measureStores(players, names, true);
+
+        System.out.printf("%-9d %-6d %10s %10s %10s %10s %12s %15s%n", playerCount, homeCount,
+                megabytes(namesSize), megabytes(namesSize + packed[1]),
+                megabytes(namesSize + map[0]), megabytes(namesSize + packed[0]),
+                megabytes(namesSize + map[0] + map[1]), megabytes(namesSize + packed[0] + packed[1]));
+        Reference.reachabilityFence(players);
+        Reference.reachabilityFence(names);
+    }
+
+    /**
+     * Loads every player into the chosen store and then indexes them the way the manager does.
+     * Returns the heap taken by the stores and by the index, without the names they share.
+     */
+    private static long[] measureStores(UUID[] players, String[][] names, boolean compactHomes) {
+        HomePointsConfig.compactHomes = compactHomes;
+        Random random = new Random(SEED);
+        long before = usedHeap();
+        PlayerHomesData[] stores = new PlayerHomesData[players.length];
+        for (int player = 0; player < players.length; player++) {
+            PlayerHomesData data = new PlayerHomesData();
+            String owner = players[player].toString();
+            for (String name : names[player]) {
+                data.setHome(HomeFixtures.home(random, name, owner));
+            }
+            stores[player] = data;
+        }
+        long storesSize = usedHeap() - before;
+
+        HomeSpatialIndex index = new HomeSpatialIndex();
+        for (int player = 0; player < players.length; player++) {
+            for (Home home : stores[player].getHomes()) {
+                index.add(players[player], home);
+            }
+        }
+        long indexSize = usedHeap() - before - storesSize;
+        Reference.reachabilityFence(stores);
+        Reference.reachabilityFence(index);
+        return new long[]{storesSize, indexSize};
+    }
+
+    /**
+     * Heap in use right after a full GC, as the collector saw it; anything allocated after the
+     * collection doesn't count.
+     */
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getCollectionUsage() != null) {
+                used += pool.getCollectionUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,80 @@
+package dev.pyro.homepoints.benchmark;
+
+import dev.pyro.homepoints.data.Home;
+import dev.pyro.homepoints.data.HomeNameIndex;
+import dev.pyro.homepoints.data.HomeSpatialIndex;
+import dev.pyro.homepoints.data.PublicHomesData;
+import net.minecraft.world.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries against the shared public homes: completion, search, per-owner listing and the nearest
+ * home lookup used by {@code /phome nearest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PublicHomeDirectoryBenchmark {
+    private static final int OWNERS = 200;
+
+    @Param({"1000", "10000"})
+    public int publicHomes;
+
+    private PublicHomesData data;
+    private HomeSpatialIndex spatialIndex;
+    private String owner;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        String[] owners = new String[OWNERS];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = HomeFixtures.playerId(random).toString();
+        }
+
+        data = new PublicHomesData();
+        spatialIndex = new HomeSpatialIndex();
+        for (int i = 0; i < publicHomes; i++) {
+            Home home = HomeFixtures.home(random, HomeFixtures.homeName(random, i), owners[random.nextInt(OWNERS)]);
+            data.setPublicHome(home);
+            spatialIndex.add(null, home);
+        }
+        owner = owners[0];
+    }
+
+    @Benchmark
+    public List<String> suggestPrefix() {
+        return data.getNameIndex().startingWith("ca", HomeNameIndex.MAX_SUGGESTIONS);
+    }
+
+    @Benchmark
+    public List<String> searchSubstring() {
+        return data.search("ill", PublicHomesData.MAX_SEARCH_RESULTS);
+    }
+
+    @Benchmark
+    public List<String> searchShort() {
+        return data.search("_7", PublicHomesData.MAX_SEARCH_RESULTS);
+    }
+
+    @Benchmark
+    public List<String> homesOfOwner() {
+        return data.getPublicHomeNamesOf(owner);
+    }
+
+    @Benchmark
+    public HomeSpatialIndex.Entry nearest() {
+        return spatialIndex.nearest(World.OVERWORLD, 123.5, -456.5);
+    }
+}
@@ -1,10 +1,28 @@
 package dev.pyro.homepoints;
 
+import dev.pyro.homepoints.commands.AdminCommands;
 import dev.pyro.homepoints.commands.HomeCommands;
+import dev.pyro.homepoints.commands.LoadTestCommand;
 import dev.pyro.homepoints.commands.PublicHomeCommands;
+import dev.pyro.homepoints.commands.RateLimits;
 import dev.pyro.homepoints.commands.ShareHomeCommand;
+import dev.pyro.homepoints.commands.StatsCommand;
+import dev.pyro.homepoints.config.HomePointsConfig;
+import dev.pyro.homepoints.data.HomesImport;
+import dev.pyro.homepoints.data.HomesManager;
+import dev.pyro.homepoints.loadtest.LoadTest;
+import dev.pyro.homepoints.metrics.Metrics;
+import dev.pyro.homepoints.metrics.PrometheusExporter;
+import dev.pyro.homepoints.share.ShareRequests;
+import dev.pyro.homepoints.teleport.HomeTeleporter;
+import dev.pyro.homepoints.teleport.TeleportTimers;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.fabricmc.fabric.api.entity.event.v1.ServerLivingEntityEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.server.network.ServerPlayerEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,12 +33,69 @@ public class HomePoints implements ModInitializer {
 
     @Override
     public void onInitialize() {
+        HomePointsConfig.load();
         LOGGER.info("Home Points mod initialized!");
 
+        Metrics.gauge("teleports.queued", HomeTeleporter::getQueuedCount);
+        Metrics.gauge("shares.pending", ShareRequests::getPendingCount);
+        Metrics.gauge("teleports.timers", TeleportTimers::getActiveCount);
+
+        ServerLifecycleEvents.SERVER_STARTED.register(server -> {
+            HomesManager.get(server);
+            if (HomePointsConfig.metricsPrometheusPort > 0) {
+                PrometheusExporter.start(HomePointsConfig.metricsPrometheusPort);
+            }
+            if (HomePointsConfig.loadtestAutostart) {
+                try {
+                    LoadTest.start(server, null, HomePointsConfig.loadtestPlayers,
+                            HomePointsConfig.loadtestCommandsPerSecond, HomePointsConfig.loadtestDurationSeconds, true);
+                } catch (IllegalArgumentException e) {
+                    LOGGER.error("Can't start the load test: {}", e.getMessage());
+                }
+            }
+        });
+        ServerLifecycleEvents.BEFORE_SAVE.register((server, flush, force) -> LoadTest.onBeforeSave(server));
+        ServerLifecycleEvents.BEFORE_SAVE.register((server, flush, force) -> HomesManager.get(server).save());
+        ServerLifecycleEvents.AFTER_SAVE.register((server, flush, force) -> LoadTest.onAfterSave(server));
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            LoadTest.clear();
+            HomesImport.clear();
+            PrometheusExporter.stop();
+            HomeTeleporter.clear();
+            TeleportTimers.clear();
+            ShareRequests.clear();
+            HomesManager.unload(server);
+        });
+        ServerTickEvents.START_SERVER_TICK.register(LoadTest::onTickStart);
+        ServerTickEvents.END_SERVER_TICK.register(TeleportTimers::tick);
+        ServerTickEvents.END_SERVER_TICK.register(HomeTeleporter::tick);
+        ServerTickEvents.END_SERVER_TICK.register(ShareRequests::tick);
+        ServerTickEvents.END_SERVER_TICK.register(HomesImport::tick);
+        ServerTickEvents.END_SERVER_TICK.register(server -> HomesManager.get(server).getBackups().tick());
+        ServerTickEvents.END_SERVER_TICK.register(LoadTest::onTickEnd);
+
+        ServerPlayConnectionEvents.JOIN.register((handler, sender, server) ->
+                HomesManager.get(server).onPlayerJoin(handler.getPlayer().getUuid()));
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+            HomeTeleporter.cancel(handler.getPlayer().getUuid());
+            TeleportTimers.removePlayer(handler.getPlayer().getUuid());
+            RateLimits.removePlayer(handler.getPlayer());
+            ShareRequests.removePlayer(handler.getPlayer().getUuid());
+            HomesManager.get(server).onPlayerLeave(handler.getPlayer().getUuid());
+        });
+        ServerLivingEntityEvents.AFTER_DAMAGE.register((entity, source, baseDamageTaken, damageTaken, blocked) -> {
+            if (!blocked && damageTaken > 0 && entity instanceof ServerPlayerEntity player) {
+                TeleportTimers.onDamaged(player);
+            }
+        });
+
         CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) -> {
             HomeCommands.register(dispatcher);
             PublicHomeCommands.register(dispatcher);
             ShareHomeCommand.register(dispatcher);
+            AdminCommands.register(dispatcher);
+            StatsCommand.register(dispatcher);
+            LoadTestCommand.register(dispatcher);
 
             LOGGER.info("Home Points commands registered successfully!");
         });
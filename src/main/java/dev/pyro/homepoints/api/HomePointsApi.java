@@ -0,0 +1,53 @@
+package dev.pyro.homepoints.api;
+
+import dev.pyro.homepoints.data.Home;
+import dev.pyro.homepoints.data.HomesViews;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Read-only access to homes for other mods and for code running off the server thread. Every method
+ * may be called from any thread. Results are immutable snapshots that don't change after they are
+ * returned; call again to see later changes.
+ * <p>
+ * Once a player's view has been built, {@link #homesOf(UUID)} is a single concurrent map lookup
+ * that returns the same object until their homes change. The first call for a player builds the
+ * view on the server thread, so a caller on another thread may wait up to a tick for it.
+ */
+public final class HomePointsApi {
+    private HomePointsApi() {
+    }
+
+    /**
+     * Returns whether a server with loaded homes is running. All other methods return empty
+     * results while this is {@code false}.
+     */
+    public static boolean isAvailable() {
+        return HomesViews.current() != null;
+    }
+
+    public static HomesView homesOf(UUID playerUUID) {
+        HomesViews views = HomesViews.current();
+        return views != null ? views.homesOf(playerUUID) : HomesView.EMPTY;
+    }
+
+    public static Home homeOf(UUID playerUUID, String name) {
+        return homesOf(playerUUID).get(name);
+    }
+
+    public static Home publicHome(String name) {
+        HomesViews views = HomesViews.current();
+        return views != null ? views.publicHome(name) : null;
+    }
+
+    /**
+     * Returns the public homes as an unmodifiable collection that follows later changes. Each home
+     * in it is immutable.
+     */
+    public static Collection<Home> publicHomes() {
+        HomesViews views = HomesViews.current();
+        return views != null ? views.publicHomes() : List.of();
+    }
+}
@@ -0,0 +1,65 @@
+package dev.pyro.homepoints.api;
+
+import dev.pyro.homepoints.data.Home;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of one player's homes. Safe to keep and read from any thread; it never
+ * changes, a new view is published instead when the player's homes change.
+ */
+public final class HomesView {
+    public static final HomesView EMPTY = new HomesView(Map.of(), List.of());
+
+    private static final Comparator<Home> ORDER = Comparator.comparing(Home::getName, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(Home::getName);
+
+    private final Map<String, Home> byName;
+    private final List<Home> homes;
+
+    private HomesView(Map<String, Home> byName, List<Home> homes) {
+        this.byName = byName;
+        this.homes = homes;
+    }
+
+    public static HomesView of(Collection<Home> homes) {
+        if (homes.isEmpty()) {
+            return EMPTY;
+        }
+        Home[] sorted = homes.toArray(new Home[0]);
+        Arrays.sort(sorted, ORDER);
+        Map<String, Home> byName = HashMap.newHashMap(sorted.length);
+        for (Home home : sorted) {
+            byName.put(home.getName(), home);
+        }
+        return new HomesView(Map.copyOf(byName), List.of(sorted));
+    }
+
+    /**
+     * Returns the homes sorted by name, ignoring case. The list is unmodifiable.
+     */
+    public List<Home> homes() {
+        return homes;
+    }
+
+    public Home get(String name) {
+        return byName.get(name);
+    }
+
+    public boolean contains(String name) {
+        return byName.containsKey(name);
+    }
+
+    public int size() {
+        return homes.size();
+    }
+
+    public boolean isEmpty() {
+        return homes.isEmpty();
+    }
+}
@@ -0,0 +1,408 @@
+package dev.pyro.homepoints.commands;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.suggestion.SuggestionProvider;
+import dev.pyro.homepoints.data.Home;
+import dev.pyro.homepoints.data.HomeSpatialIndex;
+import dev.pyro.homepoints.data.HomesExport;
+import dev.pyro.homepoints.data.HomesImport;
+import dev.pyro.homepoints.data.HomesManager;
+import dev.pyro.homepoints.data.HomesMigration;
+import dev.pyro.homepoints.data.PlayerHomesData;
+import dev.pyro.homepoints.share.ShareRequests;
+import dev.pyro.homepoints.teleport.HomeTeleporter;
+import dev.pyro.homepoints.teleport.TeleportStats;
+import dev.pyro.homepoints.teleport.TeleportTimers;
+import dev.pyro.homepoints.transfer.TransferFiles;
+import dev.pyro.homepoints.transfer.TransferFormat;
+import dev.pyro.homepoints.util.Messages;
+import net.minecraft.command.argument.EntityArgumentType;
+import net.minecraft.command.argument.TeamArgumentType;
+import net.minecraft.scoreboard.Team;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+import net.minecraft.util.math.Vec3d;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+
+public class AdminCommands {
+    private static final int MAX_LISTED_HOMES = 20;
+    private static final SuggestionProvider<ServerCommandSource> SUGGEST_BACKUPS = (context, builder) -> {
+        for (String timestamp : HomesManager.get(context.getSource().getServer()).getBackups().getTimestamps()) {
+            if (timestamp.startsWith(builder.getRemaining())) {
+                builder.suggest(timestamp);
+            }
+        }
+        return builder.buildFuture();
+    };
+
+    public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("homesadmin")
+                .requires(source -> source.hasPermissionLevel(2))
+                .then(CommandManager.literal("within")
+                        .then(CommandManager.argument("radius", IntegerArgumentType.integer(1))
+                                .executes(AdminCommands::listHomesWithin)
+                        )
+                )
+                .then(CommandManager.literal("send")
+                        .then(CommandManager.literal("players")
+                                .then(CommandManager.argument("targets", EntityArgumentType.players())
+                                        .then(CommandManager.argument("name", StringArgumentType.word())
+                                                .suggests(PublicHomeCommands.SUGGEST_PUBLIC_HOMES)
+                                                .executes(context -> sendToPublicHome(context,
+                                                        EntityArgumentType.getPlayers(context, "targets")))
+                                        )
+                                )
+                        )
+                        .then(CommandManager.literal("team")
+                                .then(CommandManager.argument("team", TeamArgumentType.team())
+                                        .then(CommandManager.argument("name", StringArgumentType.word())
+                                                .suggests(PublicHomeCommands.SUGGEST_PUBLIC_HOMES)
+                                                .executes(context -> sendToPublicHome(context,
+                                                        onlineMembers(context, TeamArgumentType.getTeam(context, "team"))))
+                                        )
+                                )
+                        )
+                )
+                .then(CommandManager.literal("teleports")
+                        .executes(AdminCommands::showTeleportQueue)
+                )
+                .then(CommandManager.literal("shares")
+                        .executes(AdminCommands::showShareRequests)
+                )
+                .then(transferCommand("export", true))
+                .then(transferCommand("import", false))
+                .then(migrateCommand())
+                .then(CommandManager.literal("backup")
+                        .requires(source -> source.hasPermissionLevel(4))
+                        .executes(AdminCommands::backupHomes)
+                )
+                .then(CommandManager.literal("restore")
+                        .requires(source -> source.hasPermissionLevel(4))
+                        .then(CommandManager.argument("player", StringArgumentType.word())
+                                .suggests(PublicHomeCommands.SUGGEST_PLAYERS)
+                                .then(CommandManager.argument("timestamp", StringArgumentType.word())
+                                        .suggests(SUGGEST_BACKUPS)
+                                        .executes(AdminCommands::restoreHomes)
+                                )
+                        )
+                )
+        );
+    }
+
+    private static LiteralArgumentBuilder<ServerCommandSource> transferCommand(String name, boolean export) {
+        LiteralArgumentBuilder<ServerCommandSource> command = CommandManager.literal(name)
+                .requires(source -> source.hasPermissionLevel(4));
+        for (TransferFormat format : TransferFormat.values()) {
+            if (export && !format.isExportable()) {
+                continue;
+            }
+            command.then(CommandManager.literal(format.getKey())
+                    .then(CommandManager.argument("file", StringArgumentType.string())
+                            .executes(context -> export
+                                    ? exportHomes(context, format)
+                                    : importHomes(context, format))
+                    )
+            );
+        }
+        return command;
+    }
+
+    private static LiteralArgumentBuilder<ServerCommandSource> migrateCommand() {
+        LiteralArgumentBuilder<ServerCommandSource> command = CommandManager.literal("migrate")
+                .requires(source -> source.hasPermissionLevel(4));
+        for (HomesMigration.Target target : HomesMigration.Target.values()) {
+            command.then(CommandManager.literal(target.getKey())
+                    .executes(context -> migrateHomes(context, target))
+            );
+        }
+        return command;
+    }
+
+    private static int listHomesWithin(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        int radius = IntegerArgumentType.getInteger(context, "radius");
+        HomesManager manager = HomesManager.get(source.getServer());
+        Vec3d position = source.getPosition();
+        List<HomeSpatialIndex.Entry> homes = manager.getHomesWithin(source.getWorld().getRegistryKey(), position, radius);
+
+        if (!manager.isSpatialIndexComplete()) {
+            source.sendFeedback(() -> Messages.info("Stored players are still being indexed, results may be incomplete."), false);
+        }
+
+        if (homes.isEmpty()) {
+            source.sendFeedback(() -> Messages.info("No homes within " + radius + " blocks."), false);
+            return 0;
+        }
+
+        source.sendFeedback(() -> Text.literal("=== Homes within " + radius + " blocks (" + homes.size() + ") ===")
+                .formatted(Formatting.GOLD), false);
+
+        for (HomeSpatialIndex.Entry entry : homes.subList(0, Math.min(homes.size(), MAX_LISTED_HOMES))) {
+            int distance = (int) Math.sqrt(entry.squaredDistanceTo(position.x, position.z));
+            Text owner = entry.player() == null
+                    ? Text.literal("[public]").formatted(Formatting.GREEN)
+                    : Text.literal(playerName(source.getServer(), entry)).formatted(Formatting.GOLD);
+            source.sendFeedback(() -> Text.literal("  • ").formatted(Formatting.GRAY)
+                    .append(owner)
+                    .append(Text.literal(" ").formatted(Formatting.GRAY))
+                    .append(Text.literal(entry.name()).formatted(Formatting.AQUA))
+                    .append(Text.literal(" - ").formatted(Formatting.GRAY))
+                    .append(Text.literal(distance + " blocks").formatted(Formatting.YELLOW)), false);
+        }
+        if (homes.size() > MAX_LISTED_HOMES) {
+            source.sendFeedback(() -> Text.literal("  ... and " + (homes.size() - MAX_LISTED_HOMES) + " more")
+                    .formatted(Formatting.GRAY), false);
+        }
+
+        return homes.size();
+    }
+
+    private static String playerName(MinecraftServer server, HomeSpatialIndex.Entry entry) {
+        ServerPlayerEntity player = server.getPlayerManager().getPlayer(entry.player());
+        return player != null ? player.getName().getString() : entry.player().toString();
+    }
+
+    private static List<ServerPlayerEntity> onlineMembers(CommandContext<ServerCommandSource> context, Team team) {
+        List<ServerPlayerEntity> players = new ArrayList<>();
+        for (String name : team.getPlayerList()) {
+            ServerPlayerEntity player = context.getSource().getServer().getPlayerManager().getPlayer(name);
+            if (player != null) {
+                players.add(player);
+            }
+        }
+        return players;
+    }
+
+    private static int sendToPublicHome(CommandContext<ServerCommandSource> context,
+                                        Collection<ServerPlayerEntity> players) {
+        ServerCommandSource source = context.getSource();
+        String homeName = StringArgumentType.getString(context, "name");
+        Home home = HomesManager.get(source.getServer()).getPublicHome(homeName);
+
+        if (home == null) {
+            source.sendError(Messages.error("Public home '" + homeName + "' not found!"));
+            return 0;
+        }
+
+        ServerWorld targetWorld = source.getServer().getWorld(home.getDimension());
+        if (targetWorld == null) {
+            source.sendError(Messages.error("Target dimension not found!"));
+            return 0;
+        }
+
+        if (players.isEmpty()) {
+            source.sendError(Messages.error("No online players to send!"));
+            return 0;
+        }
+
+        for (ServerPlayerEntity player : players) {
+            HomeTeleporter.teleport(player, targetWorld, home,
+                    Messages.success("Teleported to public home '" + homeName + "'!"));
+        }
+
+        source.sendFeedback(() -> Messages.success("Queued " + players.size() + " players for public home '" +
+                homeName + "'!"), true);
+        return players.size();
+    }
+
+    private static int exportHomes(CommandContext<ServerCommandSource> context, TransferFormat format) {
+        ServerCommandSource source = context.getSource();
+        MinecraftServer server = source.getServer();
+        String fileName = StringArgumentType.getString(context, "file");
+
+        try {
+            Path file = TransferFiles.resolve(server, fileName);
+            HomesExport.start(server, file, format).whenComplete((result, error) -> server.execute(() -> {
+                if (error != null) {
+                    source.sendError(Messages.error("Export to '" + fileName + "' failed: " + error.getMessage()));
+                    return;
+                }
+                source.sendFeedback(() -> Messages.success("Exported " + result.homes() + " homes of "
+                        + result.players() + " players and " + result.publicHomes() + " public homes to '"
+                        + fileName + "' in " + result.durationNanos() / 1_000_000 + " ms."), true);
+            }));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            source.sendError(Messages.error(e.getMessage()));
+            return 0;
+        }
+
+        source.sendFeedback(() -> Messages.info("Exporting all homes to '" + fileName + "'..."), false);
+        return 1;
+    }
+
+    private static int importHomes(CommandContext<ServerCommandSource> context, TransferFormat format) {
+        ServerCommandSource source = context.getSource();
+        MinecraftServer server = source.getServer();
+        String fileName = StringArgumentType.getString(context, "file");
+
+        try {
+            Path path = TransferFiles.resolve(server, fileName);
+            if (!Files.exists(path)) {
+                source.sendError(Messages.error("'" + fileName + "' not found in " + TransferFiles.directory(server) + "!"));
+                return 0;
+            }
+            HomesImport.start(server, path, format).whenComplete((result, error) -> {
+                if (error instanceof CancellationException) {
+                    return;
+                }
+                if (error != null) {
+                    source.sendError(Messages.error("Import from '" + fileName + "' failed: " + error.getMessage()));
+                    return;
+                }
+                source.sendFeedback(() -> Messages.success("Imported " + result.homes() + " homes and "
+                        + result.publicHomes() + " public homes from '" + fileName + "' in "
+                        + result.durationNanos() / 1_000_000 + " ms."), true);
+                if (result.rejected() > 0 || result.skipped() > 0) {
+                    source.sendFeedback(() -> Messages.info(result.rejected() + " homes were over the limit of "
+                            + PlayerHomesData.MAX_HOMES + " per player, " + result.skipped()
+                            + " records were invalid (see the server log)."), false);
+                }
+            });
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            source.sendError(Messages.error(e.getMessage()));
+            return 0;
+        }
+
+        source.sendFeedback(() -> Messages.info("Importing homes from '" + fileName + "'..."), false);
+        return 1;
+    }
+
+    private static int migrateHomes(CommandContext<ServerCommandSource> context, HomesMigration.Target target) {
+        ServerCommandSource source = context.getSource();
+        MinecraftServer server = source.getServer();
+
+        try {
+            HomesMigration.start(server, target).whenComplete((result, error) -> server.execute(() -> {
+                if (error != null) {
+                    source.sendError(Messages.error("Copying homes to " + target.getKey() + " storage failed: "
+                            + error.getMessage()));
+                    return;
+                }
+                source.sendFeedback(() -> Messages.success("Copied " + result.homes() + " homes of "
+                        + result.players() + " players and " + result.publicHomes() + " public homes to "
+                        + target.getKey() + " storage in " + result.durationNanos() / 1_000_000 + " ms."), true);
+                source.sendFeedback(() -> Messages.info("Set storage.mode to "
+                        + switch (target) {
+                            case NBT -> "single, sharded or mapped";
+                            case SQL -> "sql";
+                            case MAPPED -> "mapped";
+                        }
+                        + " and restart the server to use it."), false);
+            }));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            source.sendError(Messages.error(e.getMessage()));
+            return 0;
+        }
+
+        source.sendFeedback(() -> Messages.info("Copying all homes to " + target.getKey() + " storage..."), false);
+        return 1;
+    }
+
+    private static int backupHomes(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        MinecraftServer server = source.getServer();
+
+        try {
+            HomesManager.get(server).getBackups().backup().whenComplete((backup, error) -> server.execute(() -> {
+                if (error != null) {
+                    source.sendError(Messages.error("Backup failed: " + error.getMessage()));
+                } else if (backup == null) {
+                    source.sendFeedback(() -> Messages.info("No homes changed since the last backup."), false);
+                } else {
+                    source.sendFeedback(() -> Messages.success("Backed up homes as " + backup.timestamp()
+                            + (backup.base() ? " (full)." : " (changes only).")), true);
+                }
+            }));
+        } catch (IllegalStateException e) {
+            source.sendError(Messages.error(e.getMessage()));
+            return 0;
+        }
+        return 1;
+    }
+
+    private static int restoreHomes(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        MinecraftServer server = source.getServer();
+        String playerName = StringArgumentType.getString(context, "player");
+        String timestamp = StringArgumentType.getString(context, "timestamp");
+
+        String owner = PublicHomeCommands.resolveOwner(server, playerName);
+        if (owner == null) {
+            source.sendError(Messages.error("Player '" + playerName + "' is not online, use their UUID instead!"));
+            return 0;
+        }
+        UUID playerUUID = UUID.fromString(owner);
+
+        try {
+            HomesManager.get(server).getBackups().read(playerUUID, timestamp).whenComplete((data, error) -> server.execute(() -> {
+                if (error != null) {
+                    source.sendError(Messages.error("Restore failed: " + error.getMessage()));
+                    return;
+                }
+                if (data == null) {
+                    source.sendError(Messages.error(playerName + " had no homes in that backup!"));
+                    return;
+                }
+                HomesManager.get(server).replacePlayerHomes(playerUUID, data);
+                source.sendFeedback(() -> Messages.success("Restored " + data.getHomeCount() + " homes of "
+                        + playerName + " from " + timestamp + "."), true);
+            }));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            source.sendError(Messages.error(e.getMessage()));
+            return 0;
+        }
+
+        source.sendFeedback(() -> Messages.info("Reading the backup..."), false);
+        return 1;
+    }
+
+    private static int showTeleportQueue(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        TeleportStats stats = HomeTeleporter.getStats();
+
+        source.sendFeedback(() -> Text.literal("=== Teleport Queue ===").formatted(Formatting.GOLD), false);
+        source.sendFeedback(() -> Messages.info("Queued: " + HomeTeleporter.getQueuedCount() + " players, " +
+                HomeTeleporter.getDestinationCount() + " destinations"), false);
+        source.sendFeedback(() -> Messages.info("Timers: " + TeleportTimers.getActiveCount() + " running, " +
+                TeleportTimers.getWarmupCount() + " warmups"), false);
+        source.sendFeedback(() -> Messages.info(String.format(Locale.ROOT,
+                "Tick time: %.3f ms last (%d moved), %.3f ms avg, %.3f ms max",
+                stats.getLastTickNanos() / 1e6, stats.getLastTickMoved(),
+                stats.getAverageTickNanos() / 1e6, stats.getMaxTickNanos() / 1e6)), false);
+        source.sendFeedback(() -> Messages.info(String.format(Locale.ROOT,
+                "Teleports: %d immediate, %d preloaded, %d timed out",
+                stats.getImmediate(), stats.getPreloaded(), stats.getTimedOut())), false);
+        source.sendFeedback(() -> Messages.info(String.format(Locale.ROOT,
+                "Chunk wait: %.1f ms last, %.1f ms avg, %.1f ms max",
+                stats.getLastWaitNanos() / 1e6, stats.getAverageWaitNanos() / 1e6, stats.getMaxWaitNanos() / 1e6)), false);
+        return HomeTeleporter.getQueuedCount();
+    }
+
+    private static int showShareRequests(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+
+        source.sendFeedback(() -> Text.literal("=== Share Requests ===").formatted(Formatting.GOLD), false);
+        source.sendFeedback(() -> Messages.info("Pending: " + ShareRequests.getPendingCount() + " requests from " +
+                ShareRequests.getSenderCount() + " senders to " + ShareRequests.getRecipientCount() + " recipients"), false);
+        source.sendFeedback(() -> Messages.info("Expired: " + ShareRequests.getExpiredCount() +
+                ", rejected by limits: " + ShareRequests.getRejectedCount()), false);
+        return ShareRequests.getPendingCount();
+    }
+}
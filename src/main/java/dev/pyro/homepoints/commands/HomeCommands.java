@@ -1,14 +1,17 @@
 package dev.pyro.homepoints.commands;
 
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.suggestion.SuggestionProvider;
 import dev.pyro.homepoints.data.Home;
+import dev.pyro.homepoints.data.HomeNameIndex;
+import dev.pyro.homepoints.data.HomeSpatialIndex;
 import dev.pyro.homepoints.data.HomesManager;
 import dev.pyro.homepoints.data.PlayerHomesData;
+import dev.pyro.homepoints.teleport.TeleportTimers;
 import dev.pyro.homepoints.util.Messages;
-import net.minecraft.command.CommandSource;
 import net.minecraft.registry.RegistryKey;
 import net.minecraft.server.command.CommandManager;
 import net.minecraft.server.command.ServerCommandSource;
@@ -17,44 +20,61 @@ import net.minecraft.server.world.ServerWorld;
 import net.minecraft.text.Text;
 import net.minecraft.util.Formatting;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.World;
 
-import java.util.Set;
+import java.util.List;
 
 public class HomeCommands {
+    private static final int DEFAULT_NEAR_RADIUS = 256;
+    private static final int MAX_NEAR_RADIUS = 10000;
+    private static final int MAX_LISTED_HOMES = 10;
 
-    private static final SuggestionProvider<ServerCommandSource> SUGGEST_HOMES = (context, builder) -> {
+    static final SuggestionProvider<ServerCommandSource> SUGGEST_HOMES = RateLimits.guardSuggestions("homes", (context, builder) -> {
         if (context.getSource().getEntity() instanceof ServerPlayerEntity player) {
             HomesManager manager = HomesManager.get(context.getSource().getServer());
-            PlayerHomesData data = manager.getPlayerData(player.getUuid());
-            return CommandSource.suggestMatching(data.getHomeNames(), builder);
+            PlayerHomesData data = manager.peekPlayerData(player.getUuid());
+            if (data != null) {
+                data.getNameIndex().startingWith(builder.getRemaining(), HomeNameIndex.MAX_SUGGESTIONS)
+                        .forEach(builder::suggest);
+            }
         }
         return builder.buildFuture();
-    };
+    });
 
     public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
         dispatcher.register(CommandManager.literal("sethome")
                 .then(CommandManager.argument("name", StringArgumentType.word())
-                        .executes(HomeCommands::setHome)
+                        .executes(RateLimits.guard("sethome", HomeCommands::setHome))
                 )
         );
 
         dispatcher.register(CommandManager.literal("delhome")
                 .then(CommandManager.argument("name", StringArgumentType.word())
                         .suggests(SUGGEST_HOMES)
-                        .executes(HomeCommands::deleteHome)
+                        .executes(RateLimits.guard("delhome", HomeCommands::deleteHome))
                 )
         );
 
         dispatcher.register(CommandManager.literal("home")
                 .then(CommandManager.argument("name", StringArgumentType.word())
                         .suggests(SUGGEST_HOMES)
-                        .executes(HomeCommands::teleportHome)
+                        .executes(RateLimits.guard("home", HomeCommands::teleportHome))
                 )
         );
 
         dispatcher.register(CommandManager.literal("homes")
-                .executes(HomeCommands::listHomes)
+                .executes(RateLimits.guard("homes", context -> listHomes(context, 1)))
+                .then(CommandManager.argument("page", IntegerArgumentType.integer(1))
+                        .executes(RateLimits.guard("homes", context -> listHomes(context, IntegerArgumentType.getInteger(context, "page"))))
+                )
+                .then(CommandManager.literal("near")
+                        .executes(RateLimits.guard("homes near", context -> listNearbyHomes(context, DEFAULT_NEAR_RADIUS)))
+                        .then(CommandManager.argument("radius", IntegerArgumentType.integer(1, MAX_NEAR_RADIUS))
+                                .executes(RateLimits.guard("homes near", context -> listNearbyHomes(context,
+                                        IntegerArgumentType.getInteger(context, "radius"))))
+                        )
+                )
         );
     }
 
@@ -136,51 +156,71 @@ public class HomeCommands {
             return 0;
         }
 
-        BlockPos pos = home.getPosition();
+        return TeleportTimers.request(player, TeleportTimers.Kind.HOME, targetWorld, home,
+                Messages.success("Teleported to home '" + homeName + "'!")) ? 1 : 0;
+    }
 
-        if (context.getSource().getWorld().getRegistryKey() == home.getDimension()) {
-            player.teleport(pos.getX() + 0.5, pos.getY(), pos.getZ() + 0.5, true);
-        } else {
-            player.teleport(targetWorld, pos.getX() + 0.5, pos.getY(), pos.getZ() + 0.5,
-                    Set.of(), home.getYaw(), home.getPitch(), true);
+    private static int listHomes(CommandContext<ServerCommandSource> context, int page) {
+        if (!(context.getSource().getEntity() instanceof ServerPlayerEntity player)) {
+            context.getSource().sendError(Messages.error("Only players can use this command!"));
+            return 0;
+        }
+
+        HomesManager manager = HomesManager.get(context.getSource().getServer());
+        PlayerHomesData data = manager.peekPlayerData(player.getUuid());
+
+        if (data == null || data.getHomeCount() == 0) {
+            player.sendMessage(Messages.info("You don't have any homes yet. Use /sethome <name> to create one!"));
+            return 0;
+        }
+
+        int pageCount = HomeListPages.pageCount(data.getHomeCount());
+        if (page > pageCount) {
+            player.sendMessage(Messages.error("Page " + page + " doesn't exist, you have " + pageCount + " pages of homes!"));
+            return 0;
         }
 
-        player.setYaw(home.getYaw());
-        player.setPitch(home.getPitch());
+        player.sendMessage(HomeListPages.get(data, data.getVersion(), page, pageCount, p -> HomeListPages.render(
+                "=== Your Homes (" + data.getHomeCount() + "/" + PlayerHomesData.MAX_HOMES + ") ===",
+                data.getNameIndex().startingWith("", PlayerHomesData.MAX_HOMES), data::getHome, p,
+                "/home", "/homes")));
 
-        player.sendMessage(Messages.success("Teleported to home '" + homeName + "'!"));
         return 1;
     }
 
-    private static int listHomes(CommandContext<ServerCommandSource> context) {
+    private static int listNearbyHomes(CommandContext<ServerCommandSource> context, int radius) {
         if (!(context.getSource().getEntity() instanceof ServerPlayerEntity player)) {
             context.getSource().sendError(Messages.error("Only players can use this command!"));
             return 0;
         }
 
         HomesManager manager = HomesManager.get(context.getSource().getServer());
-        PlayerHomesData data = manager.getPlayerData(player.getUuid());
-        Set<String> homeNames = data.getHomeNames();
+        Vec3d position = player.getEntityPos();
+        List<HomeSpatialIndex.Entry> homes = manager.getPlayerHomesWithin(player.getUuid(),
+                context.getSource().getWorld().getRegistryKey(), position, radius);
 
-        if (homeNames.isEmpty()) {
-            player.sendMessage(Messages.info("You don't have any homes yet. Use /sethome <name> to create one!"));
+        if (homes.isEmpty()) {
+            player.sendMessage(Messages.info("You don't have any homes within " + radius + " blocks."));
             return 0;
         }
 
-        player.sendMessage(Text.literal("=== Your Homes (" + homeNames.size() + "/" +
-                PlayerHomesData.MAX_HOMES + ") ===").formatted(Formatting.GOLD));
+        player.sendMessage(Text.literal("=== Homes within " + radius + " blocks (" + homes.size() + ") ===")
+                .formatted(Formatting.GOLD));
 
-        homeNames.forEach(name -> {
-            Home home = data.getHome(name);
-            String dimensionName = home.getDimension().getValue().getPath();
+        for (HomeSpatialIndex.Entry entry : homes.subList(0, Math.min(homes.size(), MAX_LISTED_HOMES))) {
+            int distance = (int) Math.sqrt(entry.squaredDistanceTo(position.x, position.z));
             player.sendMessage(
                     Text.literal("  • ").formatted(Formatting.GRAY)
-                            .append(Text.literal(name).formatted(Formatting.AQUA))
+                            .append(Text.literal(entry.name()).formatted(Formatting.AQUA))
                             .append(Text.literal(" - ").formatted(Formatting.GRAY))
-                            .append(Text.literal(dimensionName).formatted(Formatting.YELLOW))
+                            .append(Text.literal(distance + " blocks").formatted(Formatting.YELLOW))
             );
-        });
+        }
+        if (homes.size() > MAX_LISTED_HOMES) {
+            player.sendMessage(Text.literal("  ... and " + (homes.size() - MAX_LISTED_HOMES) + " more")
+                    .formatted(Formatting.GRAY));
+        }
 
-        return 1;
+        return homes.size();
     }
 }
\ No newline at end of file
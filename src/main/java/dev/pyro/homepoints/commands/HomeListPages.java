@@ -0,0 +1,97 @@
+package dev.pyro.homepoints.commands;
+
+import dev.pyro.homepoints.data.Home;
+import net.minecraft.text.ClickEvent;
+import net.minecraft.text.HoverEvent;
+import net.minecraft.text.MutableText;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Renders home listings as one message per page and keeps the rendered pages until the listed data
+ * changes. Pages are cached per data object and view, so they go away with evicted players.
+ */
+final class HomeListPages {
+    static final int PAGE_SIZE = 10;
+    static final Function<Home, String> DIMENSION = home -> home.getDimension().getValue().getPath();
+
+    private static final Map<Object, Map<String, CachedPages>> cache = new WeakHashMap<>();
+
+    private record CachedPages(int version, Text[] pages) {
+    }
+
+    private HomeListPages() {
+    }
+
+    static int pageCount(int homeCount) {
+        return Math.max(1, (homeCount + PAGE_SIZE - 1) / PAGE_SIZE);
+    }
+
+    static Text get(Object data, int version, int page, int pageCount, IntFunction<Text> renderer) {
+        return get(data, "", version, page, pageCount, renderer);
+    }
+
+    static Text get(Object data, String view, int version, int page, int pageCount, IntFunction<Text> renderer) {
+        Map<String, CachedPages> views = cache.computeIfAbsent(data, key -> new HashMap<>(2));
+        CachedPages cached = views.get(view);
+        if (cached == null || cached.version() != version || cached.pages().length != pageCount) {
+            cached = new CachedPages(version, new Text[pageCount]);
+            views.put(view, cached);
+        }
+
+        Text text = cached.pages()[page - 1];
+        if (text == null) {
+            text = renderer.apply(page);
+            cached.pages()[page - 1] = text;
+        }
+        return text;
+    }
+
+    static Text render(String title, List<String> sortedNames, Function<String, Home> lookup, int page,
+                       String teleportCommand, String listCommand) {
+        return render(title, sortedNames, lookup, DIMENSION, page, teleportCommand, listCommand);
+    }
+
+    static Text render(String title, List<String> sortedNames, Function<String, Home> lookup,
+                       Function<Home, String> detail, int page, String teleportCommand, String listCommand) {
+        int pageCount = pageCount(sortedNames.size());
+        MutableText text = Text.literal(title).formatted(Formatting.GOLD);
+
+        int from = (page - 1) * PAGE_SIZE;
+        for (String name : sortedNames.subList(from, Math.min(sortedNames.size(), from + PAGE_SIZE))) {
+            String detailText = detail.apply(lookup.apply(name));
+            text.append(Text.literal("\n  • ").formatted(Formatting.GRAY))
+                    .append(Text.literal(name).formatted(Formatting.AQUA)
+                            .styled(style -> style
+                                    .withClickEvent(new ClickEvent.RunCommand(teleportCommand + " " + name))
+                                    .withHoverEvent(new HoverEvent.ShowText(Text.literal("Click to teleport to " + name)))))
+                    .append(Text.literal(" - ").formatted(Formatting.GRAY))
+                    .append(Text.literal(detailText).formatted(Formatting.YELLOW));
+        }
+
+        if (pageCount > 1) {
+            text.append(Text.literal("\n"))
+                    .append(pageLink("[< Prev]", "Previous page", page > 1, listCommand + " " + (page - 1)))
+                    .append(Text.literal(" Page " + page + "/" + pageCount + " ").formatted(Formatting.GOLD))
+                    .append(pageLink("[Next >]", "Next page", page < pageCount, listCommand + " " + (page + 1)));
+        }
+        return text;
+    }
+
+    private static Text pageLink(String label, String hover, boolean enabled, String command) {
+        if (!enabled) {
+            return Text.literal(label).formatted(Formatting.DARK_GRAY);
+        }
+        return Text.literal(label).formatted(Formatting.GREEN)
+                .styled(style -> style
+                        .withClickEvent(new ClickEvent.RunCommand(command))
+                        .withHoverEvent(new HoverEvent.ShowText(Text.literal(hover))));
+    }
+}
@@ -0,0 +1,79 @@
+package dev.pyro.homepoints.commands;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import dev.pyro.homepoints.config.HomePointsConfig;
+import dev.pyro.homepoints.loadtest.LoadTest;
+import dev.pyro.homepoints.util.Messages;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+
+public class LoadTestCommand {
+
+    public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("homepoints")
+                .then(CommandManager.literal("loadtest")
+                        .requires(source -> source.hasPermissionLevel(4))
+                        .then(CommandManager.literal("start")
+                                .executes(context -> start(context, HomePointsConfig.loadtestPlayers,
+                                        HomePointsConfig.loadtestCommandsPerSecond, HomePointsConfig.loadtestDurationSeconds))
+                                .then(CommandManager.argument("players", IntegerArgumentType.integer(1, LoadTest.MAX_PLAYERS))
+                                        .then(CommandManager.argument("commands_per_second", IntegerArgumentType.integer(1))
+                                                .then(CommandManager.argument("seconds", IntegerArgumentType.integer(1))
+                                                        .executes(context -> start(context,
+                                                                IntegerArgumentType.getInteger(context, "players"),
+                                                                IntegerArgumentType.getInteger(context, "commands_per_second"),
+                                                                IntegerArgumentType.getInteger(context, "seconds")))
+                                                )
+                                        )
+                                )
+                        )
+                        .then(CommandManager.literal("stop")
+                                .executes(LoadTestCommand::stop)
+                        )
+                        .then(CommandManager.literal("status")
+                                .executes(LoadTestCommand::status)
+                        )
+                )
+        );
+    }
+
+    private static int start(CommandContext<ServerCommandSource> context, int players, int commandsPerSecond, int seconds) {
+        ServerCommandSource source = context.getSource();
+        try {
+            LoadTest.start(source.getServer(), source, players, commandsPerSecond, seconds, false);
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            source.sendError(Messages.error(e.getMessage()));
+            return 0;
+        }
+
+        source.sendFeedback(() -> Messages.success("Started a load test with " + players + " fake players at "
+                + commandsPerSecond + " commands/s for " + seconds + " s."), true);
+        source.sendFeedback(() -> Messages.info("Their homes are saved like real ones, only run this on a copy of the world."), false);
+        return 1;
+    }
+
+    private static int stop(CommandContext<ServerCommandSource> context) {
+        if (!LoadTest.stop()) {
+            context.getSource().sendError(Messages.error("No load test is running."));
+            return 0;
+        }
+        return 1;
+    }
+
+    private static int status(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        LoadTest test = LoadTest.current();
+        if (test == null) {
+            source.sendFeedback(() -> Messages.info("No load test is running."), false);
+            return 0;
+        }
+
+        for (Text line : test.report()) {
+            source.sendFeedback(() -> line, false);
+        }
+        return 1;
+    }
+}
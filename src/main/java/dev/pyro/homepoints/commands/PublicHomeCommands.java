@@ -1,63 +1,109 @@
 package dev.pyro.homepoints.commands;
 
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.suggestion.SuggestionProvider;
 import dev.pyro.homepoints.data.Home;
+import dev.pyro.homepoints.data.HomeNameIndex;
 import dev.pyro.homepoints.data.HomesManager;
 import dev.pyro.homepoints.data.PublicHomesData;
+import dev.pyro.homepoints.teleport.TeleportTimers;
 import dev.pyro.homepoints.util.Messages;
 import net.minecraft.command.CommandSource;
 import net.minecraft.registry.RegistryKey;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.command.CommandManager;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
-import net.minecraft.text.Text;
-import net.minecraft.util.Formatting;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
-import java.util.Set;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.function.Function;
 
 public class PublicHomeCommands {
 
-    private static final SuggestionProvider<ServerCommandSource> SUGGEST_PUBLIC_HOMES = (context, builder) -> {
+    static final SuggestionProvider<ServerCommandSource> SUGGEST_PUBLIC_HOMES = RateLimits.guardSuggestions("public homes", (context, builder) -> {
         if (context.getSource().getServer() != null) {
             HomesManager manager = HomesManager.get(context.getSource().getServer());
             PublicHomesData data = manager.getPublicHomesData();
-            return CommandSource.suggestMatching(data.getPublicHomeNames(), builder);
+            data.getNameIndex().startingWith(builder.getRemaining(), HomeNameIndex.MAX_SUGGESTIONS)
+                    .forEach(builder::suggest);
         }
         return builder.buildFuture();
-    };
+    });
+
+    static final SuggestionProvider<ServerCommandSource> SUGGEST_PLAYERS = RateLimits.guardSuggestions("players", (context, builder) ->
+            CommandSource.suggestMatching(context.getSource().getPlayerNames(), builder));
 
     public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
         dispatcher.register(CommandManager.literal("psethome")
                 .then(CommandManager.argument("name", StringArgumentType.word())
-                        .executes(PublicHomeCommands::setPublicHome)
+                        .executes(RateLimits.guard("psethome", PublicHomeCommands::setPublicHome))
                 )
         );
 
         dispatcher.register(CommandManager.literal("pdelhome")
                 .then(CommandManager.argument("name", StringArgumentType.word())
                         .suggests(SUGGEST_PUBLIC_HOMES)
-                        .executes(PublicHomeCommands::deletePublicHome)
+                        .executes(RateLimits.guard("pdelhome", PublicHomeCommands::deletePublicHome))
                 )
         );
 
         dispatcher.register(CommandManager.literal("phome")
+                .then(CommandManager.literal("nearest")
+                        .executes(RateLimits.guard("phome nearest", PublicHomeCommands::teleportNearestPublicHome))
+                )
                 .then(CommandManager.argument("name", StringArgumentType.word())
                         .suggests(SUGGEST_PUBLIC_HOMES)
-                        .executes(PublicHomeCommands::teleportPublicHome)
+                        .executes(RateLimits.guard("phome", PublicHomeCommands::teleportPublicHome))
                 )
         );
 
         dispatcher.register(CommandManager.literal("phomes")
-                .executes(PublicHomeCommands::listPublicHomes)
+                .executes(RateLimits.guard("phomes", context -> listPublicHomes(context, 1)))
+                .then(CommandManager.argument("page", IntegerArgumentType.integer(1))
+                        .executes(RateLimits.guard("phomes", context -> listPublicHomes(context, IntegerArgumentType.getInteger(context, "page"))))
+                )
+                .then(CommandManager.literal("search")
+                        .then(CommandManager.argument("text", StringArgumentType.word())
+                                .executes(RateLimits.guard("phomes search", context -> searchPublicHomes(context, 1)))
+                                .then(CommandManager.argument("page", IntegerArgumentType.integer(1))
+                                        .executes(RateLimits.guard("phomes search", context -> searchPublicHomes(context, IntegerArgumentType.getInteger(context, "page"))))
+                                )
+                        )
+                )
+                .then(CommandManager.literal("owner")
+                        .then(CommandManager.argument("player", StringArgumentType.word())
+                                .suggests(SUGGEST_PLAYERS)
+                                .executes(RateLimits.guard("phomes owner", context -> listOwnerPublicHomes(context, 1)))
+                                .then(CommandManager.argument("page", IntegerArgumentType.integer(1))
+                                        .executes(RateLimits.guard("phomes owner", context -> listOwnerPublicHomes(context, IntegerArgumentType.getInteger(context, "page"))))
+                                )
+                        )
+                )
+                .then(CommandManager.literal("sort")
+                        .then(sortedBy("name", PublicHomesData.SortOrder.NAME))
+                        .then(sortedBy("owner", PublicHomesData.SortOrder.OWNER))
+                        .then(sortedBy("dimension", PublicHomesData.SortOrder.DIMENSION))
+                )
         );
     }
 
+    private static LiteralArgumentBuilder<ServerCommandSource> sortedBy(String name, PublicHomesData.SortOrder order) {
+        return CommandManager.literal(name)
+                .executes(RateLimits.guard("phomes sort", context -> listSortedPublicHomes(context, order, 1)))
+                .then(CommandManager.argument("page", IntegerArgumentType.integer(1))
+                        .executes(RateLimits.guard("phomes sort", context -> listSortedPublicHomes(context, order, IntegerArgumentType.getInteger(context, "page"))))
+                );
+    }
+
     private static int setPublicHome(CommandContext<ServerCommandSource> context) {
         if (!(context.getSource().getEntity() instanceof ServerPlayerEntity player)) {
             context.getSource().sendError(Messages.error("Only players can use this command!"));
@@ -142,29 +188,69 @@ public class PublicHomeCommands {
             return 0;
         }
 
+        return teleport(context, player, home);
+    }
+
+    private static int teleportNearestPublicHome(CommandContext<ServerCommandSource> context) {
+        if (!(context.getSource().getEntity() instanceof ServerPlayerEntity player)) {
+            context.getSource().sendError(Messages.error("Only players can use this command!"));
+            return 0;
+        }
+
+        HomesManager manager = HomesManager.get(context.getSource().getServer());
+        Home nearest = manager.getNearestPublicHome(context.getSource().getWorld().getRegistryKey(),
+                player.getEntityPos());
+
+        if (nearest == null) {
+            player.sendMessage(Messages.error("There are no public homes in this dimension!"));
+            return 0;
+        }
+
+        return teleport(context, player, nearest);
+    }
+
+    private static int teleport(CommandContext<ServerCommandSource> context, ServerPlayerEntity player, Home home) {
+        String homeName = home.getName();
         ServerWorld targetWorld = context.getSource().getServer().getWorld(home.getDimension());
         if (targetWorld == null) {
             player.sendMessage(Messages.error("Target dimension not found!"));
             return 0;
         }
 
-        BlockPos pos = home.getPosition();
+        return TeleportTimers.request(player, TeleportTimers.Kind.PUBLIC_HOME, targetWorld, home,
+                Messages.success("Teleported to public home '" + homeName + "'!")) ? 1 : 0;
+    }
 
-        if (context.getSource().getWorld().getRegistryKey() == home.getDimension()) {
-            player.teleport(pos.getX() + 0.5, pos.getY(), pos.getZ() + 0.5, true);
-        } else {
-            player.teleport(targetWorld, pos.getX() + 0.5, pos.getY(), pos.getZ() + 0.5,
-                    Set.of(), home.getYaw(), home.getPitch(), true);
+    private static int listPublicHomes(CommandContext<ServerCommandSource> context, int page) {
+        if (!(context.getSource().getEntity() instanceof ServerPlayerEntity player)) {
+            context.getSource().sendError(Messages.error("Only players can use this command!"));
+            return 0;
         }
 
-        player.setYaw(home.getYaw());
-        player.setPitch(home.getPitch());
+        HomesManager manager = HomesManager.get(context.getSource().getServer());
+        PublicHomesData data = manager.getPublicHomesData();
+        int homeCount = data.getPublicHomes().size();
+
+        if (homeCount == 0) {
+            player.sendMessage(Messages.info("There are no public homes yet!"));
+            return 0;
+        }
+
+        int pageCount = HomeListPages.pageCount(homeCount);
+        if (!checkPage(player, page, pageCount)) {
+            return 0;
+        }
+
+        player.sendMessage(HomeListPages.get(data, data.getVersion(), page, pageCount, p -> HomeListPages.render(
+                "=== Public Homes (" + homeCount + ") ===",
+                data.getNameIndex().startingWith("", Integer.MAX_VALUE), data::getPublicHome, p,
+                "/phome", "/phomes")));
 
-        player.sendMessage(Messages.success("Teleported to public home '" + homeName + "'!"));
         return 1;
     }
 
-    private static int listPublicHomes(CommandContext<ServerCommandSource> context) {
+    private static int listSortedPublicHomes(CommandContext<ServerCommandSource> context,
+                                             PublicHomesData.SortOrder order, int page) {
         if (!(context.getSource().getEntity() instanceof ServerPlayerEntity player)) {
             context.getSource().sendError(Messages.error("Only players can use this command!"));
             return 0;
@@ -172,27 +258,120 @@ public class PublicHomeCommands {
 
         HomesManager manager = HomesManager.get(context.getSource().getServer());
         PublicHomesData data = manager.getPublicHomesData();
-        Set<String> homeNames = data.getPublicHomeNames();
+        int homeCount = data.getPublicHomes().size();
 
-        if (homeNames.isEmpty()) {
+        if (homeCount == 0) {
             player.sendMessage(Messages.info("There are no public homes yet!"));
             return 0;
         }
 
-        player.sendMessage(Text.literal("=== Public Homes (" + homeNames.size() + ") ===")
-                .formatted(Formatting.GOLD));
+        int pageCount = HomeListPages.pageCount(homeCount);
+        if (!checkPage(player, page, pageCount)) {
+            return 0;
+        }
+
+        String orderName = order.name().toLowerCase(Locale.ROOT);
+        String title = "=== Public Homes by " + orderName + " (" + homeCount + ") ===";
+        String listCommand = "/phomes sort " + orderName;
 
-        homeNames.forEach(name -> {
-            Home home = data.getPublicHome(name);
-            String dimensionName = home.getDimension().getValue().getPath();
-            player.sendMessage(
-                    Text.literal("  • ").formatted(Formatting.GRAY)
-                            .append(Text.literal(name).formatted(Formatting.AQUA))
-                            .append(Text.literal(" - ").formatted(Formatting.GRAY))
-                            .append(Text.literal(dimensionName).formatted(Formatting.YELLOW))
-            );
-        });
+        if (order == PublicHomesData.SortOrder.OWNER) {
+            // Owner names depend on who is online, so these pages aren't cached.
+            MinecraftServer server = context.getSource().getServer();
+            player.sendMessage(HomeListPages.render(title, data.getSortedNames(order), data::getPublicHome,
+                    home -> ownerName(server, home), page, "/phome", listCommand));
+        } else {
+            player.sendMessage(HomeListPages.get(data, listCommand, data.getVersion(), page, pageCount, p -> HomeListPages.render(
+                    title, data.getSortedNames(order), data::getPublicHome, p, "/phome", listCommand)));
+        }
 
         return 1;
     }
+
+    private static int searchPublicHomes(CommandContext<ServerCommandSource> context, int page) {
+        if (!(context.getSource().getEntity() instanceof ServerPlayerEntity player)) {
+            context.getSource().sendError(Messages.error("Only players can use this command!"));
+            return 0;
+        }
+
+        String text = StringArgumentType.getString(context, "text");
+        HomesManager manager = HomesManager.get(context.getSource().getServer());
+        PublicHomesData data = manager.getPublicHomesData();
+        List<String> names = data.search(text, PublicHomesData.MAX_SEARCH_RESULTS);
+
+        if (names.isEmpty()) {
+            player.sendMessage(Messages.info("No public homes match '" + text + "'!"));
+            return 0;
+        }
+
+        String count = names.size() < PublicHomesData.MAX_SEARCH_RESULTS ? String.valueOf(names.size()) : names.size() + "+";
+        return sendPage(player, data, names, "=== Public Homes matching '" + text + "' (" + count + ") ===",
+                HomeListPages.DIMENSION, page, "/phomes search " + text);
+    }
+
+    private static int listOwnerPublicHomes(CommandContext<ServerCommandSource> context, int page) {
+        if (!(context.getSource().getEntity() instanceof ServerPlayerEntity player)) {
+            context.getSource().sendError(Messages.error("Only players can use this command!"));
+            return 0;
+        }
+
+        String playerName = StringArgumentType.getString(context, "player");
+        MinecraftServer server = context.getSource().getServer();
+        String owner = resolveOwner(server, playerName);
+        if (owner == null) {
+            player.sendMessage(Messages.error("Player '" + playerName + "' is not online, use their UUID instead!"));
+            return 0;
+        }
+
+        PublicHomesData data = HomesManager.get(server).getPublicHomesData();
+        List<String> names = data.getPublicHomeNamesOf(owner);
+
+        if (names.isEmpty()) {
+            player.sendMessage(Messages.info(playerName + " has no public homes!"));
+            return 0;
+        }
+
+        return sendPage(player, data, names, "=== Public Homes of " + playerName + " (" + names.size() + ") ===",
+                HomeListPages.DIMENSION, page, "/phomes owner " + playerName);
+    }
+
+    private static int sendPage(ServerPlayerEntity player, PublicHomesData data, List<String> names, String title,
+                                Function<Home, String> detail, int page, String listCommand) {
+        if (!checkPage(player, page, HomeListPages.pageCount(names.size()))) {
+            return 0;
+        }
+
+        player.sendMessage(HomeListPages.render(title, names, data::getPublicHome, detail, page, "/phome", listCommand));
+        return 1;
+    }
+
+    private static boolean checkPage(ServerPlayerEntity player, int page, int pageCount) {
+        if (page > pageCount) {
+            player.sendMessage(Messages.error("Page " + page + " doesn't exist, there are " + pageCount + " pages of public homes!"));
+            return false;
+        }
+        return true;
+    }
+
+    static String resolveOwner(MinecraftServer server, String playerName) {
+        ServerPlayerEntity online = server.getPlayerManager().getPlayer(playerName);
+        if (online != null) {
+            return online.getUuidAsString();
+        }
+        try {
+            return UUID.fromString(playerName).toString();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String ownerName(MinecraftServer server, Home home) {
+        try {
+            ServerPlayerEntity owner = server.getPlayerManager().getPlayer(UUID.fromString(home.getOwner()));
+            if (owner != null) {
+                return owner.getName().getString();
+            }
+        } catch (IllegalArgumentException ignored) {
+        }
+        return home.getOwner();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,129 @@
+package dev.pyro.homepoints.commands;
+
+import com.mojang.brigadier.Command;
+import com.mojang.brigadier.suggestion.SuggestionProvider;
+import dev.pyro.homepoints.HomePoints;
+import dev.pyro.homepoints.config.HomePointsConfig;
+import dev.pyro.homepoints.metrics.Metrics;
+import dev.pyro.homepoints.util.Messages;
+import dev.pyro.homepoints.util.TokenBuckets;
+import net.fabricmc.fabric.api.entity.FakePlayer;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.Text;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-player token buckets in front of every command and suggestion handler, so a client running a
+ * macro is turned away before any homes are looked up. Each command has its own bucket, limited by
+ * {@code ratelimit.commandBurst} and {@code ratelimit.commandsPerMinute} or an entry of
+ * {@code ratelimit.commandOverrides} such as {@code homes=5/30}. Tab completion is requested with
+ * every keystroke and shares one more generous bucket. Only real players are limited; fake players,
+ * such as those of a load test, are not.
+ */
+public final class RateLimits {
+    private static final Text THROTTLED = Messages.error("You're sending commands too fast, slow down!");
+    private static final LongAdder THROTTLED_COMMANDS = Metrics.counter("commands.throttled");
+    private static final LongAdder THROTTLED_SUGGESTIONS = Metrics.counter("suggestions.throttled");
+
+    private static final Map<String, TokenBuckets> commandBuckets = new HashMap<>();
+    private static TokenBuckets suggestionBuckets;
+
+    private RateLimits() {
+    }
+
+    /**
+     * Wraps a command handler like {@link Metrics#timed}, turning players away once the bucket of the
+     * command, the first word of {@code name}, is empty.
+     */
+    static Command<ServerCommandSource> guard(String name, Command<ServerCommandSource> command) {
+        Command<ServerCommandSource> timed = Metrics.timed(name, command);
+        TokenBuckets buckets = commandBuckets(name.split(" ", 2)[0]);
+        return context -> {
+            if (HomePointsConfig.ratelimitEnabled && context.getSource().getEntity() instanceof ServerPlayerEntity player
+                    && !(player instanceof FakePlayer) && !buckets.tryAcquire(player.getId(), System.nanoTime())) {
+                THROTTLED_COMMANDS.increment();
+                context.getSource().sendError(THROTTLED);
+                return 0;
+            }
+            return timed.run(context);
+        };
+    }
+
+    /**
+     * Wraps a suggestion provider like {@link Metrics#timedSuggestions}. Throttled players get no suggestions.
+     */
+    static SuggestionProvider<ServerCommandSource> guardSuggestions(String name,
+                                                                    SuggestionProvider<ServerCommandSource> provider) {
+        SuggestionProvider<ServerCommandSource> timed = Metrics.timedSuggestions(name, provider);
+        return (context, builder) -> {
+            if (HomePointsConfig.ratelimitEnabled && context.getSource().getEntity() instanceof ServerPlayerEntity player
+                    && !(player instanceof FakePlayer) && !suggestionBuckets().tryAcquire(player.getId(), System.nanoTime())) {
+                THROTTLED_SUGGESTIONS.increment();
+                return builder.buildFuture();
+            }
+            return timed.getSuggestions(context, builder);
+        };
+    }
+
+    /**
+     * Forgets the buckets of a player who left. Their entity id may be handed to someone else.
+     */
+    public static void removePlayer(ServerPlayerEntity player) {
+        for (TokenBuckets buckets : commandBuckets.values()) {
+            buckets.remove(player.getId());
+        }
+        if (suggestionBuckets != null) {
+            suggestionBuckets.remove(player.getId());
+        }
+    }
+
+    private static TokenBuckets commandBuckets(String command) {
+        // Handlers are wrapped again whenever commands are registered, but keep their buckets
+        return commandBuckets.computeIfAbsent(command, key -> {
+            Map<String, int[]> overrides = parseOverrides(HomePointsConfig.ratelimitCommandOverrides);
+            int[] limit = overrides.get(key);
+            return limit != null ? new TokenBuckets(limit[0], limit[1])
+                    : new TokenBuckets(HomePointsConfig.ratelimitCommandBurst, HomePointsConfig.ratelimitCommandsPerMinute);
+        });
+    }
+
+    private static TokenBuckets suggestionBuckets() {
+        if (suggestionBuckets == null) {
+            suggestionBuckets = new TokenBuckets(HomePointsConfig.ratelimitSuggestionBurst,
+                    HomePointsConfig.ratelimitSuggestionsPerMinute);
+        }
+        return suggestionBuckets;
+    }
+
+    /**
+     * Parses {@code command=burst/perMinute} entries separated by commas. Invalid entries are skipped.
+     */
+    private static Map<String, int[]> parseOverrides(String text) {
+        Map<String, int[]> overrides = new HashMap<>();
+        for (String part : text.split(",")) {
+            if (part.isBlank()) {
+                continue;
+            }
+            int separator = part.indexOf('=');
+            int slash = part.indexOf('/', separator + 1);
+            try {
+                if (separator < 0 || slash < 0) {
+                    throw new NumberFormatException();
+                }
+                int burst = Integer.parseInt(part.substring(separator + 1, slash).trim());
+                int perMinute = Integer.parseInt(part.substring(slash + 1).trim());
+                if (burst < 1 || perMinute < 1) {
+                    throw new NumberFormatException();
+                }
+                overrides.put(part.substring(0, separator).trim(), new int[]{burst, perMinute});
+            } catch (NumberFormatException e) {
+                HomePoints.LOGGER.warn("Ignoring rate limit '{}', expected <command>=<burst>/<perMinute>", part.trim());
+            }
+        }
+        return overrides;
+    }
+}
@@ -3,40 +3,33 @@ package dev.pyro.homepoints.commands;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.context.CommandContext;
-import com.mojang.brigadier.suggestion.SuggestionProvider;
+import dev.pyro.homepoints.config.HomePointsConfig;
 import dev.pyro.homepoints.data.Home;
 import dev.pyro.homepoints.data.HomesManager;
 import dev.pyro.homepoints.data.PlayerHomesData;
+import dev.pyro.homepoints.share.ShareRequest;
+import dev.pyro.homepoints.share.ShareRequests;
 import dev.pyro.homepoints.util.Messages;
-import net.minecraft.command.CommandSource;
 import net.minecraft.command.argument.EntityArgumentType;
 import net.minecraft.server.command.CommandManager;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.ClickEvent;
+import net.minecraft.text.HoverEvent;
+import net.minecraft.text.MutableText;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.util.List;
 
 public class ShareHomeCommand {
 
-    private static final Map<UUID, Map<UUID, String>> pendingShares = new HashMap<>();
-
-    private static final SuggestionProvider<ServerCommandSource> SUGGEST_PLAYER_HOMES = (context, builder) -> {
-        if (context.getSource().getEntity() instanceof ServerPlayerEntity player) {
-            HomesManager manager = HomesManager.get(context.getSource().getServer());
-            PlayerHomesData data = manager.getPlayerData(player.getUuid());
-            return CommandSource.suggestMatching(data.getHomeNames(), builder);
-        }
-        return builder.buildFuture();
-    };
-
     public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
         dispatcher.register(CommandManager.literal("sharehome")
                 .then(CommandManager.argument("home_name", StringArgumentType.word())
-                        .suggests(SUGGEST_PLAYER_HOMES)
+                        .suggests(HomeCommands.SUGGEST_HOMES)
                         .then(CommandManager.argument("player", EntityArgumentType.player())
-                                .executes(ShareHomeCommand::shareHome)
+                                .executes(RateLimits.guard("sharehome", ShareHomeCommand::shareHome))
                         )
                 )
         );
@@ -44,10 +37,14 @@ public class ShareHomeCommand {
         dispatcher.register(CommandManager.literal("acceptshare")
                 .then(CommandManager.argument("from_player", StringArgumentType.word())
                         .then(CommandManager.argument("home_name", StringArgumentType.word())
-                                .executes(ShareHomeCommand::acceptShare)
+                                .executes(RateLimits.guard("acceptshare", ShareHomeCommand::acceptShare))
                         )
                 )
         );
+
+        dispatcher.register(CommandManager.literal("shares")
+                .executes(RateLimits.guard("shares", ShareHomeCommand::listShares))
+        );
     }
 
     private static int shareHome(CommandContext<ServerCommandSource> context) {
@@ -86,10 +83,25 @@ public class ShareHomeCommand {
             return 0;
         }
 
-        pendingShares.computeIfAbsent(fromPlayer.getUuid(), k -> new HashMap<>())
-                .put(toPlayer.getUuid(), homeName);
+        ShareRequests.Result result = ShareRequests.offer(context.getSource().getServer(), fromPlayer.getUuid(),
+                fromPlayer.getName().getString(), toPlayer.getUuid(), homeName);
 
-        fromPlayer.sendMessage(Messages.success("Share request sent to " + toPlayer.getName().getString() + "!"));
+        switch (result) {
+            case SENDER_LIMIT -> {
+                fromPlayer.sendMessage(Messages.error("You already have the maximum of " +
+                        HomePointsConfig.sharesMaxPerSender + " pending share requests!"));
+                return 0;
+            }
+            case RECIPIENT_LIMIT -> {
+                fromPlayer.sendMessage(Messages.error(toPlayer.getName().getString() +
+                        " has too many pending share requests!"));
+                return 0;
+            }
+            case REFRESHED -> fromPlayer.sendMessage(Messages.success("Share request to " +
+                    toPlayer.getName().getString() + " renewed!"));
+            case SENT -> fromPlayer.sendMessage(Messages.success("Share request sent to " +
+                    toPlayer.getName().getString() + "!"));
+        }
         toPlayer.sendMessage(Messages.shareHomeMessage(homeName, fromPlayer.getName().getString()));
 
         return 1;
@@ -112,8 +124,8 @@ public class ShareHomeCommand {
             return 0;
         }
 
-        Map<UUID, String> playerShares = pendingShares.get(fromPlayer.getUuid());
-        if (playerShares == null || !homeName.equals(playerShares.get(toPlayer.getUuid()))) {
+        ShareRequest request = ShareRequests.find(toPlayer.getUuid(), fromPlayer.getUuid(), homeName);
+        if (request == null) {
             toPlayer.sendMessage(Messages.error("No pending share request from " + fromPlayerName +
                     " for home '" + homeName + "'!"));
             return 0;
@@ -124,7 +136,7 @@ public class ShareHomeCommand {
         Home originalHome = manager.getPlayerHome(fromPlayer.getUuid(), homeName);
         if (originalHome == null) {
             toPlayer.sendMessage(Messages.error("The shared home no longer exists!"));
-            playerShares.remove(toPlayer.getUuid());
+            ShareRequests.remove(request);
             return 0;
         }
 
@@ -144,10 +156,7 @@ public class ShareHomeCommand {
             fromPlayer.sendMessage(Messages.success(toPlayer.getName().getString() +
                     " accepted your home share!"));
 
-            playerShares.remove(toPlayer.getUuid());
-            if (playerShares.isEmpty()) {
-                pendingShares.remove(fromPlayer.getUuid());
-            }
+            ShareRequests.remove(request);
 
             return 1;
         } else {
@@ -156,4 +165,36 @@ public class ShareHomeCommand {
             return 0;
         }
     }
+
+    private static int listShares(CommandContext<ServerCommandSource> context) {
+        if (!(context.getSource().getEntity() instanceof ServerPlayerEntity player)) {
+            context.getSource().sendError(Messages.error("Only players can use this command!"));
+            return 0;
+        }
+
+        List<ShareRequest> requests = ShareRequests.getIncoming(player.getUuid());
+        if (requests.isEmpty()) {
+            player.sendMessage(Messages.info("You have no pending share requests."));
+            return 0;
+        }
+
+        int now = context.getSource().getServer().getTicks();
+        MutableText text = Text.literal("=== Pending Shares (" + requests.size() + ") ===").formatted(Formatting.GOLD);
+        for (ShareRequest request : requests) {
+            String command = "/acceptshare " + request.senderName() + " " + request.homeName();
+            long secondsLeft = Math.max(0, (request.expiresAtTick() - now + 19) / 20);
+            text.append(Text.literal("\n  • ").formatted(Formatting.GRAY))
+                    .append(Text.literal(request.homeName()).formatted(Formatting.AQUA))
+                    .append(Text.literal(" from ").formatted(Formatting.GRAY))
+                    .append(Text.literal(request.senderName()).formatted(Formatting.YELLOW))
+                    .append(Text.literal(" (" + secondsLeft + "s) ").formatted(Formatting.GRAY))
+                    .append(Text.literal("[Accept]").formatted(Formatting.GREEN)
+                            .styled(style -> style
+                                    .withClickEvent(new ClickEvent.RunCommand(command))
+                                    .withHoverEvent(new HoverEvent.ShowText(Text.literal("Click to accept " + request.homeName())))));
+        }
+        player.sendMessage(text);
+
+        return requests.size();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+package dev.pyro.homepoints.commands;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.context.CommandContext;
+import dev.pyro.homepoints.metrics.LatencyHistogram;
+import dev.pyro.homepoints.metrics.Metrics;
+import dev.pyro.homepoints.util.Messages;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+public class StatsCommand {
+
+    public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("homepoints")
+                .requires(source -> source.hasPermissionLevel(2))
+                .then(CommandManager.literal("stats")
+                        .executes(StatsCommand::showStats)
+                )
+        );
+    }
+
+    private static int showStats(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        int shown = 0;
+
+        source.sendFeedback(() -> Text.literal("=== HomePoints Stats ===").formatted(Formatting.GOLD), false);
+        for (LatencyHistogram histogram : Metrics.getHistograms()) {
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            String summary = String.format(Locale.ROOT, "%dx, avg %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+                    histogram.getCount(), histogram.getAverageNanos() / 1e6,
+                    histogram.getQuantileNanos(0.5) / 1e6, histogram.getQuantileNanos(0.99) / 1e6,
+                    histogram.getMaxNanos() / 1e6);
+            source.sendFeedback(() -> Text.literal("  • ").formatted(Formatting.GRAY)
+                    .append(Text.literal(histogram.getFamily() + " " + histogram.getLabel()).formatted(Formatting.AQUA))
+                    .append(Text.literal(" - ").formatted(Formatting.GRAY))
+                    .append(Text.literal(summary).formatted(Formatting.YELLOW)), false);
+            shown++;
+        }
+
+        for (Map.Entry<String, LongAdder> counter : Metrics.getCounters().entrySet()) {
+            source.sendFeedback(() -> Messages.info(counter.getKey() + ": " + counter.getValue().sum()), false);
+        }
+        for (Map.Entry<String, LongSupplier> gauge : Metrics.getGauges().entrySet()) {
+            source.sendFeedback(() -> Messages.info(gauge.getKey() + ": " + gauge.getValue().getAsLong()), false);
+        }
+
+        if (shown == 0) {
+            source.sendFeedback(() -> Messages.info("Nothing has been timed yet."), false);
+        }
+        return shown;
+    }
+}
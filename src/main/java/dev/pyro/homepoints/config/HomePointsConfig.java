@@ -0,0 +1,224 @@
+package dev.pyro.homepoints.config;
+
+import dev.pyro.homepoints.HomePoints;
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+
+public class HomePointsConfig {
+    private static final String FILE_NAME = "homepoints.properties";
+
+    public enum StorageMode {
+        SINGLE,
+        SHARDED,
+        SQL,
+        MAPPED
+    }
+
+    public enum PreloadFallback {
+        TELEPORT,
+        CANCEL
+    }
+
+    public static StorageMode storageMode = StorageMode.SINGLE;
+    public static int playerCacheSize = 1000;
+    public static boolean compactHomes = false;
+    public static int mappedFlushIntervalMs = 1000;
+    public static String storageSharedDirectory = "";
+    public static boolean journalEnabled = true;
+    public static int journalCommitIntervalMs = 50;
+    public static long journalCompactThresholdBytes = 4L * 1024 * 1024;
+    public static boolean teleportPreloadChunks = true;
+    public static int teleportPreloadTimeoutTicks = 100;
+    public static PreloadFallback teleportPreloadFallback = PreloadFallback.TELEPORT;
+    public static int teleportMaxPerTick = 20;
+    public static int teleportTickBudgetMicros = 2000;
+    public static int teleportHomeWarmupSeconds = 0;
+    public static int teleportHomeCooldownSeconds = 0;
+    public static int teleportPhomeWarmupSeconds = 0;
+    public static int teleportPhomeCooldownSeconds = 0;
+    public static int sharesTtlSeconds = 120;
+    public static int sharesMaxPerSender = 10;
+    public static int sharesMaxPerRecipient = 10;
+    public static int metricsPrometheusPort = 0;
+    public static boolean loadtestAutostart = false;
+    public static int loadtestPlayers = 500;
+    public static int loadtestCommandsPerSecond = 200;
+    public static int loadtestDurationSeconds = 300;
+    public static int loadtestHomesPerPlayer = 5;
+    public static int loadtestSpreadBlocks = 5000;
+    public static String loadtestMix = "sethome=15,home=30,homes=15,phome=15,sharehome=5,suggest=20";
+    public static boolean ratelimitEnabled = true;
+    public static int ratelimitCommandBurst = 10;
+    public static int ratelimitCommandsPerMinute = 120;
+    public static String ratelimitCommandOverrides = "";
+    public static int ratelimitSuggestionBurst = 40;
+    public static int ratelimitSuggestionsPerMinute = 600;
+    public static boolean backupsEnabled = true;
+    public static int backupsIntervalMinutes = 30;
+    public static int backupsDeltasPerBase = 24;
+    public static int backupsMaxSizeMb = 256;
+
+    public static void load() {
+        Path path = FabricLoader.getInstance().getConfigDir().resolve(FILE_NAME);
+        Properties props = new Properties();
+        String existing = null;
+
+        if (Files.exists(path)) {
+            try {
+                existing = Files.readString(path);
+                props.load(new StringReader(existing));
+            } catch (IOException e) {
+                HomePoints.LOGGER.warn("Failed to read {}, using defaults", path, e);
+                return;
+            }
+        }
+        Set<String> present = props.stringPropertyNames();
+
+        storageMode = getEnum(props, "storage.mode", storageMode);
+        playerCacheSize = getInt(props, "storage.playerCacheSize", playerCacheSize, 1);
+        compactHomes = getBoolean(props, "storage.compactHomes", compactHomes);
+        mappedFlushIntervalMs = getInt(props, "storage.mappedFlushIntervalMs", mappedFlushIntervalMs, 1);
+        storageSharedDirectory = getString(props, "storage.sharedDirectory", storageSharedDirectory);
+        journalEnabled = getBoolean(props, "journal.enabled", journalEnabled);
+        journalCommitIntervalMs = getInt(props, "journal.commitIntervalMs", journalCommitIntervalMs, 1);
+        journalCompactThresholdBytes = getLong(props, "journal.compactThresholdBytes", journalCompactThresholdBytes, 1024);
+        teleportPreloadChunks = getBoolean(props, "teleport.preloadChunks", teleportPreloadChunks);
+        teleportPreloadTimeoutTicks = getInt(props, "teleport.preloadTimeoutTicks", teleportPreloadTimeoutTicks, 1);
+        teleportPreloadFallback = getEnum(props, "teleport.preloadFallback", teleportPreloadFallback);
+        teleportMaxPerTick = getInt(props, "teleport.maxPerTick", teleportMaxPerTick, 1);
+        teleportTickBudgetMicros = getInt(props, "teleport.tickBudgetMicros", teleportTickBudgetMicros, 1);
+        teleportHomeWarmupSeconds = getInt(props, "teleport.homeWarmupSeconds", teleportHomeWarmupSeconds, 0);
+        teleportHomeCooldownSeconds = getInt(props, "teleport.homeCooldownSeconds", teleportHomeCooldownSeconds, 0);
+        teleportPhomeWarmupSeconds = getInt(props, "teleport.phomeWarmupSeconds", teleportPhomeWarmupSeconds, 0);
+        teleportPhomeCooldownSeconds = getInt(props, "teleport.phomeCooldownSeconds", teleportPhomeCooldownSeconds, 0);
+        sharesTtlSeconds = getInt(props, "shares.ttlSeconds", sharesTtlSeconds, 1);
+        sharesMaxPerSender = getInt(props, "shares.maxPerSender", sharesMaxPerSender, 1);
+        sharesMaxPerRecipient = getInt(props, "shares.maxPerRecipient", sharesMaxPerRecipient, 1);
+        metricsPrometheusPort = getInt(props, "metrics.prometheusPort", metricsPrometheusPort, 0);
+        loadtestAutostart = getBoolean(props, "loadtest.autostart", loadtestAutostart);
+        loadtestPlayers = getInt(props, "loadtest.players", loadtestPlayers, 1);
+        loadtestCommandsPerSecond = getInt(props, "loadtest.commandsPerSecond", loadtestCommandsPerSecond, 1);
+        loadtestDurationSeconds = getInt(props, "loadtest.durationSeconds", loadtestDurationSeconds, 1);
+        loadtestHomesPerPlayer = getInt(props, "loadtest.homesPerPlayer", loadtestHomesPerPlayer, 1);
+        loadtestSpreadBlocks = getInt(props, "loadtest.spreadBlocks", loadtestSpreadBlocks, 0);
+        loadtestMix = getString(props, "loadtest.mix", loadtestMix);
+        ratelimitEnabled = getBoolean(props, "ratelimit.enabled", ratelimitEnabled);
+        ratelimitCommandBurst = getInt(props, "ratelimit.commandBurst", ratelimitCommandBurst, 1);
+        ratelimitCommandsPerMinute = getInt(props, "ratelimit.commandsPerMinute", ratelimitCommandsPerMinute, 1);
+        ratelimitCommandOverrides = getString(props, "ratelimit.commandOverrides", ratelimitCommandOverrides);
+        ratelimitSuggestionBurst = getInt(props, "ratelimit.suggestionBurst", ratelimitSuggestionBurst, 1);
+        ratelimitSuggestionsPerMinute = getInt(props, "ratelimit.suggestionsPerMinute", ratelimitSuggestionsPerMinute, 1);
+        backupsEnabled = getBoolean(props, "backups.enabled", backupsEnabled);
+        backupsIntervalMinutes = getInt(props, "backups.intervalMinutes", backupsIntervalMinutes, 1);
+        backupsDeltasPerBase = getInt(props, "backups.deltasPerBase", backupsDeltasPerBase, 0);
+        backupsMaxSizeMb = getInt(props, "backups.maxSizeMb", backupsMaxSizeMb, 1);
+
+        addMissingKeys(path, existing, props, present);
+    }
+
+    /**
+     * Appends the keys the file doesn't have yet, with their defaults, and leaves everything already
+     * in it as the user wrote it. {@link Properties#store} does the escaping, so values with
+     * backslashes, colons or equals signs read back unchanged.
+     */
+    private static void addMissingKeys(Path path, String existing, Properties props, Set<String> present) {
+        Properties missing = new Properties();
+        for (String key : props.stringPropertyNames()) {
+            if (!present.contains(key)) {
+                missing.setProperty(key, props.getProperty(key));
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        try {
+            StringWriter entries = new StringWriter();
+            missing.store(entries, null);
+            StringBuilder text = new StringBuilder();
+            if (existing == null) {
+                text.append("# HomePoints configuration\n");
+            } else if (!existing.isEmpty() && !existing.endsWith("\n")) {
+                text.append('\n');
+            }
+            // store() starts with a timestamp comment and writes the keys in no particular order.
+            entries.toString().lines()
+                    .filter(line -> !line.startsWith("#"))
+                    .sorted()
+                    .forEach(line -> text.append(line).append('\n'));
+
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, text, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            HomePoints.LOGGER.warn("Failed to write {}", path, e);
+        }
+    }
+
+    private static int getInt(Properties props, String key, int defaultValue, int min) {
+        int value = defaultValue;
+        String raw = props.getProperty(key);
+        if (raw != null) {
+            try {
+                value = Math.max(min, Integer.parseInt(raw.trim()));
+            } catch (NumberFormatException e) {
+                HomePoints.LOGGER.warn("Invalid value '{}' for {}, using {}", raw, key, defaultValue);
+            }
+        }
+        props.setProperty(key, Integer.toString(value));
+        return value;
+    }
+
+    private static long getLong(Properties props, String key, long defaultValue, long min) {
+        long value = defaultValue;
+        String raw = props.getProperty(key);
+        if (raw != null) {
+            try {
+                value = Math.max(min, Long.parseLong(raw.trim()));
+            } catch (NumberFormatException e) {
+                HomePoints.LOGGER.warn("Invalid value '{}' for {}, using {}", raw, key, defaultValue);
+            }
+        }
+        props.setProperty(key, Long.toString(value));
+        return value;
+    }
+
+    private static String getString(Properties props, String key, String defaultValue) {
+        String raw = props.getProperty(key);
+        String value = raw != null && !raw.isBlank() ? raw.trim() : defaultValue;
+        props.setProperty(key, value);
+        return value;
+    }
+
+    private static boolean getBoolean(Properties props, String key, boolean defaultValue) {
+        boolean value = defaultValue;
+        String raw = props.getProperty(key);
+        if (raw != null) {
+            value = Boolean.parseBoolean(raw.trim());
+        }
+        props.setProperty(key, Boolean.toString(value));
+        return value;
+    }
+
+    private static <E extends Enum<E>> E getEnum(Properties props, String key, E defaultValue) {
+        E value = defaultValue;
+        String raw = props.getProperty(key);
+        if (raw != null) {
+            try {
+                value = Enum.valueOf(defaultValue.getDeclaringClass(), raw.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                HomePoints.LOGGER.warn("Invalid value '{}' for {}, using {}", raw, key, defaultValue);
+            }
+        }
+        props.setProperty(key, value.name().toLowerCase(Locale.ROOT));
+        return value;
+    }
+}
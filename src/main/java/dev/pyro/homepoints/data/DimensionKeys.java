@@ -0,0 +1,51 @@
+package dev.pyro.homepoints.data;
+
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.util.Identifier;
+import net.minecraft.world.World;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Caches dimension keys by their string id so decoding doesn't parse an identifier for every home,
+ * and numbers them so compact stores can keep a small index instead of a reference.
+ */
+public final class DimensionKeys {
+    private static final Map<String, RegistryKey<World>> CACHE = new ConcurrentHashMap<>();
+    private static final Map<RegistryKey<World>, Integer> INDICES = new ConcurrentHashMap<>();
+    private static final List<RegistryKey<World>> KEYS = new CopyOnWriteArrayList<>();
+
+    private DimensionKeys() {
+    }
+
+    public static RegistryKey<World> of(String id) {
+        RegistryKey<World> key = CACHE.get(id);
+        if (key == null) {
+            key = CACHE.computeIfAbsent(id, raw -> RegistryKey.of(RegistryKeys.WORLD, Identifier.of(raw)));
+        }
+        return key;
+    }
+
+    public static int indexOf(RegistryKey<World> key) {
+        Integer index = INDICES.get(key);
+        if (index == null) {
+            synchronized (KEYS) {
+                index = INDICES.get(key);
+                if (index == null) {
+                    index = KEYS.size();
+                    KEYS.add(key);
+                    INDICES.put(key, index);
+                }
+            }
+        }
+        return index;
+    }
+
+    public static RegistryKey<World> byIndex(int index) {
+        return KEYS.get(index);
+    }
+}
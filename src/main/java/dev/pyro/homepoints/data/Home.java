@@ -2,8 +2,6 @@ package dev.pyro.homepoints.data;
 
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.registry.RegistryKey;
-import net.minecraft.registry.RegistryKeys;
-import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
@@ -68,10 +66,7 @@ public class Home {
                 nbt.getInt("y"),
                 nbt.getInt("z")
         );
-        RegistryKey<World> dimension = RegistryKey.of(
-                RegistryKeys.WORLD,
-                Identifier.of(nbt.getString("dimension"))
-        );
+        RegistryKey<World> dimension = DimensionKeys.of(nbt.getString("dimension"));
         float yaw = nbt.getFloat("yaw");
         float pitch = nbt.getFloat("pitch");
         String owner = nbt.getString("owner");
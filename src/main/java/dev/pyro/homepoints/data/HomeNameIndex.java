@@ -0,0 +1,66 @@
+package dev.pyro.homepoints.data;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * Home names kept in case-insensitive order so tab completion can read a bounded slice of the
+ * names starting with what has been typed so far, and listings can walk them already sorted.
+ */
+public class HomeNameIndex {
+    public static final int MAX_SUGGESTIONS = 50;
+
+    static final Comparator<String> ORDER =
+            String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+    private final TreeSet<String> names = new TreeSet<>(ORDER);
+
+    void add(String name) {
+        names.add(name);
+    }
+
+    void remove(String name) {
+        names.remove(name);
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    public boolean isEmpty() {
+        return names.isEmpty();
+    }
+
+    public List<String> toList() {
+        return new ArrayList<>(names);
+    }
+
+    public List<String> startingWith(String prefix, int limit) {
+        List<String> result = new ArrayList<>(Math.min(limit, names.size()));
+        // Upper case sorts first among names that only differ in case, so this is the lowest possible match.
+        for (String name : names.tailSet(prefix.toUpperCase(Locale.ROOT), true)) {
+            if (result.size() >= limit || !name.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                break;
+            }
+            result.add(name);
+        }
+        return result;
+    }
+
+    public List<String> matching(Predicate<String> filter, int limit) {
+        List<String> result = new ArrayList<>();
+        for (String name : names) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (filter.test(name)) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,59 @@
+package dev.pyro.homepoints.data;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps every three-letter slice of a lower-cased home name to the names containing it. A substring
+ * search then only has to check the names sharing the query's rarest slice instead of every name.
+ */
+final class HomeSearchIndex {
+    static final int GRAM_LENGTH = 3;
+
+    private final Map<String, Set<String>> grams = new HashMap<>();
+
+    void add(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (int i = 0; i + GRAM_LENGTH <= lower.length(); i++) {
+            String gram = lower.substring(i, i + GRAM_LENGTH);
+            Set<String> names = grams.get(gram);
+            if (names == null) {
+                names = new HashSet<>(4);
+                grams.put(gram, names);
+            }
+            names.add(name);
+        }
+    }
+
+    void remove(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (int i = 0; i + GRAM_LENGTH <= lower.length(); i++) {
+            String gram = lower.substring(i, i + GRAM_LENGTH);
+            Set<String> names = grams.get(gram);
+            if (names != null && names.remove(name) && names.isEmpty()) {
+                grams.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * Returns the names that may contain {@code lowerQuery}, which must be lower case and at least
+     * {@link #GRAM_LENGTH} characters long. Callers still have to check each candidate.
+     */
+    Set<String> candidates(String lowerQuery) {
+        Set<String> smallest = null;
+        for (int i = 0; i + GRAM_LENGTH <= lowerQuery.length(); i++) {
+            Set<String> names = grams.get(lowerQuery.substring(i, i + GRAM_LENGTH));
+            if (names == null) {
+                return Set.of();
+            }
+            if (smallest == null || names.size() < smallest.size()) {
+                smallest = names;
+            }
+        }
+        return smallest;
+    }
+}
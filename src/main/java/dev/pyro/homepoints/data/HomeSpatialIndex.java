@@ -0,0 +1,337 @@
+package dev.pyro.homepoints.data;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Buckets homes into square cells per dimension so nearby homes can be found by looking at a
+ * handful of cells instead of every home. Distances are horizontal, measured to the block center.
+ * <p>
+ * Cells keep their homes in parallel arrays of packed positions, player slots and names, so the
+ * index doesn't hold on to any {@link Home} and an indexed home costs about as much as its name.
+ * Players are numbered through a table shared by all dimensions and drop out of it with their last home.
+ */
+public class HomeSpatialIndex {
+    private static final int CELL_SHIFT = 6;
+    private static final int CELL_SIZE = 1 << CELL_SHIFT;
+    private static final int PUBLIC = -1;
+    private static final int INITIAL_SLOTS = 16;
+
+    /**
+     * An indexed home. {@code player} is the player the home belongs to, or {@code null} for public
+     * homes; {@code position} is packed like {@link BlockPos#asLong()}.
+     */
+    public record Entry(UUID player, String name, long position) {
+        public double squaredDistanceTo(double x, double z) {
+            return squaredDistance(position, x, z);
+        }
+    }
+
+    private static final class Cell {
+        private long[] positions = new long[2];
+        private int[] players = new int[2];
+        private String[] names = new String[2];
+        private int size;
+
+        private void add(long position, int player, String name) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+                players = Arrays.copyOf(players, size * 2);
+                names = Arrays.copyOf(names, size * 2);
+            }
+            positions[size] = position;
+            players[size] = player;
+            names[size] = name;
+            size++;
+        }
+
+        private int indexOf(int player, String name) {
+            for (int i = 0; i < size; i++) {
+                if (players[i] == player && names[i].equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void removeAt(int index) {
+            size--;
+            positions[index] = positions[size];
+            players[index] = players[size];
+            names[index] = names[size];
+            names[size] = null;
+        }
+    }
+
+    private final Map<RegistryKey<World>, Long2ObjectOpenHashMap<Cell>> grids = new HashMap<>();
+    private final Object2IntOpenHashMap<UUID> playerSlots = new Object2IntOpenHashMap<>();
+    private UUID[] slotPlayers = new UUID[INITIAL_SLOTS];
+    private int[] slotHomes = new int[INITIAL_SLOTS];
+    private int[] freeSlots = new int[INITIAL_SLOTS];
+    private int freeCount;
+    private int usedSlots;
+    private int size;
+
+    public HomeSpatialIndex() {
+        playerSlots.defaultReturnValue(PUBLIC);
+    }
+
+    public void add(UUID player, Home home) {
+        Long2ObjectOpenHashMap<Cell> grid = grids.computeIfAbsent(home.getDimension(),
+                dimension -> new Long2ObjectOpenHashMap<>());
+        BlockPos pos = home.getPosition();
+        long key = cellKey(pos.getX() >> CELL_SHIFT, pos.getZ() >> CELL_SHIFT);
+        Cell cell = grid.get(key);
+        if (cell == null) {
+            cell = new Cell();
+            grid.put(key, cell);
+        }
+        int slot = player != null ? acquireSlot(player) : PUBLIC;
+        cell.add(pos.asLong(), slot, home.getName());
+        size++;
+    }
+
+    public void remove(UUID player, Home home) {
+        Long2ObjectOpenHashMap<Cell> grid = grids.get(home.getDimension());
+        if (grid == null) {
+            return;
+        }
+        int slot = PUBLIC;
+        if (player != null) {
+            slot = playerSlots.getInt(player);
+            if (slot == PUBLIC) {
+                return;
+            }
+        }
+
+        BlockPos pos = home.getPosition();
+        long key = cellKey(pos.getX() >> CELL_SHIFT, pos.getZ() >> CELL_SHIFT);
+        Cell cell = grid.get(key);
+        if (cell == null) {
+            return;
+        }
+
+        int index = cell.indexOf(slot, home.getName());
+        if (index >= 0) {
+            cell.removeAt(index);
+            size--;
+            if (slot != PUBLIC) {
+                releaseHome(slot);
+            }
+        }
+        if (cell.size == 0) {
+            grid.remove(key);
+            if (grid.isEmpty()) {
+                grids.remove(home.getDimension());
+            }
+        }
+    }
+
+    /**
+     * Removes every home of the given players. This walks the whole index, so it's meant for batches
+     * of players whose homes aren't known anymore.
+     */
+    public void removePlayers(Set<UUID> players) {
+        boolean[] removed = new boolean[usedSlots];
+        boolean any = false;
+        for (UUID player : players) {
+            int slot = playerSlots.getInt(player);
+            if (slot != PUBLIC) {
+                removed[slot] = true;
+                any = true;
+            }
+        }
+        if (!any) {
+            return;
+        }
+
+        for (Long2ObjectOpenHashMap<Cell> grid : grids.values()) {
+            grid.values().removeIf(cell -> {
+                for (int i = cell.size - 1; i >= 0; i--) {
+                    int slot = cell.players[i];
+                    if (slot != PUBLIC && removed[slot]) {
+                        cell.removeAt(i);
+                        size--;
+                        releaseHome(slot);
+                    }
+                }
+                return cell.size == 0;
+            });
+        }
+        grids.values().removeIf(Map::isEmpty);
+    }
+
+    public void update(UUID player, Home previous, Home current) {
+        if (previous != null) {
+            remove(player, previous);
+        }
+        if (current != null) {
+            add(player, current);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Entry nearest(RegistryKey<World> dimension, double x, double z) {
+        Long2ObjectOpenHashMap<Cell> grid = grids.get(dimension);
+        if (grid == null) {
+            return null;
+        }
+
+        int centerX = (int) Math.floor(x) >> CELL_SHIFT;
+        int centerZ = (int) Math.floor(z) >> CELL_SHIFT;
+        Cell bestCell = null;
+        int bestIndex = -1;
+        double bestDistance = Double.MAX_VALUE;
+        long visited = 0;
+
+        for (int ring = 0; ; ring++) {
+            for (int dx = -ring; dx <= ring; dx++) {
+                boolean edge = dx == -ring || dx == ring;
+                for (int dz = -ring; dz <= ring; dz += edge ? 1 : 2 * ring) {
+                    Cell cell = grid.get(cellKey(centerX + dx, centerZ + dz));
+                    visited++;
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < cell.size; i++) {
+                        double distance = squaredDistance(cell.positions[i], x, z);
+                        if (distance < bestDistance) {
+                            bestCell = cell;
+                            bestIndex = i;
+                            bestDistance = distance;
+                        }
+                    }
+                }
+            }
+
+            // Anything outside this ring is at least `ring` whole cells away.
+            double reach = (double) ring * CELL_SIZE;
+            if (bestCell != null && reach * reach >= bestDistance) {
+                return entry(bestCell, bestIndex);
+            }
+            if (visited > grid.size()) {
+                break;
+            }
+        }
+
+        // The search area has outgrown the occupied cells, so finish with a scan of what's left.
+        for (Cell cell : grid.values()) {
+            for (int i = 0; i < cell.size; i++) {
+                double distance = squaredDistance(cell.positions[i], x, z);
+                if (distance < bestDistance) {
+                    bestCell = cell;
+                    bestIndex = i;
+                    bestDistance = distance;
+                }
+            }
+        }
+        return bestCell != null ? entry(bestCell, bestIndex) : null;
+    }
+
+    /**
+     * Returns the homes within {@code radius} blocks of the given point, closest first.
+     */
+    public List<Entry> within(RegistryKey<World> dimension, double x, double z, double radius) {
+        List<Entry> result = new ArrayList<>();
+        Long2ObjectOpenHashMap<Cell> grid = grids.get(dimension);
+        if (grid == null) {
+            return result;
+        }
+
+        double radiusSquared = radius * radius;
+        int minX = (int) Math.floor(x - radius) >> CELL_SHIFT;
+        int maxX = (int) Math.floor(x + radius) >> CELL_SHIFT;
+        int minZ = (int) Math.floor(z - radius) >> CELL_SHIFT;
+        int maxZ = (int) Math.floor(z + radius) >> CELL_SHIFT;
+        long cells = (long) (maxX - minX + 1) * (maxZ - minZ + 1);
+
+        if (cells <= grid.size()) {
+            for (int cellX = minX; cellX <= maxX; cellX++) {
+                for (int cellZ = minZ; cellZ <= maxZ; cellZ++) {
+                    collect(grid.get(cellKey(cellX, cellZ)), x, z, radiusSquared, result);
+                }
+            }
+        } else {
+            for (Long2ObjectMap.Entry<Cell> cell : grid.long2ObjectEntrySet()) {
+                int cellX = (int) (cell.getLongKey() >> 32);
+                int cellZ = (int) cell.getLongKey();
+                if (cellX >= minX && cellX <= maxX && cellZ >= minZ && cellZ <= maxZ) {
+                    collect(cell.getValue(), x, z, radiusSquared, result);
+                }
+            }
+        }
+
+        result.sort(Comparator.comparingDouble(entry -> entry.squaredDistanceTo(x, z)));
+        return result;
+    }
+
+    private void collect(Cell cell, double x, double z, double radiusSquared, List<Entry> result) {
+        if (cell == null) {
+            return;
+        }
+        for (int i = 0; i < cell.size; i++) {
+            if (squaredDistance(cell.positions[i], x, z) <= radiusSquared) {
+                result.add(entry(cell, i));
+            }
+        }
+    }
+
+    private Entry entry(Cell cell, int index) {
+        int slot = cell.players[index];
+        return new Entry(slot != PUBLIC ? slotPlayers[slot] : null, cell.names[index], cell.positions[index]);
+    }
+
+    private int acquireSlot(UUID player) {
+        int slot = playerSlots.getInt(player);
+        if (slot == PUBLIC) {
+            if (freeCount > 0) {
+                slot = freeSlots[--freeCount];
+            } else {
+                if (usedSlots == slotPlayers.length) {
+                    slotPlayers = Arrays.copyOf(slotPlayers, usedSlots * 2);
+                    slotHomes = Arrays.copyOf(slotHomes, usedSlots * 2);
+                    freeSlots = Arrays.copyOf(freeSlots, usedSlots * 2);
+                }
+                slot = usedSlots++;
+            }
+            slotPlayers[slot] = player;
+            playerSlots.put(player, slot);
+        }
+        slotHomes[slot]++;
+        return slot;
+    }
+
+    private void releaseHome(int slot) {
+        if (--slotHomes[slot] == 0) {
+            playerSlots.removeInt(slotPlayers[slot]);
+            slotPlayers[slot] = null;
+            freeSlots[freeCount++] = slot;
+        }
+    }
+
+    private static double squaredDistance(long position, double x, double z) {
+        double dx = BlockPos.unpackLongX(position) + 0.5 - x;
+        double dz = BlockPos.unpackLongZ(position) + 0.5 - z;
+        return dx * dx + dz * dz;
+    }
+
+    private static long cellKey(int cellX, int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+    }
+}
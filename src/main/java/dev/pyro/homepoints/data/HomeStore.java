@@ -0,0 +1,28 @@
+package dev.pyro.homepoints.data;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Storage behind a {@link PlayerHomesData}, keyed by home name.
+ */
+interface HomeStore {
+    Home get(String name);
+
+    boolean contains(String name);
+
+    /**
+     * Adds or replaces the home with the same name. Returns {@code true} if the name is new.
+     */
+    boolean put(Home home);
+
+    boolean remove(String name);
+
+    int size();
+
+    Collection<Home> homes();
+
+    Set<String> names();
+
+    HomeStore copy();
+}
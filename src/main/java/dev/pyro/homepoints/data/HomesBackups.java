@@ -0,0 +1,471 @@
+package dev.pyro.homepoints.data;
+
+import dev.pyro.homepoints.HomePoints;
+import dev.pyro.homepoints.config.HomePointsConfig;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtSizeTracker;
+import net.minecraft.server.MinecraftServer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Scheduled point-in-time backups of player homes in {@code <world>/homepoints/backups}. Backups form
+ * chains: a chain starts with a base snapshot, one compressed stream holding every player's homes,
+ * and continues with deltas that only list the players changed since the backup before. Each of those
+ * players points at a content-addressed object, so unchanged data isn't written again.
+ * <p>
+ * Backups are written and read on their own thread; the server thread only hands over which players
+ * changed. Once the backups grow past {@code backups.maxSizeMb} whole chains are deleted, oldest
+ * first, but the newest chain is always kept.
+ */
+public class HomesBackups {
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String BASE_FILE = "base.dat";
+    private static final String DELTA_EXTENSION = ".delta";
+    private static final String OBJECTS_DIR = "objects";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int BASE_FORMAT = 1;
+
+    public record Backup(String timestamp, String chain, boolean base) {
+    }
+
+    private final MinecraftServer server;
+    private final HomesManager manager;
+    private final Path directory;
+    private final ExecutorService executor;
+    private final NavigableMap<String, Backup> backups = new ConcurrentSkipListMap<>();
+    // Only used on the backup thread
+    private final NavigableMap<String, Long> chainSizes = new TreeMap<>();
+    private Set<UUID> changedPlayers = new HashSet<>();
+    private int nextBackupTick;
+    private volatile boolean running;
+    private volatile boolean indexed;
+
+    HomesBackups(MinecraftServer server, HomesManager manager, Path directory) {
+        this.server = server;
+        this.manager = manager;
+        this.directory = directory;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "HomePoints-Backup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.nextBackupTick = server.getTicks() + intervalTicks();
+        executor.execute(this::readIndex);
+    }
+
+    private static int intervalTicks() {
+        return HomePointsConfig.backupsIntervalMinutes * 60 * 20;
+    }
+
+    void playerChanged(UUID playerUUID) {
+        if (HomePointsConfig.backupsEnabled) {
+            changedPlayers.add(playerUUID);
+        }
+    }
+
+    public void tick() {
+        if (HomePointsConfig.backupsEnabled && !running && server.getTicks() >= nextBackupTick) {
+            backup();
+        }
+    }
+
+    /**
+     * Starts a backup now. Completes with {@code null} if no player changed since the last backup.
+     *
+     * @throws IllegalStateException if a backup is still being written
+     */
+    public CompletableFuture<Backup> backup() {
+        if (running) {
+            throw new IllegalStateException("A backup is already running");
+        }
+        nextBackupTick = server.getTicks() + intervalTicks();
+
+        List<UUID> changed = new ArrayList<>(changedPlayers);
+        changedPlayers = new HashSet<>();
+        running = true;
+        // Decided on the backup thread, after the index of the existing backups has been read there
+        return CompletableFuture.supplyAsync(() -> {
+            Map.Entry<String, Backup> last = backups.lastEntry();
+            boolean base = last == null || countDeltas(last.getValue().chain()) >= HomePointsConfig.backupsDeltasPerBase;
+            try {
+                if (!base && changed.isEmpty()) {
+                    return null;
+                }
+                String timestamp = nextTimestamp(last != null ? last.getKey() : null);
+                Backup backup = base ? writeBase(timestamp) : writeDelta(last.getValue().chain(), timestamp, changed);
+                backups.put(timestamp, backup);
+                enforceRetention();
+                return backup;
+            } catch (IOException e) {
+                HomePoints.LOGGER.error("Failed to back up homes", e);
+                if (!base) {
+                    server.execute(() -> changedPlayers.addAll(changed));
+                }
+                throw new UncheckedIOException(e);
+            } finally {
+                running = false;
+            }
+        }, executor);
+    }
+
+    /**
+     * Returns the timestamps of all backups, newest first.
+     */
+    public List<String> getTimestamps() {
+        return new ArrayList<>(backups.descendingKeySet());
+    }
+
+    /**
+     * Reads a player's homes as they were in the backup taken at {@code timestamp}, or in the newest
+     * backup before it. Completes with {@code null} if the player had no homes then.
+     *
+     * @throws IllegalArgumentException if there's no backup that old
+     * @throws IllegalStateException     if the existing backups haven't been indexed yet
+     */
+    public CompletableFuture<PlayerHomesData> read(UUID playerUUID, String timestamp) {
+        if (!indexed) {
+            throw new IllegalStateException("The backups are still being indexed, try again in a moment");
+        }
+        Map.Entry<String, Backup> entry = backups.floorEntry(timestamp);
+        if (entry == null) {
+            throw new IllegalArgumentException("There's no backup from " + timestamp + " or earlier");
+        }
+        Backup backup = entry.getValue();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return readPlayer(playerUUID, backup);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    void close() {
+        // Interrupts a backup that is waiting for the server thread, which is the one closing us
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                HomePoints.LOGGER.warn("Timed out waiting for the homes backup to stop");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int countDeltas(String chain) {
+        int deltas = 0;
+        for (Backup backup : backups.tailMap(chain, false).values()) {
+            if (backup.chain().equals(chain)) {
+                deltas++;
+            }
+        }
+        return deltas;
+    }
+
+    private static String nextTimestamp(String last) {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        if (last != null) {
+            Instant previous = LocalDateTime.parse(last, TIMESTAMP).toInstant(ZoneOffset.UTC);
+            if (!now.isAfter(previous)) {
+                now = previous.plusSeconds(1);
+            }
+        }
+        return TIMESTAMP.format(LocalDateTime.ofInstant(now, ZoneOffset.UTC));
+    }
+
+    private Backup writeBase(String timestamp) throws IOException {
+        long started = System.nanoTime();
+        Path chainDir = directory.resolve(timestamp);
+        Path temp = directory.resolve(timestamp + TEMP_SUFFIX);
+        deleteRecursively(temp);
+        Files.createDirectories(temp);
+
+        int[] players = {0};
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(temp.resolve(BASE_FILE)))))) {
+            out.writeInt(BASE_FORMAT);
+            PlayerHomesScan.forEachPlayer(server, manager, (playerUUID, data) -> {
+                if (data.getHomeCount() == 0) {
+                    return;
+                }
+                byte[] bytes = encode(playerUUID, data);
+                out.writeBoolean(true);
+                out.writeLong(playerUUID.getMostSignificantBits());
+                out.writeLong(playerUUID.getLeastSignificantBits());
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                players[0]++;
+            });
+            out.writeBoolean(false);
+        }
+
+        Files.move(temp, chainDir, StandardCopyOption.ATOMIC_MOVE);
+        long size = Files.size(chainDir.resolve(BASE_FILE));
+        chainSizes.put(timestamp, size);
+        HomePoints.LOGGER.info("Backed up homes of {} players ({} KiB) in {} ms", players[0], size / 1024,
+                (System.nanoTime() - started) / 1_000_000);
+        return new Backup(timestamp, timestamp, true);
+    }
+
+    private Backup writeDelta(String chain, String timestamp, List<UUID> players) throws IOException {
+        long started = System.nanoTime();
+        Path chainDir = directory.resolve(chain);
+        Path manifest = chainDir.resolve(timestamp + DELTA_EXTENSION);
+        Path temp = chainDir.resolve(timestamp + DELTA_EXTENSION + TEMP_SUFFIX);
+
+        long[] written = {0};
+        try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(temp)), StandardCharsets.UTF_8))) {
+            PlayerHomesScan.forEachOf(server, manager, players, (playerUUID, data) -> {
+                byte[] bytes = encode(playerUUID, data);
+                String hash = hash(bytes);
+                written[0] += writeObject(chainDir, hash, bytes);
+                out.write(playerUUID + " " + hash);
+                out.newLine();
+            });
+        }
+
+        Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        written[0] += Files.size(manifest);
+        chainSizes.merge(chain, written[0], Long::sum);
+        HomePoints.LOGGER.info("Backed up homes of {} changed players ({} KiB) in {} ms", players.size(),
+                written[0] / 1024, (System.nanoTime() - started) / 1_000_000);
+        return new Backup(timestamp, chain, false);
+    }
+
+    private static byte[] encode(UUID playerUUID, PlayerHomesData data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            NbtIo.write(HomesCodec.encodeShard(playerUUID, data), out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static PlayerHomesData decode(UUID playerUUID, byte[] bytes) throws IOException {
+        NbtCompound nbt = NbtIo.read(new DataInputStream(new ByteArrayInputStream(bytes)),
+                NbtSizeTracker.ofUnlimitedBytes());
+        return HomesCodec.decodeShard(nbt, playerUUID);
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Path objectPath(Path chainDir, String hash) {
+        return chainDir.resolve(OBJECTS_DIR).resolve(hash.substring(0, 2)).resolve(hash + ".dat");
+    }
+
+    /**
+     * Stores an object unless the chain already has it. Returns the number of bytes written.
+     */
+    private static long writeObject(Path chainDir, String hash, byte[] bytes) throws IOException {
+        Path path = objectPath(chainDir, hash);
+        if (Files.exists(path)) {
+            return 0;
+        }
+
+        Files.createDirectories(path.getParent());
+        Path temp = path.resolveSibling(path.getFileName() + TEMP_SUFFIX);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+            out.write(bytes);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return Files.size(path);
+    }
+
+    private PlayerHomesData readPlayer(UUID playerUUID, Backup backup) throws IOException {
+        Path chainDir = directory.resolve(backup.chain());
+        String key = playerUUID.toString();
+
+        // The newest delta that mentions the player wins, otherwise they are as in the base
+        for (Backup delta : backups.subMap(backup.chain(), false, backup.timestamp(), true).descendingMap().values()) {
+            if (!delta.chain().equals(backup.chain())) {
+                continue;
+            }
+            String hash = findInDelta(chainDir.resolve(delta.timestamp() + DELTA_EXTENSION), key);
+            if (hash != null) {
+                try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(objectPath(chainDir, hash)))) {
+                    PlayerHomesData data = decode(playerUUID, in.readAllBytes());
+                    return data.getHomeCount() > 0 ? data : null;
+                }
+            }
+        }
+        return findInBase(chainDir.resolve(BASE_FILE), playerUUID);
+    }
+
+    private static String findInDelta(Path manifest, String key) throws IOException {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(manifest)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.length() > key.length() && line.startsWith(key) && line.charAt(key.length()) == ' ') {
+                    return line.substring(key.length() + 1);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static PlayerHomesData findInBase(Path base, UUID playerUUID) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(base))))) {
+            if (in.readInt() != BASE_FORMAT) {
+                throw new IOException("Unknown backup format in " + base);
+            }
+            while (in.readBoolean()) {
+                long most = in.readLong();
+                long least = in.readLong();
+                int length = in.readInt();
+                if (most == playerUUID.getMostSignificantBits() && least == playerUUID.getLeastSignificantBits()) {
+                    return decode(playerUUID, in.readNBytes(length));
+                }
+                in.skipNBytes(length);
+            }
+        } catch (EOFException e) {
+            throw new IOException("Backup " + base + " is truncated", e);
+        }
+        return null;
+    }
+
+    private void readIndex() {
+        try {
+            readChains();
+        } finally {
+            indexed = true;
+        }
+    }
+
+    private void readChains() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+
+        try (DirectoryStream<Path> chains = Files.newDirectoryStream(directory)) {
+            for (Path chainDir : chains) {
+                String chain = chainDir.getFileName().toString();
+                if (chain.endsWith(TEMP_SUFFIX)) {
+                    // Left over from a backup that was interrupted
+                    deleteRecursively(chainDir);
+                    continue;
+                }
+                if (!isTimestamp(chain) || !Files.exists(chainDir.resolve(BASE_FILE))) {
+                    continue;
+                }
+
+                backups.put(chain, new Backup(chain, chain, true));
+                try (DirectoryStream<Path> deltas = Files.newDirectoryStream(chainDir, "*" + DELTA_EXTENSION)) {
+                    for (Path delta : deltas) {
+                        String fileName = delta.getFileName().toString();
+                        String timestamp = fileName.substring(0, fileName.length() - DELTA_EXTENSION.length());
+                        if (isTimestamp(timestamp)) {
+                            backups.put(timestamp, new Backup(timestamp, chain, false));
+                        }
+                    }
+                }
+                chainSizes.put(chain, sizeOf(chainDir));
+            }
+        } catch (IOException e) {
+            HomePoints.LOGGER.error("Failed to read the homes backups in {}", directory, e);
+        }
+    }
+
+    private static boolean isTimestamp(String text) {
+        try {
+            LocalDateTime.parse(text, TIMESTAMP);
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private void enforceRetention() throws IOException {
+        long limit = HomePointsConfig.backupsMaxSizeMb * 1024L * 1024L;
+        long total = 0;
+        for (long size : chainSizes.values()) {
+            total += size;
+        }
+
+        while (total > limit && chainSizes.size() > 1) {
+            Map.Entry<String, Long> oldest = chainSizes.pollFirstEntry();
+            String chain = oldest.getKey();
+            backups.values().removeIf(backup -> backup.chain().equals(chain));
+            deleteRecursively(directory.resolve(chain));
+            total -= oldest.getValue();
+            HomePoints.LOGGER.info("Deleted the homes backups from {} to stay under {} MiB", chain,
+                    HomePointsConfig.backupsMaxSizeMb);
+        }
+    }
+
+    private static long sizeOf(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).mapToLong(path -> {
+                try {
+                    return Files.size(path);
+                } catch (IOException e) {
+                    return 0;
+                }
+            }).sum();
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
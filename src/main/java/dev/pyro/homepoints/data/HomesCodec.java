@@ -0,0 +1,357 @@
+package dev.pyro.homepoints.data;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.nbt.NbtString;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Versioned on-disk format for homes. Version 1 is the original layout with one compound per home;
+ * version 2 stores each set of homes as parallel columns and interns dimensions and owners in
+ * per-file tables. Owners are stored as UUIDs, except for the few that aren't one, which are
+ * flagged and kept as strings.
+ */
+public final class HomesCodec {
+    public static final int LEGACY_FORMAT = 1;
+    public static final int CURRENT_FORMAT = 2;
+
+    private static final String FORMAT_KEY = "format";
+    private static final int MAX_BYTE_INDEX = 256;
+    private static final byte OWNER_EXTERNAL = 1;
+
+    private HomesCodec() {
+    }
+
+    public static int getFormat(NbtCompound nbt) {
+        return nbt.contains(FORMAT_KEY) ? nbt.getInt(FORMAT_KEY) : LEGACY_FORMAT;
+    }
+
+    public static class DimensionTable {
+        private final List<RegistryKey<World>> keys = new ArrayList<>();
+        private final Map<RegistryKey<World>, Integer> indices = new HashMap<>();
+
+        public int indexOf(RegistryKey<World> dimension) {
+            Integer index = indices.get(dimension);
+            if (index == null) {
+                index = keys.size();
+                keys.add(dimension);
+                indices.put(dimension, index);
+            }
+            return index;
+        }
+
+        public RegistryKey<World> get(int index) {
+            return keys.get(index);
+        }
+
+        public int size() {
+            return keys.size();
+        }
+
+        public void writeTo(NbtCompound nbt) {
+            NbtList list = new NbtList();
+            for (RegistryKey<World> key : keys) {
+                list.add(NbtString.of(key.getValue().toString()));
+            }
+            nbt.put("dimensions", list);
+        }
+
+        public DimensionTable readFrom(NbtCompound nbt) {
+            NbtList list = nbt.getList("dimensions");
+            for (int i = 0; i < list.size(); i++) {
+                indexOf(DimensionKeys.of(list.getString(i)));
+            }
+            return this;
+        }
+    }
+
+    public static class OwnerTable {
+        private final List<String> owners = new ArrayList<>();
+        private final Map<String, Integer> indices = new HashMap<>();
+
+        public int indexOf(String owner) {
+            Integer index = indices.get(owner);
+            if (index == null) {
+                index = owners.size();
+                owners.add(owner);
+                indices.put(owner, index);
+            }
+            return index;
+        }
+
+        public String get(int index) {
+            return owners.get(index);
+        }
+
+        public int size() {
+            return owners.size();
+        }
+
+        public void writeTo(NbtCompound nbt) {
+            long[] ids = new long[owners.size() * 2];
+            byte[] flags = null;
+            NbtList external = new NbtList();
+            for (int i = 0; i < owners.size(); i++) {
+                UUID uuid = parseUuid(owners.get(i));
+                if (uuid == null) {
+                    // Imported or hand-edited owners aren't always UUIDs, they are kept as written
+                    if (flags == null) {
+                        flags = new byte[owners.size()];
+                    }
+                    flags[i] = OWNER_EXTERNAL;
+                    external.add(NbtString.of(owners.get(i)));
+                    continue;
+                }
+                ids[i * 2] = uuid.getMostSignificantBits();
+                ids[i * 2 + 1] = uuid.getLeastSignificantBits();
+            }
+            nbt.putLongArray("owners", ids);
+            if (flags != null) {
+                nbt.putByteArray("ownerFlags", flags);
+                nbt.put("externalOwners", external);
+            }
+        }
+
+        public OwnerTable readFrom(NbtCompound nbt) {
+            long[] ids = nbt.getLongArray("owners");
+            byte[] flags = nbt.contains("ownerFlags") ? nbt.getByteArray("ownerFlags") : new byte[0];
+            NbtList external = nbt.getList("externalOwners");
+            int nextExternal = 0;
+            for (int i = 0; i + 1 < ids.length; i += 2) {
+                if (i / 2 < flags.length && (flags[i / 2] & OWNER_EXTERNAL) != 0) {
+                    indexOf(external.getString(nextExternal++));
+                } else {
+                    indexOf(new UUID(ids[i], ids[i + 1]).toString());
+                }
+            }
+            return this;
+        }
+    }
+
+    public static NbtCompound encodeHomes(Collection<Home> homes, String impliedOwner,
+                                          DimensionTable dimensions, OwnerTable owners) {
+        int size = homes.size();
+        NbtList names = new NbtList();
+        long[] positions = new long[size];
+        int[] dimensionIndices = new int[size];
+        long[] rotations = new long[size];
+        int[] ownerIndices = null;
+        for (Home home : homes) {
+            if (!home.getOwner().equals(impliedOwner)) {
+                ownerIndices = new int[size];
+                break;
+            }
+        }
+
+        int i = 0;
+        for (Home home : homes) {
+            names.add(NbtString.of(home.getName()));
+            positions[i] = home.getPosition().asLong();
+            dimensionIndices[i] = dimensions.indexOf(home.getDimension());
+            rotations[i] = packRotation(home.getYaw(), home.getPitch());
+            if (ownerIndices != null) {
+                ownerIndices[i] = owners.indexOf(home.getOwner());
+            }
+            i++;
+        }
+
+        NbtCompound nbt = new NbtCompound();
+        nbt.put("names", names);
+        nbt.putLongArray("pos", positions);
+        nbt.putLongArray("rot", rotations);
+        if (dimensions.size() <= MAX_BYTE_INDEX) {
+            nbt.putByteArray("dim", toBytes(dimensionIndices));
+        } else {
+            nbt.putIntArray("dimWide", dimensionIndices);
+        }
+        if (ownerIndices != null) {
+            nbt.putIntArray("owner", ownerIndices);
+        }
+        return nbt;
+    }
+
+    public static int countHomes(NbtCompound nbt) {
+        return nbt.getList("names").size();
+    }
+
+    public static void decodeHomes(NbtCompound nbt, String impliedOwner, DimensionTable dimensions,
+                                   OwnerTable owners, Consumer<Home> sink) {
+        NbtList names = nbt.getList("names");
+        long[] positions = nbt.getLongArray("pos");
+        long[] rotations = nbt.getLongArray("rot");
+        int[] dimensionIndices = dimensionIndices(nbt);
+        int[] ownerIndices = ownerIndices(nbt);
+
+        for (int i = 0; i < names.size(); i++) {
+            String owner = ownerIndices != null ? owners.get(ownerIndices[i]) : impliedOwner;
+            sink.accept(new Home(
+                    names.getString(i),
+                    BlockPos.fromLong(positions[i]),
+                    dimensions.get(dimensionIndices[i]),
+                    unpackYaw(rotations[i]),
+                    unpackPitch(rotations[i]),
+                    owner
+            ));
+        }
+    }
+
+    /**
+     * Returns the dimension table index of each home in a compound written by {@link #encodeHomes}.
+     */
+    public static int[] dimensionIndices(NbtCompound nbt) {
+        return nbt.contains("dimWide") ? nbt.getIntArray("dimWide") : fromBytes(nbt.getByteArray("dim"));
+    }
+
+    /**
+     * Returns the owner table index of each home in a compound written by {@link #encodeHomes}, or
+     * {@code null} if every home belongs to the implied owner.
+     */
+    public static int[] ownerIndices(NbtCompound nbt) {
+        return nbt.contains("owner") ? nbt.getIntArray("owner") : null;
+    }
+
+    /**
+     * Points the dimension and owner indices of a compound written by {@link #encodeHomes} at other
+     * tables. Returns the compound itself if no index changes, otherwise a new compound sharing its
+     * other columns.
+     */
+    public static NbtCompound remapHomes(NbtCompound nbt, DimensionTable fromDimensions, OwnerTable fromOwners,
+                                         DimensionTable dimensions, OwnerTable owners) {
+        int[] dimensionIndices = dimensionIndices(nbt);
+        int[] ownerIndices = ownerIndices(nbt);
+        boolean changed = false;
+        int[] remappedDimensions = new int[dimensionIndices.length];
+        for (int i = 0; i < dimensionIndices.length; i++) {
+            remappedDimensions[i] = dimensions.indexOf(fromDimensions.get(dimensionIndices[i]));
+            changed |= remappedDimensions[i] != dimensionIndices[i];
+        }
+        if (ownerIndices != null) {
+            int[] remapped = new int[ownerIndices.length];
+            for (int i = 0; i < ownerIndices.length; i++) {
+                remapped[i] = owners.indexOf(fromOwners.get(ownerIndices[i]));
+                changed |= remapped[i] != ownerIndices[i];
+            }
+            ownerIndices = remapped;
+        }
+        if (!changed) {
+            return nbt;
+        }
+
+        NbtCompound remapped = new NbtCompound();
+        for (String key : nbt.getKeys()) {
+            if (!key.equals("dim") && !key.equals("dimWide") && !key.equals("owner")) {
+                remapped.put(key, nbt.get(key));
+            }
+        }
+        if (dimensions.size() <= MAX_BYTE_INDEX) {
+            remapped.putByteArray("dim", toBytes(remappedDimensions));
+        } else {
+            remapped.putIntArray("dimWide", remappedDimensions);
+        }
+        if (ownerIndices != null) {
+            remapped.putIntArray("owner", ownerIndices);
+        }
+        return remapped;
+    }
+
+    public static NbtCompound encodePlayer(UUID playerUUID, PlayerHomesData data,
+                                           DimensionTable dimensions, OwnerTable owners) {
+        NbtCompound nbt = encodeHomes(data.getHomes(), playerUUID.toString(), dimensions, owners);
+        nbt.putLongArray("id", new long[]{playerUUID.getMostSignificantBits(), playerUUID.getLeastSignificantBits()});
+        return nbt;
+    }
+
+    public static UUID readPlayerId(NbtCompound nbt) {
+        long[] id = nbt.getLongArray("id");
+        return new UUID(id[0], id[1]);
+    }
+
+    public static PlayerHomesData decodePlayer(NbtCompound nbt, UUID playerUUID,
+                                               DimensionTable dimensions, OwnerTable owners) {
+        PlayerHomesData data = new PlayerHomesData(countHomes(nbt));
+        decodeHomes(nbt, playerUUID.toString(), dimensions, owners, data::putHome);
+        return data;
+    }
+
+    public static NbtCompound encodeShard(UUID playerUUID, PlayerHomesData data) {
+        DimensionTable dimensions = new DimensionTable();
+        OwnerTable owners = new OwnerTable();
+        NbtCompound nbt = encodeHomes(data.getHomes(), playerUUID.toString(), dimensions, owners);
+        writeHeader(nbt, dimensions, owners);
+        return nbt;
+    }
+
+    public static PlayerHomesData decodeShard(NbtCompound nbt, UUID playerUUID) {
+        if (getFormat(nbt) == LEGACY_FORMAT) {
+            return PlayerHomesData.fromNbt(nbt);
+        }
+        return decodePlayer(nbt, playerUUID, new DimensionTable().readFrom(nbt), new OwnerTable().readFrom(nbt));
+    }
+
+    /**
+     * Decodes just the public homes of a {@code homes.dat} compound, keyed by name.
+     */
+    public static Map<String, Home> decodePublicHomes(NbtCompound nbt) {
+        if (getFormat(nbt) == LEGACY_FORMAT) {
+            return new HashMap<>(PublicHomesData.fromNbt(nbt.getCompound("publicHomes")).asMap());
+        }
+        NbtCompound publicNbt = nbt.getCompound("public");
+        Map<String, Home> homes = HashMap.newHashMap(countHomes(publicNbt));
+        decodeHomes(publicNbt, null, new DimensionTable().readFrom(nbt), new OwnerTable().readFrom(nbt),
+                home -> homes.put(home.getName(), home));
+        return homes;
+    }
+
+    public static void writeHeader(NbtCompound nbt, DimensionTable dimensions, OwnerTable owners) {
+        nbt.putInt(FORMAT_KEY, CURRENT_FORMAT);
+        dimensions.writeTo(nbt);
+        owners.writeTo(nbt);
+    }
+
+    private static UUID parseUuid(String text) {
+        try {
+            UUID uuid = UUID.fromString(text);
+            return uuid.toString().equals(text) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static long packRotation(float yaw, float pitch) {
+        return ((long) Float.floatToRawIntBits(yaw) << 32) | (Float.floatToRawIntBits(pitch) & 0xFFFFFFFFL);
+    }
+
+    private static float unpackYaw(long rotation) {
+        return Float.intBitsToFloat((int) (rotation >>> 32));
+    }
+
+    private static float unpackPitch(long rotation) {
+        return Float.intBitsToFloat((int) rotation);
+    }
+
+    private static byte[] toBytes(int[] values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    private static int[] fromBytes(byte[] bytes) {
+        int[] values = new int[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            values[i] = bytes[i] & 0xFF;
+        }
+        return values;
+    }
+}
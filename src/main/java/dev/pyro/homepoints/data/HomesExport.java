@@ -0,0 +1,99 @@
+package dev.pyro.homepoints.data;
+
+import dev.pyro.homepoints.HomePoints;
+import dev.pyro.homepoints.transfer.HomeRecord;
+import dev.pyro.homepoints.transfer.HomeRecordWriter;
+import dev.pyro.homepoints.transfer.TransferFormat;
+import net.minecraft.server.MinecraftServer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Streams every home to a file on a background thread, reading players through {@link PlayerHomesScan}
+ * so memory use stays flat however many homes there are. Homes changed while the export runs may or
+ * may not be included.
+ */
+public final class HomesExport {
+    private static volatile boolean running;
+
+    private final MinecraftServer server;
+    private final HomesManager manager;
+    private long players;
+    private long homes;
+    private long publicHomes;
+
+    public record Result(long players, long homes, long publicHomes, long durationNanos) {
+    }
+
+    private HomesExport(MinecraftServer server, HomesManager manager) {
+        this.server = server;
+        this.manager = manager;
+    }
+
+    /**
+     * Starts writing all homes to {@code file}. The file is only replaced once the export is complete.
+     *
+     * @throws IllegalStateException if another export is still running
+     */
+    public static CompletableFuture<Result> start(MinecraftServer server, Path file, TransferFormat format) {
+        if (running) {
+            throw new IllegalStateException("An export is already running");
+        }
+        running = true;
+
+        HomesExport export = new HomesExport(server, HomesManager.get(server));
+        CompletableFuture<Result> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                result.complete(export.run(file, format));
+            } catch (Exception e) {
+                HomePoints.LOGGER.error("Failed to export homes to {}", file, e);
+                result.completeExceptionally(e);
+            } finally {
+                running = false;
+            }
+        }, "HomePoints-Export");
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    private Result run(Path file, TransferFormat format) throws IOException {
+        long started = System.nanoTime();
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (HomeRecordWriter writer = format.openWriter(temp)) {
+            List<Home> publicCopy = PlayerHomesScan.onServerThread(server,
+                    () -> List.copyOf(manager.getPublicHomesData().getPublicHomes()));
+            for (Home home : publicCopy) {
+                writer.write(new HomeRecord(null, home));
+                publicHomes++;
+            }
+
+            PlayerHomesScan.forEachPlayer(server, manager, (playerUUID, data) -> {
+                for (Home home : data.getHomes()) {
+                    writer.write(new HomeRecord(playerUUID, home));
+                    homes++;
+                }
+                if (data.getHomeCount() > 0) {
+                    players++;
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        long duration = System.nanoTime() - started;
+        HomePoints.LOGGER.info("Exported {} homes of {} players and {} public homes to {} in {} ms",
+                homes, players, publicHomes, file, duration / 1_000_000);
+        return new Result(players, homes, publicHomes, duration);
+    }
+}
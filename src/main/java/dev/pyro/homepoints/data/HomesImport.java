@@ -0,0 +1,184 @@
+package dev.pyro.homepoints.data;
+
+import dev.pyro.homepoints.HomePoints;
+import dev.pyro.homepoints.config.HomePointsConfig;
+import dev.pyro.homepoints.transfer.HomeRecord;
+import dev.pyro.homepoints.transfer.HomeRecordReader;
+import dev.pyro.homepoints.transfer.TransferFormat;
+import net.minecraft.server.MinecraftServer;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads homes from a file on a background thread and applies them on the server thread over as
+ * many ticks as it takes. Only a few batches are ever queued between the two, so the reader waits
+ * whenever the server falls behind and memory use doesn't grow with the file.
+ * <p>
+ * Imported homes replace homes of the same name and are not journaled one by one; the manager is
+ * marked dirty and saved once the import is done. With sharded or SQL storage it is also saved every
+ * {@code storage.playerCacheSize} imported players, so they can be evicted again.
+ */
+public final class HomesImport {
+    private static final int BATCH_SIZE = 1024;
+    private static final int QUEUED_BATCHES = 8;
+    private static final long TICK_BUDGET_NANOS = 5_000_000L;
+    private static final long QUEUE_POLL_MILLIS = 100;
+    private static final List<HomeRecord> END = List.of();
+
+    private static HomesImport current;
+
+    private final MinecraftServer server;
+    private final HomesManager manager;
+    private final BlockingQueue<List<HomeRecord>> batches = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+    private final CompletableFuture<Result> result = new CompletableFuture<>();
+    private final long started = System.nanoTime();
+    private volatile boolean cancelled;
+    private volatile Exception failure;
+    private volatile long skipped;
+    private long homes;
+    private long publicHomes;
+    private long rejected;
+    private UUID lastPlayer;
+    private int playersSinceFlush;
+
+    public record Result(long homes, long publicHomes, long rejected, long skipped, long durationNanos) {
+    }
+
+    private HomesImport(MinecraftServer server, HomesManager manager) {
+        this.server = server;
+        this.manager = manager;
+    }
+
+    /**
+     * Starts importing from {@code path}. The returned future completes on the server thread.
+     *
+     * @throws IllegalStateException if another import is still running
+     */
+    public static CompletableFuture<Result> start(MinecraftServer server, Path path, TransferFormat format) {
+        if (current != null) {
+            throw new IllegalStateException("An import is already running");
+        }
+
+        HomesImport homesImport = new HomesImport(server, HomesManager.get(server));
+        current = homesImport;
+        Thread thread = new Thread(() -> homesImport.read(path, format), "HomePoints-Import");
+        thread.setDaemon(true);
+        thread.start();
+        return homesImport.result;
+    }
+
+    public static void tick(MinecraftServer server) {
+        if (current != null && current.server == server) {
+            current.apply();
+        }
+    }
+
+    public static void clear() {
+        if (current != null) {
+            current.cancelled = true;
+            current.result.cancel(false);
+            current = null;
+        }
+    }
+
+    private void read(Path path, TransferFormat format) {
+        try (HomeRecordReader reader = format.openReader(path)) {
+            List<HomeRecord> batch = new ArrayList<>(BATCH_SIZE);
+            HomeRecord record;
+            while ((record = reader.next()) != null) {
+                batch.add(record);
+                if (batch.size() >= BATCH_SIZE) {
+                    skipped = reader.getSkipped();
+                    if (!enqueue(batch)) {
+                        return;
+                    }
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            skipped = reader.getSkipped();
+            if (!batch.isEmpty() && !enqueue(batch)) {
+                return;
+            }
+        } catch (Exception e) {
+            HomePoints.LOGGER.error("Failed to import homes from {}", path, e);
+            failure = e;
+        }
+        enqueue(END);
+    }
+
+    private boolean enqueue(List<HomeRecord> batch) {
+        try {
+            while (!cancelled) {
+                if (batches.offer(batch, QUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private void apply() {
+        long deadline = System.nanoTime() + TICK_BUDGET_NANOS;
+        do {
+            List<HomeRecord> batch = batches.poll();
+            if (batch == null) {
+                return;
+            }
+            if (batch == END) {
+                finish();
+                return;
+            }
+            applyBatch(batch);
+        } while (System.nanoTime() < deadline);
+    }
+
+    private void applyBatch(List<HomeRecord> batch) {
+        for (HomeRecord record : batch) {
+            if (record.isPublic()) {
+                manager.importPublicHome(record.home());
+                publicHomes++;
+                continue;
+            }
+
+            if (!record.player().equals(lastPlayer)) {
+                lastPlayer = record.player();
+                playersSinceFlush++;
+            }
+            if (manager.importPlayerHome(record.player(), record.home())) {
+                homes++;
+            } else {
+                rejected++;
+            }
+        }
+
+        if (manager.getStorage() != null && playersSinceFlush >= HomePointsConfig.playerCacheSize) {
+            playersSinceFlush = 0;
+            manager.markDirty();
+            manager.save();
+        }
+    }
+
+    private void finish() {
+        current = null;
+        manager.markDirty();
+        manager.save();
+
+        if (failure != null) {
+            result.completeExceptionally(failure);
+            return;
+        }
+        long duration = System.nanoTime() - started;
+        HomePoints.LOGGER.info("Imported {} homes and {} public homes in {} ms ({} over the home limit, {} skipped)",
+                homes, publicHomes, duration / 1_000_000, rejected, skipped);
+        result.complete(new Result(homes, publicHomes, rejected, skipped, duration));
+    }
+}
@@ -0,0 +1,373 @@
+package dev.pyro.homepoints.data;
+
+import dev.pyro.homepoints.HomePoints;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+public class HomesJournal {
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+    private static final int MAX_RECORD_SIZE = 1 << 16;
+
+    private static final byte SET_PLAYER_HOME = 1;
+    private static final byte DELETE_PLAYER_HOME = 2;
+    private static final byte SET_PUBLIC_HOME = 3;
+    private static final byte DELETE_PUBLIC_HOME = 4;
+
+    public interface Replayer {
+        void setPlayerHome(UUID playerUUID, Home home);
+
+        void deletePlayerHome(UUID playerUUID, String homeName);
+
+        void setPublicHome(Home home);
+
+        void deletePublicHome(String homeName);
+    }
+
+    private final Path directory;
+    private final List<Long> replaySegments;
+    private final long compactThreshold;
+    private final Runnable compactionTrigger;
+    private final ScheduledExecutorService flusher;
+    private final Object bufferLock = new Object();
+    private final Object ioLock = new Object();
+    private final ByteArrayOutputStream scratch = new ByteArrayOutputStream();
+    private final DataOutputStream scratchOut = new DataOutputStream(scratch);
+    private final CRC32 crc = new CRC32();
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private FileChannel channel;
+    private long segment;
+    private volatile long segmentSize;
+    // Bytes past segmentSize may be in the file from a failed commit
+    private boolean torn;
+    private volatile boolean compactionRequested;
+    private volatile long recordsAppended;
+    private volatile long groupCommits;
+
+    private HomesJournal(Path directory, List<Long> replaySegments, long segment,
+                         long commitIntervalMs, long compactThreshold, Runnable compactionTrigger) throws IOException {
+        this.directory = directory;
+        this.replaySegments = replaySegments;
+        this.compactThreshold = compactThreshold;
+        this.compactionTrigger = compactionTrigger;
+        this.segment = segment;
+        this.channel = openSegment(segment);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "HomePoints-Journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::commit, commitIntervalMs, commitIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public static HomesJournal open(Path directory, long commitIntervalMs, long compactThreshold,
+                                    Runnable compactionTrigger) throws IOException {
+        Files.createDirectories(directory);
+        List<Long> segments = listSegments(directory);
+        long next = segments.isEmpty() ? 0 : segments.get(segments.size() - 1) + 1;
+        return new HomesJournal(directory, segments, next, commitIntervalMs, compactThreshold, compactionTrigger);
+    }
+
+    private static List<Long> listSegments(Path directory) throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .forEach(name -> {
+                        try {
+                            segments.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+                        } catch (NumberFormatException ignored) {
+                        }
+                    });
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(PREFIX + String.format("%012d", number) + SUFFIX);
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(segmentPath(number), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    public int replay(Replayer replayer) {
+        int records = 0;
+        for (long number : replaySegments) {
+            Path path = segmentPath(number);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                records += replaySegment(in, replayer, path);
+            } catch (IOException e) {
+                HomePoints.LOGGER.error("Failed to replay {}", path, e);
+            }
+        }
+        return records;
+    }
+
+    private static int replaySegment(DataInputStream in, Replayer replayer, Path path) throws IOException {
+        int records = 0;
+        CRC32 checksum = new CRC32();
+        while (true) {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return records;
+            }
+
+            byte[] payload = new byte[Math.max(0, Math.min(length, MAX_RECORD_SIZE))];
+            try {
+                in.readFully(payload);
+                checksum.reset();
+                checksum.update(payload);
+                if (length != payload.length || (int) checksum.getValue() != in.readInt()) {
+                    HomePoints.LOGGER.warn("Corrupt record in {} after {} records, ignoring the rest", path, records);
+                    return records;
+                }
+            } catch (EOFException e) {
+                HomePoints.LOGGER.warn("Truncated record in {} after {} records, ignoring it", path, records);
+                return records;
+            }
+
+            applyRecord(new DataInputStream(new ByteArrayInputStream(payload)), replayer);
+            records++;
+        }
+    }
+
+    private static void applyRecord(DataInput in, Replayer replayer) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case SET_PLAYER_HOME -> replayer.setPlayerHome(readUuid(in), readHome(in));
+            case DELETE_PLAYER_HOME -> replayer.deletePlayerHome(readUuid(in), in.readUTF());
+            case SET_PUBLIC_HOME -> replayer.setPublicHome(readHome(in));
+            case DELETE_PUBLIC_HOME -> replayer.deletePublicHome(in.readUTF());
+            default -> throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    public void logSetPlayerHome(UUID playerUUID, Home home) {
+        append(out -> {
+            out.writeByte(SET_PLAYER_HOME);
+            writeUuid(out, playerUUID);
+            writeHome(out, home);
+        });
+    }
+
+    public void logDeletePlayerHome(UUID playerUUID, String homeName) {
+        append(out -> {
+            out.writeByte(DELETE_PLAYER_HOME);
+            writeUuid(out, playerUUID);
+            out.writeUTF(homeName);
+        });
+    }
+
+    public void logSetPublicHome(Home home) {
+        append(out -> {
+            out.writeByte(SET_PUBLIC_HOME);
+            writeHome(out, home);
+        });
+    }
+
+    public void logDeletePublicHome(String homeName) {
+        append(out -> {
+            out.writeByte(DELETE_PUBLIC_HOME);
+            out.writeUTF(homeName);
+        });
+    }
+
+    private interface RecordWriter {
+        void write(DataOutput out) throws IOException;
+    }
+
+    private void append(RecordWriter writer) {
+        synchronized (bufferLock) {
+            try {
+                scratch.reset();
+                writer.write(scratchOut);
+                crc.reset();
+                crc.update(scratch.toByteArray());
+
+                DataOutputStream out = new DataOutputStream(buffer);
+                out.writeInt(scratch.size());
+                scratch.writeTo(out);
+                out.writeInt((int) crc.getValue());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            recordsAppended++;
+        }
+    }
+
+    private void commit() {
+        try {
+            synchronized (ioLock) {
+                writePending();
+            }
+        } catch (IOException e) {
+            HomePoints.LOGGER.error("Failed to write homes journal", e);
+        }
+
+        if (segmentSize >= compactThreshold && !compactionRequested) {
+            compactionRequested = true;
+            compactionTrigger.run();
+        }
+    }
+
+    private void writePending() throws IOException {
+        ByteArrayOutputStream pending;
+        synchronized (bufferLock) {
+            if (buffer.size() == 0 && !torn) {
+                return;
+            }
+            pending = buffer;
+            buffer = new ByteArrayOutputStream(Math.max(256, pending.size()));
+        }
+
+        try {
+            if (torn) {
+                channel.truncate(segmentSize);
+                torn = false;
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(pending.toByteArray());
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            // A half-written record would end the replay of this segment early, so the file is cut back
+            // to the last commit and the records go back in front of those appended since
+            torn = true;
+            try {
+                channel.truncate(segmentSize);
+                torn = false;
+            } catch (IOException truncateError) {
+                e.addSuppressed(truncateError);
+            }
+            synchronized (bufferLock) {
+                buffer.writeTo(pending);
+                buffer = pending;
+            }
+            throw e;
+        }
+        segmentSize += pending.size();
+        groupCommits++;
+    }
+
+    public long rotate() {
+        synchronized (ioLock) {
+            long finished = segment;
+            try {
+                writePending();
+                channel.close();
+                segment++;
+                channel = openSegment(segment);
+            } catch (IOException e) {
+                HomePoints.LOGGER.error("Failed to rotate homes journal", e);
+                return -1;
+            }
+            segmentSize = 0;
+            compactionRequested = false;
+            return finished;
+        }
+    }
+
+    public void deleteThrough(long last) {
+        try {
+            for (long number : listSegments(directory)) {
+                if (number <= last) {
+                    Files.deleteIfExists(segmentPath(number));
+                }
+            }
+        } catch (IOException e) {
+            HomePoints.LOGGER.error("Failed to delete old homes journal segments", e);
+        }
+    }
+
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (ioLock) {
+            try {
+                writePending();
+                channel.close();
+                if (segmentSize == 0) {
+                    Files.deleteIfExists(segmentPath(segment));
+                }
+            } catch (IOException e) {
+                HomePoints.LOGGER.error("Failed to close homes journal", e);
+            }
+        }
+    }
+
+    public long getRecordsAppended() {
+        return recordsAppended;
+    }
+
+    public long getGroupCommits() {
+        return groupCommits;
+    }
+
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    private static void writeUuid(DataOutput out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static void writeHome(DataOutput out, Home home) throws IOException {
+        out.writeUTF(home.getName());
+        out.writeLong(home.getPosition().asLong());
+        out.writeUTF(home.getDimension().getValue().toString());
+        out.writeFloat(home.getYaw());
+        out.writeFloat(home.getPitch());
+        out.writeUTF(home.getOwner());
+    }
+
+    private static Home readHome(DataInput in) throws IOException {
+        String name = in.readUTF();
+        BlockPos pos = BlockPos.fromLong(in.readLong());
+        RegistryKey<World> dimension = DimensionKeys.of(in.readUTF());
+        float yaw = in.readFloat();
+        float pitch = in.readFloat();
+        String owner = in.readUTF();
+        return new Home(name, pos, dimension, yaw, pitch, owner);
+    }
+}
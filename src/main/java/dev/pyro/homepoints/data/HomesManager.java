@@ -1,114 +1,795 @@
 package dev.pyro.homepoints.data;
 
+import dev.pyro.homepoints.HomePoints;
+import dev.pyro.homepoints.config.HomePointsConfig;
+import dev.pyro.homepoints.metrics.LoadEvent;
+import dev.pyro.homepoints.metrics.Metrics;
 import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
 import net.minecraft.nbt.NbtList;
-import net.minecraft.registry.RegistryWrapper;
+import net.minecraft.nbt.NbtSizeTracker;
+import net.minecraft.registry.RegistryKey;
 import net.minecraft.server.MinecraftServer;
-import net.minecraft.world.PersistentState;
-import net.minecraft.world.PersistentStateManager;
+import net.minecraft.util.WorldSavePath;
+import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.World;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
-public class HomesManager extends PersistentState {
-    private static final String DATA_NAME = "homepoints_data";
+/**
+ * Owns all homes of the running server. Everything here, including the data objects it hands out,
+ * belongs to the server thread; other threads read through {@link dev.pyro.homepoints.api.HomePointsApi}.
+ */
+public class HomesManager {
+    private static final String LEGACY_DATA_NAME = "homepoints_data";
+    private static final String DATA_FILE = "homes.dat";
+    private static final int INDEX_BATCH_SIZE = 256;
 
-    private final Map<UUID, PlayerHomesData> playerHomes;
-    private final PublicHomesData publicHomes;
+    private static HomesManager instance;
 
-    public HomesManager() {
-        this.playerHomes = new HashMap<>();
+    private final MinecraftServer server;
+    private Map<UUID, PlayerHomesData> playerHomes;
+    private PublicHomesData publicHomes;
+    private final Set<UUID> onlinePlayers;
+    private final Set<UUID> dirtyPlayers;
+    private final HomesStorage storage;
+    private HomesSaver saver;
+    private HomesJournal journal;
+    private SharedHomesDirectory shared;
+    private final HomeSpatialIndex playerIndex;
+    private final HomeSpatialIndex publicIndex;
+    private Set<UUID> indexingPlayers;
+    private final HomesViews views;
+    private final HomesBackups backups;
+    private boolean spatialIndexComplete;
+    private boolean dirty;
+    private boolean mainFileStale;
+    private volatile boolean closed;
+
+    private HomesManager(MinecraftServer server, HomesStorage storage) {
+        this.server = server;
+        this.playerHomes = newPlayerMap(storage != null, 0);
         this.publicHomes = new PublicHomesData();
+        this.onlinePlayers = new HashSet<>();
+        this.dirtyPlayers = new HashSet<>();
+        this.storage = storage;
+        this.playerIndex = new HomeSpatialIndex();
+        this.publicIndex = new HomeSpatialIndex();
+        this.views = new HomesViews(server, this);
+        this.backups = new HomesBackups(server, this,
+                server.getSavePath(WorldSavePath.ROOT).resolve("homepoints").resolve("backups"));
+    }
+
+    private static HomesStorage openStorage(MinecraftServer server, SharedHomesDirectory shared) {
+        return switch (HomePointsConfig.storageMode) {
+            case SINGLE -> null;
+            case SHARDED -> shared != null ? shared.openStore() : PlayerShardStore.forServer(server);
+            case SQL -> {
+                try {
+                    yield SqlHomesStorage.forServer(server);
+                } catch (IOException e) {
+                    // Carrying on with empty homes would overwrite them on the next save
+                    throw new IllegalStateException("Failed to open the homes database", e);
+                }
+            }
+            case MAPPED -> {
+                try {
+                    yield MappedHomesStorage.forServer(server, HomePointsConfig.mappedFlushIntervalMs);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to open the homes record file", e);
+                }
+            }
+        };
+    }
+
+    private static Map<UUID, PlayerHomesData> newPlayerMap(boolean sharded, int expectedPlayers) {
+        if (sharded) {
+            return new LinkedHashMap<>(Math.max(16, (int) Math.ceil(expectedPlayers / 0.75)), 0.75f, true);
+        }
+        return HashMap.newHashMap(expectedPlayers);
     }
 
     public static HomesManager get(MinecraftServer server) {
-        PersistentStateManager manager = server.getWorld(World.OVERWORLD).getPersistentStateManager();
-        return manager.getOrCreate(
-                HomesManager::new,
-                HomesManager::fromNbt,
-                DATA_NAME
-        );
+        if (instance == null || instance.server != server) {
+            instance = load(server);
+        }
+        return instance;
     }
 
-    public static HomesManager fromNbt(NbtCompound nbt, RegistryWrapper.WrapperLookup registryLookup) {
-        HomesManager manager = new HomesManager();
+    public static void unload(MinecraftServer server) {
+        if (instance != null && instance.server == server) {
+            instance.close();
+            instance = null;
+        }
+    }
 
-        if (nbt.contains("playerHomes")) {
-            NbtList playerList = nbt.getList("playerHomes");
-            for (int i = 0; i < playerList.size(); i++) {
-                NbtCompound playerNbt = playerList.getCompound(i);
-                UUID playerUUID = UUID.fromString(playerNbt.getString("uuid"));
-                PlayerHomesData data = PlayerHomesData.fromNbt(playerNbt.getCompound("data"));
-                manager.playerHomes.put(playerUUID, data);
+    private static HomesManager load(MinecraftServer server) {
+        Path worldDir = server.getSavePath(WorldSavePath.ROOT);
+        SharedHomesDirectory shared = SharedHomesDirectory.fromConfig();
+        Path mainFile = shared != null ? shared.getMainFile() : worldDir.resolve("homepoints").resolve(DATA_FILE);
+        Path legacyFile = worldDir.resolve("data").resolve(LEGACY_DATA_NAME + ".dat");
+
+        HomesManager manager = new HomesManager(server, openStorage(server, shared));
+        manager.shared = shared;
+        boolean publicHomesStored = manager.storage != null && manager.storage.storesPublicHomes();
+        Map<UUID, NbtCompound> encodedPlayers = new HashMap<>();
+        HomesCodec.DimensionTable dimensions = new HomesCodec.DimensionTable();
+        HomesCodec.OwnerTable owners = new HomesCodec.OwnerTable();
+        Path migratedFrom = null;
+        Path reading = null;
+        LoadEvent event = new LoadEvent();
+        event.begin();
+        long started = System.nanoTime();
+        long bytes = 0;
+
+        try {
+            // A storage with public homes only takes over homes.dat while it's still empty, it could
+            // be a copy made by /homesadmin migrate that is older than the database
+            boolean readFiles = !publicHomesStored || manager.storage.isEmpty();
+            if (readFiles && Files.exists(mainFile)) {
+                reading = mainFile;
+                bytes = Files.size(mainFile);
+                encodedPlayers = manager.readNbt(NbtIo.readCompressed(mainFile, NbtSizeTracker.ofUnlimitedBytes()),
+                        dimensions, owners);
+                if (publicHomesStored) {
+                    // Everything moves into the storage and homes.dat is retired after the first save
+                    HomePoints.LOGGER.info("Migrating {} to {} storage", mainFile, HomePointsConfig.storageMode);
+                    migratedFrom = mainFile;
+                }
+            } else if (readFiles && Files.exists(legacyFile)) {
+                reading = legacyFile;
+                HomePoints.LOGGER.info("Migrating {} to {}", legacyFile, mainFile);
+                bytes = Files.size(legacyFile);
+                encodedPlayers = manager.readNbt(NbtIo.readCompressed(legacyFile, NbtSizeTracker.ofUnlimitedBytes()).getCompound("data"),
+                        dimensions, owners);
+                migratedFrom = legacyFile;
+            } else if (publicHomesStored) {
+                if (Files.exists(mainFile)) {
+                    HomePoints.LOGGER.warn("Ignoring {} as there are homes in {} storage already", mainFile,
+                            HomePointsConfig.storageMode);
+                }
+                Collection<Home> stored = manager.storage.loadPublicHomes();
+                manager.publicHomes = new PublicHomesData(stored.size());
+                stored.forEach(manager.publicHomes::putPublicHome);
+            }
+            if (migratedFrom != null && publicHomesStored) {
+                manager.publicHomes.markAllDirty();
+                manager.markDirty();
+            }
+            long duration = System.nanoTime() - started;
+            manager.logLoaded(duration);
+            Metrics.histogram("storage", "load").record(duration);
+            Metrics.counter("storage.loaded_bytes").add(bytes);
+            event.end();
+            if (event.shouldCommit()) {
+                event.players = manager.playerHomes.size();
+                event.publicHomes = manager.publicHomes.getPublicHomes().size();
+                event.bytes = bytes;
+                event.commit();
+            }
+        } catch (IOException e) {
+            if (reading == null) {
+                HomePoints.LOGGER.error("Failed to load homes from {} storage", HomePointsConfig.storageMode, e);
+            } else if (reading == legacyFile) {
+                HomePoints.LOGGER.error("Failed to read {}", legacyFile, e);
+            } else {
+                Path corrupt = mainFile.resolveSibling(DATA_FILE + ".corrupt-" + System.currentTimeMillis());
+                HomePoints.LOGGER.error("Failed to load homes, moving the unreadable file to {}", corrupt, e);
+                try {
+                    Files.move(mainFile, corrupt, StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException moveError) {
+                    HomePoints.LOGGER.error("Failed to move {}", mainFile, moveError);
+                }
             }
         }
 
-        if (nbt.contains("publicHomes")) {
-            NbtCompound publicNbt = nbt.getCompound("publicHomes");
-            PublicHomesData loaded = PublicHomesData.fromNbt(publicNbt);
-            for (String homeName : loaded.getPublicHomeNames()) {
-                manager.publicHomes.setPublicHome(loaded.getPublicHome(homeName));
+        HomesJournal journal = null;
+        if (HomePointsConfig.journalEnabled) {
+            try {
+                // Each server journals its own changes, even when the homes themselves are shared
+                journal = HomesJournal.open(worldDir.resolve("homepoints").resolve("journal"),
+                        HomePointsConfig.journalCommitIntervalMs,
+                        HomePointsConfig.journalCompactThresholdBytes,
+                        () -> server.execute(manager::compactJournal));
+            } catch (IOException e) {
+                HomePoints.LOGGER.error("Failed to open homes journal, continuing without it", e);
+            }
+        }
+
+        manager.saver = new HomesSaver(mainFile, manager.storage, journal, encodedPlayers,
+                new HashMap<>(manager.publicHomes.asMap()), dimensions, owners);
+        manager.saver.setLegacyFile(migratedFrom);
+        manager.saver.setShared(shared);
+        manager.buildSpatialIndex();
+
+        if (journal != null) {
+            int replayed = manager.replayJournal(journal);
+            manager.journal = journal;
+            if (replayed > 0) {
+                HomePoints.LOGGER.info("Replayed {} homes journal records", replayed);
+                manager.save();
+            }
+        }
+
+        if (shared != null) {
+            try {
+                shared.startWatching(server, manager);
+            } catch (IOException e) {
+                HomePoints.LOGGER.error("Failed to watch {}, changes from other servers will only be seen after a restart",
+                        mainFile.getParent(), e);
             }
         }
 
+        for (Home home : manager.publicHomes.getPublicHomes()) {
+            manager.views.publicHomeChanged(home);
+        }
+        HomesViews.publish(manager.views);
         return manager;
     }
 
-    @Override
-    public NbtCompound writeNbt(NbtCompound nbt) {
-        NbtList playerList = new NbtList();
+    private int replayJournal(HomesJournal journal) {
+        return journal.replay(new HomesJournal.Replayer() {
+            @Override
+            public void setPlayerHome(UUID playerUUID, Home home) {
+                PlayerHomesData data = getPlayerData(playerUUID);
+                Home previous = data.getHome(home.getName());
+                data.putHome(home);
+                playerIndex.update(playerUUID, previous, home);
+                markPlayerDirty(playerUUID);
+            }
+
+            @Override
+            public void deletePlayerHome(UUID playerUUID, String homeName) {
+                PlayerHomesData data = getPlayerData(playerUUID);
+                Home previous = data.getHome(homeName);
+                if (data.deleteHome(homeName)) {
+                    playerIndex.remove(playerUUID, previous);
+                    markPlayerDirty(playerUUID);
+                }
+            }
+
+            @Override
+            public void setPublicHome(Home home) {
+                publicIndex.update(null, publicHomes.getPublicHome(home.getName()), home);
+                publicHomes.setPublicHome(home);
+                markDirty();
+            }
+
+            @Override
+            public void deletePublicHome(String homeName) {
+                Home previous = publicHomes.getPublicHome(homeName);
+                if (publicHomes.deletePublicHome(homeName)) {
+                    publicIndex.remove(null, previous);
+                    markDirty();
+                }
+            }
+        });
+    }
+
+    private void compactJournal() {
+        if (instance == this) {
+            save();
+        }
+    }
+
+    private Map<UUID, NbtCompound> readNbt(NbtCompound nbt, HomesCodec.DimensionTable dimensions,
+                                           HomesCodec.OwnerTable owners) {
+        if (HomesCodec.getFormat(nbt) == HomesCodec.LEGACY_FORMAT) {
+            readLegacyNbt(nbt);
+            return new HashMap<>();
+        }
+
+        dimensions.readFrom(nbt);
+        owners.readFrom(nbt);
+
+        NbtList playerList = nbt.getList("players");
+        UUID[] ids = readPlayers(playerList, HomesCodec::readPlayerId,
+                (playerNbt, playerUUID) -> HomesCodec.decodePlayer(playerNbt, playerUUID, dimensions, owners));
+        Map<UUID, NbtCompound> encodedPlayers = HashMap.newHashMap(storage == null ? ids.length : 0);
+        if (storage == null) {
+            for (int i = 0; i < ids.length; i++) {
+                encodedPlayers.put(ids[i], playerList.getCompound(i));
+            }
+        }
+
+        NbtCompound publicNbt = nbt.getCompound("public");
+        publicHomes = new PublicHomesData(HomesCodec.countHomes(publicNbt));
+        HomesCodec.decodeHomes(publicNbt, null, dimensions, owners, publicHomes::putPublicHome);
+        return encodedPlayers;
+    }
+
+    private void readLegacyNbt(NbtCompound nbt) {
+        if (nbt.contains("playerHomes")) {
+            readPlayers(nbt.getList("playerHomes"), playerNbt -> UUID.fromString(playerNbt.getString("uuid")),
+                    (playerNbt, playerUUID) -> PlayerHomesData.fromNbt(playerNbt.getCompound("data")));
+        }
+
+        if (nbt.contains("publicHomes")) {
+            publicHomes = PublicHomesData.fromNbt(nbt.getCompound("publicHomes"));
+        }
+
+        HomePoints.LOGGER.info("Upgrading homes data to format {}", HomesCodec.CURRENT_FORMAT);
+        dirtyPlayers.addAll(playerHomes.keySet());
+        mainFileStale = true;
+        dirty = true;
+    }
+
+    private UUID[] readPlayers(NbtList playerList, Function<NbtCompound, UUID> idReader,
+                               BiFunction<NbtCompound, UUID, PlayerHomesData> decoder) {
+        UUID[] ids = new UUID[playerList.size()];
+        PlayerHomesData[] decoded = new PlayerHomesData[ids.length];
+        PlayerListDecoder.decode(playerList, idReader, decoder, ids, decoded);
+
+        playerHomes = newPlayerMap(storage != null, ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            playerHomes.put(ids[i], decoded[i]);
+        }
+        if (storage != null && ids.length > 0) {
+            migrateToShards();
+        }
+        return ids;
+    }
+
+    private void logLoaded(long durationNanos) {
+        int homeCount = 0;
+        for (PlayerHomesData data : playerHomes.values()) {
+            homeCount += data.getHomeCount();
+        }
+        HomePoints.LOGGER.info("Loaded {} homes of {} players and {} public homes in {} ms",
+                homeCount, playerHomes.size(), publicHomes.getPublicHomes().size(), durationNanos / 1_000_000);
+    }
+
+    private void buildSpatialIndex() {
+        for (Home home : publicHomes.getPublicHomes()) {
+            publicIndex.add(null, home);
+        }
+        if (storage == null) {
+            for (Map.Entry<UUID, PlayerHomesData> entry : playerHomes.entrySet()) {
+                addToIndex(entry.getKey(), entry.getValue());
+            }
+            spatialIndexComplete = true;
+            return;
+        }
+
+        // Players that aren't cached are indexed from the storage in the background; anyone loaded
+        // in the meantime is indexed from memory first and their stored result is ignored. Once
+        // everyone is indexed, changes keep the index current and loading a player adds nothing.
+        indexingPlayers = new HashSet<>();
         for (Map.Entry<UUID, PlayerHomesData> entry : playerHomes.entrySet()) {
-            NbtCompound playerNbt = new NbtCompound();
-            playerNbt.putString("uuid", entry.getKey().toString());
-            playerNbt.put("data", entry.getValue().toNbt());
-            playerList.add(playerNbt);
+            indexPlayer(entry.getKey(), entry.getValue());
+        }
+        Thread thread = new Thread(this::indexStoredPlayers, "HomePoints-Indexer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void indexStoredPlayers() {
+        long started = System.nanoTime();
+        Map<UUID, PlayerHomesData> batch = new HashMap<>();
+        try {
+            for (UUID playerUUID : storage.listPlayers()) {
+                if (closed) {
+                    return;
+                }
+                try {
+                    PlayerHomesData data = storage.load(playerUUID);
+                    if (data != null) {
+                        batch.put(playerUUID, data);
+                    }
+                } catch (IOException e) {
+                    HomePoints.LOGGER.warn("Failed to index homes of {}", playerUUID, e);
+                }
+                if (batch.size() >= INDEX_BATCH_SIZE) {
+                    Map<UUID, PlayerHomesData> full = batch;
+                    server.execute(() -> applyIndexBatch(full));
+                    batch = new HashMap<>();
+                }
+            }
+        } catch (IOException e) {
+            HomePoints.LOGGER.error("Failed to list stored players, nearby home queries will only see cached players", e);
+        }
+
+        Map<UUID, PlayerHomesData> last = batch;
+        server.execute(() -> {
+            applyIndexBatch(last);
+            indexingPlayers = null;
+            spatialIndexComplete = true;
+            HomePoints.LOGGER.info("Indexed {} homes for nearby lookups in {} ms",
+                    playerIndex.size() + publicIndex.size(), (System.nanoTime() - started) / 1_000_000);
+        });
+    }
+
+    private void applyIndexBatch(Map<UUID, PlayerHomesData> batch) {
+        if (closed) {
+            return;
+        }
+        for (Map.Entry<UUID, PlayerHomesData> entry : batch.entrySet()) {
+            indexPlayer(entry.getKey(), entry.getValue());
         }
-        nbt.put("playerHomes", playerList);
+    }
+
+    /**
+     * Indexes the homes of a player read from memory or the storage, unless the player is indexed
+     * already. Does nothing once the background indexing is done.
+     */
+    private void indexPlayer(UUID playerUUID, PlayerHomesData data) {
+        if (indexingPlayers != null && indexingPlayers.add(playerUUID)) {
+            addToIndex(playerUUID, data);
+        }
+    }
 
-        nbt.put("publicHomes", publicHomes.toNbt());
+    private void addToIndex(UUID playerUUID, PlayerHomesData data) {
+        for (Home home : data.getHomes()) {
+            playerIndex.add(playerUUID, home);
+        }
+    }
 
-        return nbt;
+    private void migrateToShards() {
+        HomePoints.LOGGER.info("Migrating {} players to per-player storage", playerHomes.size());
+        dirtyPlayers.addAll(playerHomes.keySet());
+        mainFileStale = true;
+        dirty = true;
+    }
+
+    public void save() {
+        if (saver.hasFailures()) {
+            mainFileStale |= saver.drainFailures(dirtyPlayers::add);
+            dirty = true;
+        }
+        if (!dirty) {
+            return;
+        }
+
+        Map<UUID, PlayerHomesData> players = new HashMap<>();
+        for (UUID playerUUID : dirtyPlayers) {
+            PlayerHomesData data = playerHomes.get(playerUUID);
+            if (data != null) {
+                players.put(playerUUID, data.copy());
+            }
+        }
+        int cleanPlayers = playerHomes.size() - players.size();
+        boolean writeMainFile = storage == null || mainFileStale || publicHomes.isDirty();
+        long journalSegment = journal != null ? journal.rotate() : -1;
+
+        saver.submit(new HomesSnapshot(players, publicHomes.drainChanges(), writeMainFile, cleanPlayers,
+                journalSegment));
+        dirtyPlayers.clear();
+        dirty = false;
+        mainFileStale = false;
+        evictIdlePlayers(null);
+    }
+
+    private void close() {
+        closed = true;
+        if (shared != null) {
+            try {
+                shared.close();
+            } catch (IOException e) {
+                HomePoints.LOGGER.warn("Failed to stop watching the shared homes directory", e);
+            }
+        }
+        HomesViews.close(views);
+        backups.close();
+        save();
+        saver.close();
+        if (journal != null) {
+            journal.close();
+        }
+        if (storage != null) {
+            try {
+                storage.close();
+            } catch (IOException e) {
+                HomePoints.LOGGER.error("Failed to close the homes storage", e);
+            }
+        }
+    }
+
+    public HomesBackups getBackups() {
+        return backups;
+    }
+
+    HomesStorage getStorage() {
+        return storage;
+    }
+
+    List<UUID> getLoadedPlayers() {
+        return new ArrayList<>(playerHomes.keySet());
+    }
+
+    /**
+     * Copies the data of those players that are still loaded. Players evicted in the meantime are left out.
+     */
+    Map<UUID, PlayerHomesData> copyLoadedPlayers(List<UUID> players) {
+        Map<UUID, PlayerHomesData> copies = HashMap.newHashMap(players.size());
+        for (UUID playerUUID : players) {
+            PlayerHomesData data = playerHomes.get(playerUUID);
+            if (data != null) {
+                copies.put(playerUUID, data.copy());
+            }
+        }
+        return copies;
+    }
+
+    /**
+     * Same as {@link #setPlayerHome} for bulk imports, except that the change isn't journaled and only
+     * the player is marked dirty; the import marks the manager dirty once it's done.
+     */
+    boolean importPlayerHome(UUID playerUUID, Home home) {
+        PlayerHomesData data = getPlayerData(playerUUID);
+        Home previous = data.getHome(home.getName());
+        if (!data.setHome(home)) {
+            return false;
+        }
+        playerIndex.update(playerUUID, previous, home);
+        views.playerChanged(playerUUID, data);
+        dirtyPlayers.add(playerUUID);
+        backups.playerChanged(playerUUID);
+        return true;
+    }
+
+    /**
+     * Takes over homes that other servers changed in the {@link SharedHomesDirectory}. Changes this
+     * server hasn't saved yet win and are written over the stored ones with the next save. Players
+     * that aren't cached only have their nearby lookup entries refreshed.
+     *
+     * @param players           the stored homes of each changed player, {@code null} once they have none
+     * @param storedPublicHomes every stored public home by name, or {@code null} if they didn't change
+     */
+    void applySharedChanges(Map<UUID, PlayerHomesData> players, Map<String, Home> storedPublicHomes) {
+        if (closed) {
+            return;
+        }
+
+        Set<UUID> uncached = new HashSet<>();
+        Map<UUID, PlayerHomesData> reindex = new HashMap<>();
+        for (Map.Entry<UUID, PlayerHomesData> entry : players.entrySet()) {
+            UUID playerUUID = entry.getKey();
+            if (dirtyPlayers.contains(playerUUID) || saver.isPending(playerUUID)) {
+                continue;
+            }
+            PlayerHomesData stored = entry.getValue() != null ? entry.getValue() : new PlayerHomesData();
+            PlayerHomesData cached = playerHomes.get(playerUUID);
+            if (cached != null) {
+                for (Home home : cached.getHomes()) {
+                    playerIndex.remove(playerUUID, home);
+                }
+                playerHomes.put(playerUUID, stored);
+                views.playerChanged(playerUUID, stored);
+            } else if (indexingPlayers == null || indexingPlayers.contains(playerUUID)) {
+                uncached.add(playerUUID);
+            }
+            reindex.put(playerUUID, stored);
+            backups.playerChanged(playerUUID);
+        }
+        if (!uncached.isEmpty()) {
+            playerIndex.removePlayers(uncached);
+        }
+        for (Map.Entry<UUID, PlayerHomesData> entry : reindex.entrySet()) {
+            if (indexingPlayers != null) {
+                indexingPlayers.add(entry.getKey());
+            }
+            addToIndex(entry.getKey(), entry.getValue());
+        }
+
+        if (storedPublicHomes != null) {
+            for (String name : new ArrayList<>(publicHomes.getPublicHomeNames())) {
+                if (!storedPublicHomes.containsKey(name) && !publicHomes.isUnsaved(name)) {
+                    publicIndex.remove(null, publicHomes.getPublicHome(name));
+                    publicHomes.removePublicHome(name);
+                    views.publicHomeDeleted(name);
+                }
+            }
+            for (Home home : storedPublicHomes.values()) {
+                Home current = publicHomes.getPublicHome(home.getName());
+                if (!publicHomes.isUnsaved(home.getName()) && (current == null || !isSameHome(current, home))) {
+                    publicIndex.update(null, current, home);
+                    publicHomes.putPublicHome(home);
+                    views.publicHomeChanged(home);
+                }
+            }
+        }
+    }
+
+    private static boolean isSameHome(Home a, Home b) {
+        return a.getPosition().equals(b.getPosition()) && a.getDimension().equals(b.getDimension())
+                && a.getYaw() == b.getYaw() && a.getPitch() == b.getPitch() && a.getOwner().equals(b.getOwner());
+    }
+
+    void importPublicHome(Home home) {
+        publicIndex.update(null, publicHomes.getPublicHome(home.getName()), home);
+        publicHomes.setPublicHome(home);
+        views.publicHomeChanged(home);
+    }
+
+    public void onPlayerJoin(UUID playerUUID) {
+        if (storage == null) {
+            return;
+        }
+        onlinePlayers.add(playerUUID);
+        getPlayerData(playerUUID);
+    }
+
+    public void onPlayerLeave(UUID playerUUID) {
+        if (storage == null) {
+            return;
+        }
+        onlinePlayers.remove(playerUUID);
+        evictIdlePlayers(null);
     }
 
     public PlayerHomesData getPlayerData(UUID playerUUID) {
-        return playerHomes.computeIfAbsent(playerUUID, k -> new PlayerHomesData());
+        PlayerHomesData data = playerHomes.get(playerUUID);
+        if (data == null) {
+            data = loadPlayerData(playerUUID);
+            playerHomes.put(playerUUID, data);
+            indexPlayer(playerUUID, data);
+            evictIdlePlayers(playerUUID);
+        }
+        return data;
+    }
+
+    /**
+     * Returns the player's cached data, or {@code null} if it isn't loaded. Never creates or loads
+     * anything, so it's safe to call from hot paths like tab completion.
+     */
+    public PlayerHomesData peekPlayerData(UUID playerUUID) {
+        return playerHomes.get(playerUUID);
+    }
+
+    PlayerHomesData findPlayerData(UUID playerUUID) {
+        return storage != null ? getPlayerData(playerUUID) : playerHomes.get(playerUUID);
+    }
+
+    private PlayerHomesData loadPlayerData(UUID playerUUID) {
+        if (storage != null) {
+            try {
+                PlayerHomesData data = storage.load(playerUUID);
+                if (data != null) {
+                    return data;
+                }
+            } catch (IOException e) {
+                HomePoints.LOGGER.error("Failed to load homes of {}", playerUUID, e);
+            }
+        }
+        return new PlayerHomesData();
+    }
+
+    private void evictIdlePlayers(UUID keep) {
+        if (storage == null || playerHomes.size() <= HomePointsConfig.playerCacheSize) {
+            return;
+        }
+
+        Iterator<UUID> iterator = playerHomes.keySet().iterator();
+        while (playerHomes.size() > HomePointsConfig.playerCacheSize && iterator.hasNext()) {
+            UUID playerUUID = iterator.next();
+            if (!playerUUID.equals(keep) && !onlinePlayers.contains(playerUUID)
+                    && !dirtyPlayers.contains(playerUUID) && !saver.isPending(playerUUID)) {
+                iterator.remove();
+                views.playerEvicted(playerUUID);
+            }
+        }
+    }
+
+    public void markDirty() {
+        dirty = true;
+    }
+
+    private void markPlayerDirty(UUID playerUUID) {
+        dirtyPlayers.add(playerUUID);
+        backups.playerChanged(playerUUID);
+        markDirty();
+    }
+
+    public SaveStats getSaveStats() {
+        return saver.getStats();
     }
 
     public boolean setPlayerHome(UUID playerUUID, Home home) {
-        boolean success = getPlayerData(playerUUID).setHome(home);
+        checkServerThread();
+        PlayerHomesData data = getPlayerData(playerUUID);
+        Home previous = data.getHome(home.getName());
+        boolean success = data.setHome(home);
         if (success) {
-            markDirty();
+            playerIndex.update(playerUUID, previous, home);
+            views.playerChanged(playerUUID, data);
+            markPlayerDirty(playerUUID);
+            if (journal != null) {
+                journal.logSetPlayerHome(playerUUID, home);
+            }
         }
         return success;
     }
 
     public boolean deletePlayerHome(UUID playerUUID, String homeName) {
-        boolean success = getPlayerData(playerUUID).deleteHome(homeName);
+        checkServerThread();
+        PlayerHomesData data = findPlayerData(playerUUID);
+        if (data == null) {
+            return false;
+        }
+        Home previous = data.getHome(homeName);
+        boolean success = data.deleteHome(homeName);
         if (success) {
-            markDirty();
+            playerIndex.remove(playerUUID, previous);
+            views.playerChanged(playerUUID, data);
+            markPlayerDirty(playerUUID);
+            if (journal != null) {
+                journal.logDeletePlayerHome(playerUUID, homeName);
+            }
         }
         return success;
     }
 
+    /**
+     * Replaces all of a player's homes, e.g. with those from a backup. Every change is journaled.
+     */
+    public void replacePlayerHomes(UUID playerUUID, PlayerHomesData replacement) {
+        checkServerThread();
+        PlayerHomesData data = findPlayerData(playerUUID);
+        if (data != null) {
+            for (String homeName : new ArrayList<>(data.getHomeNames())) {
+                if (!replacement.hasHome(homeName)) {
+                    deletePlayerHome(playerUUID, homeName);
+                }
+            }
+        }
+        for (Home home : replacement.getHomes()) {
+            setPlayerHome(playerUUID, home);
+        }
+    }
+
     public Home getPlayerHome(UUID playerUUID, String homeName) {
-        return getPlayerData(playerUUID).getHome(homeName);
+        PlayerHomesData data = findPlayerData(playerUUID);
+        return data != null ? data.getHome(homeName) : null;
     }
 
     public void setPublicHome(Home home) {
+        checkServerThread();
+        publicIndex.update(null, publicHomes.getPublicHome(home.getName()), home);
         publicHomes.setPublicHome(home);
+        views.publicHomeChanged(home);
         markDirty();
+        if (journal != null) {
+            journal.logSetPublicHome(home);
+        }
     }
 
     public boolean deletePublicHome(String homeName) {
+        checkServerThread();
+        Home previous = publicHomes.getPublicHome(homeName);
         boolean success = publicHomes.deletePublicHome(homeName);
         if (success) {
+            publicIndex.remove(null, previous);
+            views.publicHomeDeleted(homeName);
             markDirty();
+            if (journal != null) {
+                journal.logDeletePublicHome(homeName);
+            }
         }
         return success;
     }
 
+    private void checkServerThread() {
+        if (!server.isOnThread()) {
+            throw new IllegalStateException("Homes can only be changed on the server thread");
+        }
+    }
+
     public Home getPublicHome(String homeName) {
         return publicHomes.getPublicHome(homeName);
     }
@@ -116,4 +797,46 @@ public class HomesManager extends PersistentState {
     public PublicHomesData getPublicHomesData() {
         return publicHomes;
     }
-}
\ No newline at end of file
+
+    public Home getNearestPublicHome(RegistryKey<World> dimension, Vec3d position) {
+        HomeSpatialIndex.Entry nearest = publicIndex.nearest(dimension, position.x, position.z);
+        return nearest != null ? publicHomes.getPublicHome(nearest.name()) : null;
+    }
+
+    /**
+     * Returns the player's homes within {@code radius} blocks, closest first. Only the player's own
+     * homes are looked at, so this doesn't go through the index of everyone's homes.
+     */
+    public List<HomeSpatialIndex.Entry> getPlayerHomesWithin(UUID playerUUID, RegistryKey<World> dimension,
+                                                             Vec3d position, double radius) {
+        List<HomeSpatialIndex.Entry> homes = new ArrayList<>();
+        PlayerHomesData data = findPlayerData(playerUUID);
+        if (data == null) {
+            return homes;
+        }
+
+        double radiusSquared = radius * radius;
+        for (Home home : data.getHomes()) {
+            if (home.getDimension().equals(dimension)) {
+                HomeSpatialIndex.Entry entry = new HomeSpatialIndex.Entry(playerUUID, home.getName(),
+                        home.getPosition().asLong());
+                if (entry.squaredDistanceTo(position.x, position.z) <= radiusSquared) {
+                    homes.add(entry);
+                }
+            }
+        }
+        homes.sort(Comparator.comparingDouble(entry -> entry.squaredDistanceTo(position.x, position.z)));
+        return homes;
+    }
+
+    public List<HomeSpatialIndex.Entry> getHomesWithin(RegistryKey<World> dimension, Vec3d position, double radius) {
+        List<HomeSpatialIndex.Entry> homes = playerIndex.within(dimension, position.x, position.z, radius);
+        homes.addAll(publicIndex.within(dimension, position.x, position.z, radius));
+        homes.sort(Comparator.comparingDouble(entry -> entry.squaredDistanceTo(position.x, position.z)));
+        return homes;
+    }
+
+    public boolean isSpatialIndexComplete() {
+        return spatialIndexComplete;
+    }
+}
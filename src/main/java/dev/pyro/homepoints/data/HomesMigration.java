@@ -0,0 +1,191 @@
+package dev.pyro.homepoints.data;
+
+import dev.pyro.homepoints.HomePoints;
+import dev.pyro.homepoints.config.HomePointsConfig;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.WorldSavePath;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Copies every home from the storage in use into another one on a background thread, reading players
+ * through {@link PlayerHomesScan}. The target is replaced completely and only used once
+ * {@code storage.mode} is changed and the server restarted.
+ * <p>
+ * Copying to {@link Target#NBT} writes a {@code homes.dat} holding everyone, which the single,
+ * sharded and mapped storage modes all load from. It's only possible from SQL storage, as every other
+ * mode keeps its public homes in that file.
+ */
+public final class HomesMigration {
+    private static final int BATCH_SIZE = 256;
+
+    private static volatile boolean running;
+
+    private final MinecraftServer server;
+    private final HomesManager manager;
+    private long players;
+    private long homes;
+    private long publicHomes;
+
+    public enum Target {
+        NBT,
+        SQL,
+        MAPPED;
+
+        public String getKey() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        /**
+         * Whether the storage in use writes the files this target would replace. Every mode but SQL
+         * keeps at least the public homes in homes.dat.
+         */
+        boolean isInUse() {
+            HomePointsConfig.StorageMode mode = HomePointsConfig.storageMode;
+            return switch (this) {
+                case NBT -> mode != HomePointsConfig.StorageMode.SQL;
+                case SQL -> mode == HomePointsConfig.StorageMode.SQL;
+                case MAPPED -> mode == HomePointsConfig.StorageMode.MAPPED;
+            };
+        }
+    }
+
+    public record Result(long players, long homes, long publicHomes, long durationNanos) {
+    }
+
+    private HomesMigration(MinecraftServer server, HomesManager manager) {
+        this.server = server;
+        this.manager = manager;
+    }
+
+    /**
+     * Starts copying all homes to {@code target}.
+     *
+     * @throws IllegalArgumentException if the current storage uses the target's files
+     * @throws IllegalStateException    if another migration is still running
+     */
+    public static CompletableFuture<Result> start(MinecraftServer server, Target target) {
+        if (target.isInUse()) {
+            throw new IllegalArgumentException("The " + target.getKey() + " files are in use by "
+                    + HomePointsConfig.storageMode.name().toLowerCase(Locale.ROOT) + " storage");
+        }
+        if (running) {
+            throw new IllegalStateException("A migration is already running");
+        }
+        running = true;
+
+        HomesMigration migration = new HomesMigration(server, HomesManager.get(server));
+        CompletableFuture<Result> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                result.complete(migration.run(target));
+            } catch (Exception e) {
+                HomePoints.LOGGER.error("Failed to copy homes to {} storage", target.getKey(), e);
+                result.completeExceptionally(e);
+            } finally {
+                running = false;
+            }
+        }, "HomePoints-Migrate");
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    private Result run(Target target) throws IOException {
+        long started = System.nanoTime();
+        List<Home> publicCopy = PlayerHomesScan.onServerThread(server,
+                () -> List.copyOf(manager.getPublicHomesData().getPublicHomes()));
+        publicHomes = publicCopy.size();
+
+        switch (target) {
+            case NBT -> writeMainFile(publicCopy, true);
+            case SQL -> writeDatabase(publicCopy);
+            case MAPPED -> writeRecords(publicCopy);
+        }
+
+        long duration = System.nanoTime() - started;
+        HomePoints.LOGGER.info("Copied {} homes of {} players and {} public homes to {} storage in {} ms",
+                homes, players, publicHomes, target.getKey(), duration / 1_000_000);
+        return new Result(players, homes, publicHomes, duration);
+    }
+
+    private void writeMainFile(List<Home> publicCopy, boolean withPlayers) throws IOException {
+        HomesCodec.DimensionTable dimensions = new HomesCodec.DimensionTable();
+        HomesCodec.OwnerTable owners = new HomesCodec.OwnerTable();
+        NbtList playerList = new NbtList();
+        if (withPlayers) {
+            PlayerHomesScan.forEachPlayer(server, manager, (playerUUID, data) -> {
+                if (data.getHomeCount() > 0) {
+                    playerList.add(HomesCodec.encodePlayer(playerUUID, data, dimensions, owners));
+                    count(data);
+                }
+            });
+        }
+
+        NbtCompound nbt = new NbtCompound();
+        nbt.put("players", playerList);
+        nbt.put("public", HomesCodec.encodeHomes(publicCopy, null, dimensions, owners));
+        HomesCodec.writeHeader(nbt, dimensions, owners);
+        Path mainFile = server.getSavePath(WorldSavePath.ROOT).resolve("homepoints").resolve("homes.dat");
+        HomesSaver.writeCompressedAtomically(nbt, mainFile);
+    }
+
+    private void writeDatabase(List<Home> publicCopy) throws IOException {
+        try (SqlHomesStorage storage = SqlHomesStorage.forServer(server)) {
+            storage.clear();
+            copyPlayers(storage);
+
+            Map<String, Home> publicChanges = HashMap.newHashMap(publicCopy.size());
+            for (Home home : publicCopy) {
+                publicChanges.put(home.getName(), home);
+            }
+            storage.savePublicHomes(publicChanges);
+        }
+    }
+
+    private void writeRecords(List<Home> publicCopy) throws IOException {
+        try (MappedHomesStorage storage = MappedHomesStorage.forServer(server, HomePointsConfig.mappedFlushIntervalMs)) {
+            storage.clear();
+            copyPlayers(storage);
+        }
+        // Public homes are read from homes.dat, which only SQL storage leaves unused
+        if (HomePointsConfig.storageMode == HomePointsConfig.StorageMode.SQL) {
+            writeMainFile(publicCopy, false);
+        }
+    }
+
+    private void copyPlayers(HomesStorage storage) throws IOException {
+        Map<UUID, PlayerHomesData> batch = new HashMap<>();
+        List<UUID> failed = new ArrayList<>();
+        PlayerHomesScan.forEachPlayer(server, manager, (playerUUID, data) -> {
+            if (data.getHomeCount() == 0) {
+                return;
+            }
+            batch.put(playerUUID, data);
+            count(data);
+            if (batch.size() >= BATCH_SIZE) {
+                storage.saveAll(batch, failed::add);
+                batch.clear();
+            }
+        });
+        storage.saveAll(batch, failed::add);
+        if (!failed.isEmpty()) {
+            throw new IOException("Failed to write homes of " + failed.size() + " players");
+        }
+    }
+
+    private void count(PlayerHomesData data) {
+        players++;
+        homes += data.getHomeCount();
+    }
+}
@@ -0,0 +1,485 @@
+package dev.pyro.homepoints.data;
+
+import dev.pyro.homepoints.HomePoints;
+import dev.pyro.homepoints.metrics.LatencyHistogram;
+import dev.pyro.homepoints.metrics.Metrics;
+import dev.pyro.homepoints.metrics.SaveEvent;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtList;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+public class HomesSaver {
+    private static final LatencyHistogram SAVE_TIME = Metrics.histogram("storage", "save");
+    // Unused table entries only cost header bytes, the tables are compacted once there are this many
+    private static final int MAX_UNUSED_TABLE_ENTRIES = 256;
+
+    private final Path mainFile;
+    private final HomesStorage storage;
+    private final HomesJournal journal;
+    private final Map<UUID, NbtCompound> encodedPlayers;
+    private final Map<String, Home> publicHomes;
+    // Only ever appended to, so the cached compounds stay valid as they are until the tables are compacted
+    private HomesCodec.DimensionTable dimensions;
+    private HomesCodec.OwnerTable owners;
+    private final TableUses dimensionUses = new TableUses();
+    private final TableUses ownerUses = new TableUses();
+    private NbtCompound encodedPublicHomes;
+    private final Map<String, Home> unsavedPublicHomes = new HashMap<>();
+    private final Map<UUID, HomesSnapshot> pendingPlayers;
+    private final Set<UUID> failedPlayers;
+    private final AtomicBoolean mainFileFailed;
+    private final SaveStats stats;
+    private final ExecutorService executor;
+    private final Object lock = new Object();
+    private HomesSnapshot queued;
+    private long queuedSequence;
+    private long submittedSaves;
+    private long coalescedSaves;
+    // Set by a failed save: its journal segments hold the only durable copy of what it failed to
+    // write, until the save that retries it succeeds
+    private boolean journalHeld;
+    private long retrySequence;
+    private Path legacyFile;
+    private SharedHomesDirectory shared;
+
+    public HomesSaver(Path mainFile, HomesStorage storage, HomesJournal journal,
+                      Map<UUID, NbtCompound> encodedPlayers, Map<String, Home> publicHomes,
+                      HomesCodec.DimensionTable dimensions, HomesCodec.OwnerTable owners) {
+        this.mainFile = mainFile;
+        this.storage = storage;
+        this.journal = journal;
+        this.encodedPlayers = encodedPlayers;
+        this.publicHomes = publicHomes;
+        this.dimensions = dimensions;
+        this.owners = owners;
+        for (NbtCompound playerNbt : encodedPlayers.values()) {
+            countUses(playerNbt, 1);
+        }
+        this.pendingPlayers = new ConcurrentHashMap<>();
+        this.failedPlayers = ConcurrentHashMap.newKeySet();
+        this.mainFileFailed = new AtomicBoolean();
+        this.stats = new SaveStats();
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "HomePoints-Saver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void setLegacyFile(Path legacyFile) {
+        this.legacyFile = legacyFile;
+    }
+
+    void setShared(SharedHomesDirectory shared) {
+        this.shared = shared;
+    }
+
+    void submit(HomesSnapshot snapshot) {
+        synchronized (lock) {
+            queuedSequence = ++submittedSaves;
+            if (queued != null) {
+                queued.merge(snapshot);
+                markPending(snapshot, queued);
+                coalescedSaves++;
+                return;
+            }
+            queued = snapshot;
+            markPending(snapshot, snapshot);
+        }
+        executor.execute(this::writeQueued);
+    }
+
+    private void markPending(HomesSnapshot snapshot, HomesSnapshot target) {
+        for (UUID playerUUID : snapshot.getPlayers().keySet()) {
+            pendingPlayers.put(playerUUID, target);
+        }
+    }
+
+    boolean isPending(UUID playerUUID) {
+        return pendingPlayers.containsKey(playerUUID) || failedPlayers.contains(playerUUID);
+    }
+
+    boolean hasFailures() {
+        return mainFileFailed.get() || !failedPlayers.isEmpty();
+    }
+
+    /**
+     * Hands over what failed to save so it goes into the next snapshot, which is then the one that
+     * releases the journal.
+     */
+    boolean drainFailures(Consumer<UUID> failedPlayer) {
+        synchronized (lock) {
+            if (journalHeld) {
+                retrySequence = submittedSaves + 1;
+            }
+            for (UUID playerUUID : failedPlayers) {
+                failedPlayers.remove(playerUUID);
+                failedPlayer.accept(playerUUID);
+            }
+            return mainFileFailed.getAndSet(false);
+        }
+    }
+
+    private void writeQueued() {
+        HomesSnapshot snapshot;
+        long sequence;
+        synchronized (lock) {
+            snapshot = queued;
+            sequence = queuedSequence;
+            queued = null;
+        }
+        if (snapshot != null) {
+            write(snapshot, sequence);
+        }
+    }
+
+    /**
+     * Records a player that failed to save. The journal is kept until a save that retries the
+     * failure succeeds, so both happen at once with respect to {@link #drainFailures}.
+     */
+    private void failPlayer(UUID playerUUID) {
+        synchronized (lock) {
+            holdJournal();
+            failedPlayers.add(playerUUID);
+        }
+    }
+
+    private void failMainFile() {
+        synchronized (lock) {
+            holdJournal();
+            mainFileFailed.set(true);
+        }
+    }
+
+    private void holdJournal() {
+        journalHeld = true;
+        retrySequence = Long.MAX_VALUE;
+    }
+
+    private boolean releaseJournal(long sequence) {
+        synchronized (lock) {
+            if (journalHeld && sequence >= retrySequence) {
+                journalHeld = false;
+            }
+            return !journalHeld;
+        }
+    }
+
+    private void write(HomesSnapshot snapshot, long sequence) {
+        stats.begin();
+        SaveEvent event = new SaveEvent();
+        event.begin();
+        boolean failed = false;
+        long started = System.nanoTime();
+        long bytes = 0;
+        int encodedPlayerCount = 0;
+        boolean storesPublicHomes = storage != null && storage.storesPublicHomes();
+
+        try {
+            // Taken over first, so the public homes survive a failure anywhere below
+            applyPublicChanges(snapshot.getPublicHomes());
+            if (storesPublicHomes || shared != null) {
+                // Kept until they are stored, as the manager only hands over changes once
+                unsavedPublicHomes.putAll(snapshot.getPublicHomes());
+            }
+
+            if (storage != null) {
+                Set<UUID> failedNow = new HashSet<>();
+                bytes += storage.saveAll(snapshot.getPlayers(), failedNow::add);
+                for (UUID playerUUID : snapshot.getPlayers().keySet()) {
+                    if (failedNow.contains(playerUUID)) {
+                        failPlayer(playerUUID);
+                        failed = true;
+                    } else {
+                        stats.written();
+                    }
+                    pendingPlayers.remove(playerUUID, snapshot);
+                }
+            } else {
+                for (Map.Entry<UUID, PlayerHomesData> entry : snapshot.getPlayers().entrySet()) {
+                    UUID playerUUID = entry.getKey();
+                    PlayerHomesData data = entry.getValue();
+                    NbtCompound previous;
+                    if (data.getHomeCount() == 0) {
+                        previous = encodedPlayers.remove(playerUUID);
+                    } else {
+                        NbtCompound playerNbt = HomesCodec.encodePlayer(playerUUID, data, dimensions, owners);
+                        previous = encodedPlayers.put(playerUUID, playerNbt);
+                        countUses(playerNbt, 1);
+                        encodedPlayerCount++;
+                    }
+                    countUses(previous, -1);
+                    stats.written();
+                    pendingPlayers.remove(playerUUID, snapshot);
+                }
+            }
+
+            if (storage != null) {
+                stats.skipped(snapshot.getCleanPlayers());
+            }
+
+            if (snapshot.writesMainFile()) {
+                try {
+                    if (storesPublicHomes) {
+                        storage.savePublicHomes(unsavedPublicHomes);
+                        unsavedPublicHomes.clear();
+                        stats.written();
+                    } else {
+                        bytes += writeMainFile(snapshot, encodedPlayerCount);
+                    }
+                    if (legacyFile != null && !failed) {
+                        Files.move(legacyFile, legacyFile.resolveSibling(legacyFile.getFileName() + ".migrated"),
+                                StandardCopyOption.REPLACE_EXISTING);
+                        legacyFile = null;
+                    }
+                } catch (IOException e) {
+                    HomePoints.LOGGER.error("Failed to save {}", storesPublicHomes ? "public homes" : mainFile, e);
+                    failMainFile();
+                    failed = true;
+                }
+            }
+
+            // Earlier failures that are still waiting for their retry need their segments as well
+            if (journal != null && !failed && snapshot.getJournalSegment() >= 0 && releaseJournal(sequence)) {
+                journal.deleteThrough(snapshot.getJournalSegment());
+            }
+        } catch (RuntimeException e) {
+            // Nothing of this snapshot is known to be stored, so all of it is retried and kept loaded
+            HomePoints.LOGGER.error("Failed to save homes", e);
+            for (UUID playerUUID : snapshot.getPlayers().keySet()) {
+                failPlayer(playerUUID);
+                pendingPlayers.remove(playerUUID, snapshot);
+            }
+            failMainFile();
+            // May no longer match the public homes, the retry encodes them again
+            countUses(encodedPublicHomes, -1);
+            encodedPublicHomes = null;
+            failed = true;
+        }
+
+        if (failed) {
+            stats.failed();
+            Metrics.counter("storage.failed_saves").increment();
+        }
+        stats.finish(System.nanoTime() - started);
+        SAVE_TIME.record(stats.getLastDurationNanos());
+        Metrics.counter("storage.saved_bytes").add(bytes);
+        event.end();
+        if (event.shouldCommit()) {
+            event.written = stats.getLastWritten();
+            event.skipped = stats.getLastSkipped();
+            event.bytes = bytes;
+            event.commit();
+        }
+        HomePoints.LOGGER.debug("Saved homes in {} ms: {} segments written, {} skipped",
+                stats.getLastDurationNanos() / 1_000_000, stats.getLastWritten(), stats.getLastSkipped());
+    }
+
+    private void applyPublicChanges(Map<String, Home> changes) {
+        for (Map.Entry<String, Home> entry : changes.entrySet()) {
+            if (entry.getValue() == null) {
+                publicHomes.remove(entry.getKey());
+            } else {
+                publicHomes.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private long writeMainFile(HomesSnapshot snapshot, int encodedPlayerCount) throws IOException {
+        return writeMainFile(!snapshot.getPublicHomes().isEmpty(), encodedPlayerCount, false);
+    }
+
+    private long writeMainFile(boolean publicHomesChanged, int encodedPlayerCount, boolean compact) throws IOException {
+        if (shared == null) {
+            return encodeMainFile(publicHomesChanged, encodedPlayerCount, compact);
+        }
+
+        // Other servers write homes.dat as well, so only this server's changes are applied to what
+        // it holds now. They are kept until written, like those handed to a storage.
+        return shared.locked(() -> {
+            publicHomes.clear();
+            publicHomes.putAll(shared.readPublicHomes());
+            applyPublicChanges(unsavedPublicHomes);
+            long bytes = encodeMainFile(true, encodedPlayerCount, compact);
+            unsavedPublicHomes.clear();
+            return bytes;
+        });
+    }
+
+    /**
+     * Writes the cached players and the public homes. The header tables are normally kept as they
+     * are, entries of deleted homes included, so the cached compounds are written untouched. Once
+     * enough entries went unused, or when asked to, they are compacted first.
+     */
+    private long encodeMainFile(boolean publicHomesChanged, int encodedPlayerCount, boolean compact) throws IOException {
+        if (encodedPublicHomes == null || publicHomesChanged) {
+            NbtCompound publicNbt = HomesCodec.encodeHomes(publicHomes.values(), null, dimensions, owners);
+            countUses(encodedPublicHomes, -1);
+            countUses(publicNbt, 1);
+            encodedPublicHomes = publicNbt;
+            stats.written();
+        } else {
+            stats.skipped();
+        }
+        if (compact || unusedTableEntries() >= MAX_UNUSED_TABLE_ENTRIES) {
+            compactTables();
+        }
+
+        NbtCompound nbt = new NbtCompound();
+        if (storage == null) {
+            NbtList playerList = new NbtList();
+            playerList.addAll(encodedPlayers.values());
+            nbt.put("players", playerList);
+            stats.skipped(encodedPlayers.size() - encodedPlayerCount);
+        }
+        nbt.put("public", encodedPublicHomes);
+        HomesCodec.writeHeader(nbt, dimensions, owners);
+
+        writeCompressedAtomically(nbt, mainFile);
+        long mainFileBytes = Files.size(mainFile);
+        stats.recordMainFile(mainFileBytes);
+        return mainFileBytes;
+    }
+
+    static void writeCompressedAtomically(NbtCompound nbt, Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        NbtIo.writeCompressed(nbt, temp);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public SaveStats getStats() {
+        return stats;
+    }
+
+    public long getCoalescedSaves() {
+        synchronized (lock) {
+            return coalescedSaves;
+        }
+    }
+
+    /**
+     * Replaces the header tables with ones holding just what the cached compounds use, and remaps
+     * every compound to them.
+     */
+    private void compactTables() {
+        HomesCodec.DimensionTable compactDimensions = new HomesCodec.DimensionTable();
+        HomesCodec.OwnerTable compactOwners = new HomesCodec.OwnerTable();
+        List<NbtCompound> players = new ArrayList<>(encodedPlayers.size());
+        for (NbtCompound playerNbt : encodedPlayers.values()) {
+            players.add(HomesCodec.remapHomes(playerNbt, dimensions, owners, compactDimensions, compactOwners));
+        }
+        NbtCompound publicNbt = HomesCodec.remapHomes(encodedPublicHomes, dimensions, owners,
+                compactDimensions, compactOwners);
+
+        // Everything is remapped, the cache moves over to the compacted tables
+        Iterator<NbtCompound> remapped = players.iterator();
+        for (Map.Entry<UUID, NbtCompound> entry : encodedPlayers.entrySet()) {
+            entry.setValue(remapped.next());
+        }
+        encodedPublicHomes = publicNbt;
+        dimensions = compactDimensions;
+        owners = compactOwners;
+        dimensionUses.clear();
+        ownerUses.clear();
+        for (NbtCompound playerNbt : players) {
+            countUses(playerNbt, 1);
+        }
+        countUses(publicNbt, 1);
+    }
+
+    /**
+     * Compacts the header tables with one more write of the main file, if any of their entries went
+     * unused since the last compaction.
+     */
+    private void compactMainFile() {
+        // Without a write of the main file this run, the uses of its public homes were never counted
+        if (encodedPublicHomes == null || unusedTableEntries() == 0 || hasFailures()) {
+            return;
+        }
+        stats.begin();
+        long started = System.nanoTime();
+        try {
+            writeMainFile(false, 0, true);
+        } catch (IOException | RuntimeException e) {
+            // The last save went through, this one only drops unused entries
+            HomePoints.LOGGER.warn("Failed to compact {}", mainFile, e);
+        }
+        stats.finish(System.nanoTime() - started);
+    }
+
+    private void countUses(NbtCompound nbt, int delta) {
+        if (nbt != null) {
+            dimensionUses.add(HomesCodec.dimensionIndices(nbt), delta);
+            ownerUses.add(HomesCodec.ownerIndices(nbt), delta);
+        }
+    }
+
+    private int unusedTableEntries() {
+        return dimensions.size() - dimensionUses.used + owners.size() - ownerUses.used;
+    }
+
+    /**
+     * How many cached homes refer to each entry of a header table.
+     */
+    private static final class TableUses {
+        private int[] uses = new int[16];
+        private int used;
+
+        private void add(int[] indices, int delta) {
+            if (indices == null) {
+                return;
+            }
+            for (int index : indices) {
+                if (index >= uses.length) {
+                    uses = Arrays.copyOf(uses, Math.max(uses.length * 2, index + 1));
+                }
+                int before = uses[index];
+                uses[index] += delta;
+                if (before == 0) {
+                    used++;
+                } else if (uses[index] == 0) {
+                    used--;
+                }
+            }
+        }
+
+        private void clear() {
+            Arrays.fill(uses, 0);
+            used = 0;
+        }
+    }
+
+    public void close() {
+        // Entries of homes deleted during the run are dropped on the way out
+        executor.execute(this::compactMainFile);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                HomePoints.LOGGER.warn("Timed out waiting for the last homes save to finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
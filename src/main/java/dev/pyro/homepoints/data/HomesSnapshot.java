@@ -0,0 +1,49 @@
+package dev.pyro.homepoints.data;
+
+import java.util.Map;
+import java.util.UUID;
+
+class HomesSnapshot {
+    private final Map<UUID, PlayerHomesData> players;
+    private final Map<String, Home> publicHomes;
+    private boolean writeMainFile;
+    private int cleanPlayers;
+    private long journalSegment;
+
+    HomesSnapshot(Map<UUID, PlayerHomesData> players, Map<String, Home> publicHomes,
+                  boolean writeMainFile, int cleanPlayers, long journalSegment) {
+        this.players = players;
+        this.publicHomes = publicHomes;
+        this.writeMainFile = writeMainFile;
+        this.cleanPlayers = cleanPlayers;
+        this.journalSegment = journalSegment;
+    }
+
+    Map<UUID, PlayerHomesData> getPlayers() {
+        return players;
+    }
+
+    Map<String, Home> getPublicHomes() {
+        return publicHomes;
+    }
+
+    boolean writesMainFile() {
+        return writeMainFile;
+    }
+
+    int getCleanPlayers() {
+        return cleanPlayers;
+    }
+
+    long getJournalSegment() {
+        return journalSegment;
+    }
+
+    void merge(HomesSnapshot newer) {
+        players.putAll(newer.players);
+        publicHomes.putAll(newer.publicHomes);
+        writeMainFile |= newer.writeMainFile;
+        cleanPlayers = newer.cleanPlayers;
+        journalSegment = Math.max(journalSegment, newer.journalSegment);
+    }
+}
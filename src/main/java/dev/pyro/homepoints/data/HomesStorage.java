@@ -0,0 +1,84 @@
+package dev.pyro.homepoints.data;
+
+import dev.pyro.homepoints.HomePoints;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * A backend that keeps player homes outside of {@code homes.dat}, so players can be loaded when they
+ * are needed and evicted again. Storages are used from several threads at once: the server thread
+ * loads players, the saver writes them and background jobs scan everyone.
+ * <p>
+ * Public homes stay in {@code homes.dat} unless the storage {@linkplain #storesPublicHomes() keeps
+ * them itself}.
+ */
+public interface HomesStorage extends Closeable {
+
+    /**
+     * Returns the player's homes, or {@code null} if none are stored.
+     */
+    PlayerHomesData load(UUID playerUUID) throws IOException;
+
+    /**
+     * Stores the player's homes, or deletes them once they have none left. Returns the number of
+     * bytes written, or 0 if the storage can't tell.
+     */
+    long save(UUID playerUUID, PlayerHomesData data) throws IOException;
+
+    /**
+     * Stores several players at once and passes those that couldn't be stored to {@code failed}.
+     */
+    default long saveAll(Map<UUID, PlayerHomesData> players, Consumer<UUID> failed) {
+        long bytes = 0;
+        for (Map.Entry<UUID, PlayerHomesData> entry : players.entrySet()) {
+            try {
+                bytes += save(entry.getKey(), entry.getValue());
+            } catch (IOException e) {
+                HomePoints.LOGGER.error("Failed to save homes of {}", entry.getKey(), e);
+                failed.accept(entry.getKey());
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Calls {@code action} for every stored player without collecting them first.
+     */
+    void forEachPlayer(Consumer<UUID> action) throws IOException;
+
+    default List<UUID> listPlayers() throws IOException {
+        List<UUID> players = new ArrayList<>();
+        forEachPlayer(players::add);
+        return players;
+    }
+
+    default boolean isEmpty() throws IOException {
+        return listPlayers().isEmpty();
+    }
+
+    default boolean storesPublicHomes() {
+        return false;
+    }
+
+    default Collection<Home> loadPublicHomes() throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Applies changed public homes, where a {@code null} home means it was deleted.
+     */
+    default void savePublicHomes(Map<String, Home> changes) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+}
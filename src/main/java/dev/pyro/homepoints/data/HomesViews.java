@@ -0,0 +1,141 @@
+package dev.pyro.homepoints.data;
+
+import dev.pyro.homepoints.api.HomesView;
+import net.minecraft.server.MinecraftServer;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Read-only copies of the homes that other threads may look at. The manager itself stays on the
+ * server thread; every change it makes is mirrored here on that same thread, so writes are
+ * serialized and readers only ever see immutable {@link HomesView}s or {@link Home}s.
+ * <p>
+ * Player views are built the first time someone asks for them and replaced on every change after
+ * that, so players nobody reads cost nothing. Players without homes get the empty view the same
+ * way, so reading them again doesn't wait for the server thread either. Public homes are mirrored one by one into a
+ * concurrent map.
+ */
+public final class HomesViews {
+    private static final long LOAD_TIMEOUT_SECONDS = 5;
+
+    private static volatile HomesViews current;
+
+    private final Executor serverThread;
+    private final BooleanSupplier onServerThread;
+    private final Function<UUID, PlayerHomesData> loader;
+    private final Map<UUID, HomesView> players = new ConcurrentHashMap<>();
+    private final Map<String, Home> publicHomes = new ConcurrentHashMap<>();
+    private final Collection<Home> publicHomesView = Collections.unmodifiableCollection(publicHomes.values());
+    private volatile boolean closed;
+
+    HomesViews(MinecraftServer server, HomesManager manager) {
+        this(server, server::isOnThread, manager::findPlayerData);
+    }
+
+    /**
+     * @param serverThread   runs tasks on the thread that owns the homes
+     * @param onServerThread whether the caller is that thread
+     * @param loader         finds a player's homes on that thread, or {@code null} if they have none
+     */
+    HomesViews(Executor serverThread, BooleanSupplier onServerThread, Function<UUID, PlayerHomesData> loader) {
+        this.serverThread = serverThread;
+        this.onServerThread = onServerThread;
+        this.loader = loader;
+    }
+
+    /**
+     * Returns the views of the running server, or {@code null} when no world is loaded.
+     */
+    public static HomesViews current() {
+        return current;
+    }
+
+    static void publish(HomesViews views) {
+        current = views;
+    }
+
+    static void close(HomesViews views) {
+        views.closed = true;
+        if (current == views) {
+            current = null;
+        }
+    }
+
+    /**
+     * Returns the player's homes. Views that were already built are returned as is; otherwise the
+     * view is built on the server thread, which may load the player's data and makes a caller on
+     * another thread wait for the next task slot.
+     */
+    public HomesView homesOf(UUID playerUUID) {
+        HomesView view = players.get(playerUUID);
+        if (view != null) {
+            return view;
+        }
+        if (onServerThread.getAsBoolean()) {
+            return build(playerUUID);
+        }
+
+        try {
+            return CompletableFuture.supplyAsync(() -> build(playerUUID), serverThread)
+                    .get(LOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading homes of " + playerUUID, e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Failed to load homes of " + playerUUID, e);
+        }
+    }
+
+    public Home publicHome(String name) {
+        return publicHomes.get(name);
+    }
+
+    /**
+     * Returns a live, unmodifiable view of the public homes. Iterating it never fails, but may or may
+     * not reflect changes made while iterating.
+     */
+    public Collection<Home> publicHomes() {
+        return publicHomesView;
+    }
+
+    private HomesView build(UUID playerUUID) {
+        HomesView view = players.get(playerUUID);
+        if (view != null || closed) {
+            return view != null ? view : HomesView.EMPTY;
+        }
+
+        PlayerHomesData data = loader.apply(playerUUID);
+        view = data != null ? HomesView.of(data.getHomes()) : HomesView.EMPTY;
+        players.put(playerUUID, view);
+        return view;
+    }
+
+    void playerChanged(UUID playerUUID, PlayerHomesData data) {
+        if (players.containsKey(playerUUID)) {
+            players.put(playerUUID, HomesView.of(data.getHomes()));
+        }
+    }
+
+    void playerEvicted(UUID playerUUID) {
+        players.remove(playerUUID);
+    }
+
+    void publicHomeChanged(Home home) {
+        publicHomes.put(home.getName(), home);
+    }
+
+    void publicHomeDeleted(String name) {
+        publicHomes.remove(name);
+    }
+}
@@ -0,0 +1,56 @@
+package dev.pyro.homepoints.data;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+final class MapHomeStore implements HomeStore {
+    private final Map<String, Home> homes;
+
+    MapHomeStore(int expectedHomes) {
+        this.homes = HashMap.newHashMap(expectedHomes);
+    }
+
+    @Override
+    public Home get(String name) {
+        return homes.get(name);
+    }
+
+    @Override
+    public boolean contains(String name) {
+        return homes.containsKey(name);
+    }
+
+    @Override
+    public boolean put(Home home) {
+        return homes.put(home.getName(), home) == null;
+    }
+
+    @Override
+    public boolean remove(String name) {
+        return homes.remove(name) != null;
+    }
+
+    @Override
+    public int size() {
+        return homes.size();
+    }
+
+    @Override
+    public Collection<Home> homes() {
+        return homes.values();
+    }
+
+    @Override
+    public Set<String> names() {
+        return homes.keySet();
+    }
+
+    @Override
+    public HomeStore copy() {
+        MapHomeStore copy = new MapHomeStore(homes.size());
+        copy.homes.putAll(homes);
+        return copy;
+    }
+}
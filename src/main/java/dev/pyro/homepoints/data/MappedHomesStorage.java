@@ -0,0 +1,454 @@
+package dev.pyro.homepoints.data;
+
+import dev.pyro.homepoints.HomePoints;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.WorldSavePath;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps player homes in a memory-mapped file of fixed-size records, {@code homepoints/homes.rec}, so
+ * saving a player only rewrites the records of homes that actually changed. Which record holds which
+ * home is kept on the heap, keyed by player and home name, and rebuilt by scanning the file when it's
+ * opened; deleted records go on a free list and are reused before the file grows.
+ * <p>
+ * Writes only reach the page cache, which survives the server process crashing. A background thread
+ * calls {@code force()} every {@code storage.mappedFlushIntervalMs} to bound what an OS crash can lose.
+ * Public homes stay in {@code homes.dat}.
+ * <p>
+ * Record layout, all big-endian:
+ * <pre>
+ *   0  byte   state        0 free, 1 in use
+ *   1  byte   flags        how the owner and name are stored
+ *   2  short  dimension    index into homes.rec.dims
+ *   4  float  yaw
+ *   8  float  pitch
+ *  16  long[2] player UUID
+ *  32  long   position     BlockPos.asLong
+ *  40  long[2] owner UUID, or the offset and length of the owner in homes.rec.strings
+ *  56  byte   name length, then up to 71 bytes of name, or the offset and length in homes.rec.strings
+ * </pre>
+ * Owners that aren't the player and aren't a UUID, and names that don't fit, are appended to the
+ * strings file. Its entries are never reclaimed, which is fine for how rarely that happens.
+ */
+public class MappedHomesStorage implements HomesStorage {
+    private static final String FILE_NAME = "homes.rec";
+    private static final int MAGIC = 0x48505243;
+    private static final int VERSION = 1;
+    private static final int RECORD_SIZE = 128;
+    // The header takes the first record slot so records never straddle a page
+    private static final int HEADER_SIZE = RECORD_SIZE;
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE;
+
+    private static final int STATE = 0;
+    private static final int FLAGS = 1;
+    private static final int DIMENSION = 2;
+    private static final int YAW = 4;
+    private static final int PITCH = 8;
+    private static final int PLAYER = 16;
+    private static final int POSITION = 32;
+    private static final int OWNER = 40;
+    private static final int NAME = 56;
+    private static final int NAME_SLOT = RECORD_SIZE - NAME - 1;
+
+    private static final byte FREE = 0;
+    private static final byte USED = 1;
+    private static final int OWNER_IS_PLAYER = 1;
+    private static final int OWNER_UUID = 2;
+    private static final int OWNER_EXTERNAL = 4;
+    private static final int NAME_EXTERNAL = 8;
+
+    private final Path dimensionsFile;
+    private final FileChannel channel;
+    private final FileChannel strings;
+    private final ScheduledExecutorService flusher;
+    private final Map<UUID, Map<String, Integer>> slots = new HashMap<>();
+    private final List<RegistryKey<World>> dimensions = new ArrayList<>();
+    private final Map<RegistryKey<World>, Integer> dimensionIndices = new HashMap<>();
+    private volatile MappedByteBuffer buffer;
+    private volatile boolean unflushed;
+    private int capacity;
+    private int[] freeSlots = new int[64];
+    private int freeCount;
+
+    private MappedHomesStorage(Path file, long flushIntervalMs) throws IOException {
+        Files.createDirectories(file.getParent());
+        this.dimensionsFile = file.resolveSibling(FILE_NAME + ".dims");
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.strings = FileChannel.open(file.resolveSibling(FILE_NAME + ".strings"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            readDimensions();
+            mapFile(file);
+        } catch (IOException e) {
+            channel.close();
+            strings.close();
+            throw e;
+        }
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "HomePoints-Flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public static Path file(MinecraftServer server) {
+        return server.getSavePath(WorldSavePath.ROOT).resolve("homepoints").resolve(FILE_NAME);
+    }
+
+    public static MappedHomesStorage forServer(MinecraftServer server, long flushIntervalMs) throws IOException {
+        return open(file(server), flushIntervalMs);
+    }
+
+    public static MappedHomesStorage open(Path file, long flushIntervalMs) throws IOException {
+        return new MappedHomesStorage(file, flushIntervalMs);
+    }
+
+    private void mapFile(Path file) throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            capacity = INITIAL_CAPACITY;
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, RECORD_SIZE);
+            addFreeSlots(0, capacity);
+            unflushed = true;
+            return;
+        }
+
+        if (size < HEADER_SIZE || (size - HEADER_SIZE) % RECORD_SIZE != 0 || size > HEADER_SIZE + (long) MAX_CAPACITY * RECORD_SIZE) {
+            throw new IOException("Unexpected size " + size + " of " + file);
+        }
+        capacity = (int) ((size - HEADER_SIZE) / RECORD_SIZE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != RECORD_SIZE) {
+            throw new IOException(file + " is not a homes record file of version " + VERSION);
+        }
+
+        int used = 0;
+        // Pushed from the end so the lowest free slots are reused first
+        for (int slot = capacity - 1; slot >= 0; slot--) {
+            int offset = offsetOf(slot);
+            if (buffer.get(offset + STATE) == USED) {
+                UUID playerUUID = new UUID(buffer.getLong(offset + PLAYER), buffer.getLong(offset + PLAYER + 8));
+                slots.computeIfAbsent(playerUUID, id -> new HashMap<>()).put(readName(offset), slot);
+                used++;
+            } else {
+                pushFree(slot);
+            }
+        }
+        HomePoints.LOGGER.info("Opened {} with {} homes of {} players in {} records", file, used, slots.size(), capacity);
+    }
+
+    @Override
+    public synchronized PlayerHomesData load(UUID playerUUID) throws IOException {
+        Map<String, Integer> playerSlots = slots.get(playerUUID);
+        if (playerSlots == null) {
+            return null;
+        }
+        PlayerHomesData data = new PlayerHomesData(playerSlots.size());
+        for (int slot : playerSlots.values()) {
+            data.putHome(readHome(offsetOf(slot), playerUUID));
+        }
+        return data;
+    }
+
+    /**
+     * Writes the records of homes that changed since the last save and frees those of deleted homes.
+     * Returns the number of bytes written.
+     */
+    @Override
+    public synchronized long save(UUID playerUUID, PlayerHomesData data) throws IOException {
+        Map<String, Integer> playerSlots = slots.get(playerUUID);
+        long written = 0;
+
+        if (playerSlots != null) {
+            playerSlots.entrySet().removeIf(entry -> {
+                if (data.hasHome(entry.getKey())) {
+                    return false;
+                }
+                freeSlot(entry.getValue());
+                return true;
+            });
+        }
+
+        for (Home home : data.getHomes()) {
+            Integer slot = playerSlots != null ? playerSlots.get(home.getName()) : null;
+            if (slot != null) {
+                if (sameHome(readHome(offsetOf(slot), playerUUID), home)) {
+                    continue;
+                }
+            } else {
+                if (playerSlots == null) {
+                    playerSlots = new HashMap<>();
+                    slots.put(playerUUID, playerSlots);
+                }
+                slot = allocateSlot();
+                playerSlots.put(home.getName(), slot);
+            }
+            writeHome(offsetOf(slot), playerUUID, home);
+            written += RECORD_SIZE;
+        }
+
+        if (playerSlots != null && playerSlots.isEmpty()) {
+            slots.remove(playerUUID);
+        }
+        unflushed = true;
+        return written;
+    }
+
+    @Override
+    public void forEachPlayer(Consumer<UUID> action) {
+        List<UUID> players;
+        synchronized (this) {
+            players = new ArrayList<>(slots.keySet());
+        }
+        // Not holding the lock while visiting, so the action may load players itself
+        players.forEach(action);
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return slots.isEmpty();
+    }
+
+    /**
+     * Frees every record, as the first step of copying homes in from another storage.
+     */
+    synchronized void clear() {
+        for (Map<String, Integer> playerSlots : slots.values()) {
+            for (int slot : playerSlots.values()) {
+                freeSlot(slot);
+            }
+        }
+        slots.clear();
+        unflushed = true;
+    }
+
+    private Home readHome(int offset, UUID playerUUID) throws IOException {
+        int flags = buffer.get(offset + FLAGS);
+        String owner;
+        if ((flags & OWNER_IS_PLAYER) != 0) {
+            owner = playerUUID.toString();
+        } else if ((flags & OWNER_UUID) != 0) {
+            owner = new UUID(buffer.getLong(offset + OWNER), buffer.getLong(offset + OWNER + 8)).toString();
+        } else {
+            owner = readString(buffer.getLong(offset + OWNER), buffer.getInt(offset + OWNER + 8));
+        }
+
+        return new Home(readName(offset),
+                BlockPos.fromLong(buffer.getLong(offset + POSITION)),
+                dimensions.get(buffer.getShort(offset + DIMENSION)),
+                buffer.getFloat(offset + YAW),
+                buffer.getFloat(offset + PITCH),
+                owner);
+    }
+
+    private String readName(int offset) throws IOException {
+        if ((buffer.get(offset + FLAGS) & NAME_EXTERNAL) != 0) {
+            return readString(buffer.getLong(offset + NAME + 1), buffer.getInt(offset + NAME + 9));
+        }
+        byte[] name = new byte[buffer.get(offset + NAME)];
+        buffer.get(offset + NAME + 1, name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    private void writeHome(int offset, UUID playerUUID, Home home) throws IOException {
+        // Marked free while it's rewritten, a torn record is then dropped rather than read back half-updated
+        buffer.put(offset + STATE, FREE);
+
+        int flags = 0;
+        String owner = home.getOwner();
+        UUID ownerUUID = parseUuid(owner);
+        if (owner.equals(playerUUID.toString())) {
+            flags |= OWNER_IS_PLAYER;
+        } else if (ownerUUID != null) {
+            flags |= OWNER_UUID;
+            buffer.putLong(offset + OWNER, ownerUUID.getMostSignificantBits());
+            buffer.putLong(offset + OWNER + 8, ownerUUID.getLeastSignificantBits());
+        } else {
+            flags |= OWNER_EXTERNAL;
+            writeStringRef(offset + OWNER, owner);
+        }
+
+        byte[] name = home.getName().getBytes(StandardCharsets.UTF_8);
+        if (name.length <= NAME_SLOT) {
+            buffer.put(offset + NAME, (byte) name.length);
+            buffer.put(offset + NAME + 1, name);
+        } else {
+            flags |= NAME_EXTERNAL;
+            writeStringRef(offset + NAME + 1, home.getName());
+        }
+
+        buffer.put(offset + FLAGS, (byte) flags);
+        buffer.putShort(offset + DIMENSION, (short) dimensionIndex(home.getDimension()));
+        buffer.putFloat(offset + YAW, home.getYaw());
+        buffer.putFloat(offset + PITCH, home.getPitch());
+        buffer.putLong(offset + PLAYER, playerUUID.getMostSignificantBits());
+        buffer.putLong(offset + PLAYER + 8, playerUUID.getLeastSignificantBits());
+        buffer.putLong(offset + POSITION, home.getPosition().asLong());
+        buffer.put(offset + STATE, USED);
+    }
+
+    private static UUID parseUuid(String text) {
+        try {
+            UUID uuid = UUID.fromString(text);
+            return uuid.toString().equals(text) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean sameHome(Home a, Home b) {
+        return a.getPosition().equals(b.getPosition())
+                && a.getDimension().equals(b.getDimension())
+                && Float.floatToIntBits(a.getYaw()) == Float.floatToIntBits(b.getYaw())
+                && Float.floatToIntBits(a.getPitch()) == Float.floatToIntBits(b.getPitch())
+                && a.getOwner().equals(b.getOwner());
+    }
+
+    private void writeStringRef(int offset, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long position = strings.size();
+        strings.write(ByteBuffer.wrap(bytes), position);
+        buffer.putLong(offset, position);
+        buffer.putInt(offset + 8, bytes.length);
+    }
+
+    private String readString(long position, int length) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        while (bytes.hasRemaining()) {
+            if (strings.read(bytes, position + bytes.position()) < 0) {
+                throw new IOException("Truncated " + FILE_NAME + ".strings");
+            }
+        }
+        return new String(bytes.array(), StandardCharsets.UTF_8);
+    }
+
+    private void readDimensions() throws IOException {
+        if (!Files.exists(dimensionsFile)) {
+            return;
+        }
+        for (String line : Files.readAllLines(dimensionsFile, StandardCharsets.UTF_8)) {
+            if (!line.isEmpty()) {
+                RegistryKey<World> dimension = DimensionKeys.of(line);
+                dimensionIndices.put(dimension, dimensions.size());
+                dimensions.add(dimension);
+            }
+        }
+    }
+
+    private int dimensionIndex(RegistryKey<World> dimension) throws IOException {
+        Integer index = dimensionIndices.get(dimension);
+        if (index != null) {
+            return index;
+        }
+        if (dimensions.size() > Short.MAX_VALUE) {
+            throw new IOException("Too many dimensions for " + FILE_NAME);
+        }
+
+        // Appended and forced right away, records must never point at a dimension that isn't stored
+        Files.writeString(dimensionsFile, dimension.getValue() + "\n", StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+        dimensionIndices.put(dimension, dimensions.size());
+        dimensions.add(dimension);
+        return dimensions.size() - 1;
+    }
+
+    private int allocateSlot() throws IOException {
+        if (freeCount == 0) {
+            grow();
+        }
+        return freeSlots[--freeCount];
+    }
+
+    private void freeSlot(int slot) {
+        buffer.put(offsetOf(slot) + STATE, FREE);
+        pushFree(slot);
+    }
+
+    private void pushFree(int slot) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    private void addFreeSlots(int from, int to) {
+        for (int slot = to - 1; slot >= from; slot--) {
+            pushFree(slot);
+        }
+    }
+
+    private void grow() throws IOException {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IOException(FILE_NAME + " is full");
+        }
+        int newCapacity = (int) Math.min(MAX_CAPACITY, capacity * 2L);
+        // The old mapping stays valid until it's collected, the flusher may still be forcing it
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) newCapacity * RECORD_SIZE);
+        addFreeSlots(capacity, newCapacity);
+        capacity = newCapacity;
+    }
+
+    private static int offsetOf(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private void flush() {
+        if (!unflushed) {
+            return;
+        }
+        unflushed = false;
+        try {
+            buffer.force();
+            strings.force(false);
+        } catch (IOException | UncheckedIOException e) {
+            unflushed = true;
+            HomePoints.LOGGER.error("Failed to flush {}", FILE_NAME, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(10, TimeUnit.SECONDS)) {
+                HomePoints.LOGGER.warn("Timed out waiting for {} to flush", FILE_NAME);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            buffer.force();
+            strings.force(false);
+            channel.close();
+            strings.close();
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package dev.pyro.homepoints.data;
+
+import net.minecraft.util.math.BlockPos;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * Keeps homes in parallel primitive arrays with a linear-probing name index. {@link Home} objects
+ * are only created when a caller asks for one. The owner of the first home is shared by every home
+ * with the same owner; a separate owner column is only allocated once a home has a different one.
+ */
+final class PackedHomeStore implements HomeStore {
+    private static final int EMPTY = -1;
+
+    private String[] names;
+    private long[] positions;
+    private long[] rotations;
+    private short[] dimensions;
+    private String owner;
+    private String[] owners;
+    private int size;
+    private int[] slots;
+
+    PackedHomeStore(int expectedHomes) {
+        int capacity = Math.max(expectedHomes, 2);
+        this.names = new String[capacity];
+        this.positions = new long[capacity];
+        this.rotations = new long[capacity];
+        this.dimensions = new short[capacity];
+        this.slots = newSlots(capacity);
+    }
+
+    private PackedHomeStore(PackedHomeStore other) {
+        this.names = Arrays.copyOf(other.names, other.size);
+        this.positions = Arrays.copyOf(other.positions, other.size);
+        this.rotations = Arrays.copyOf(other.rotations, other.size);
+        this.dimensions = Arrays.copyOf(other.dimensions, other.size);
+        this.owner = other.owner;
+        this.owners = other.owners != null ? Arrays.copyOf(other.owners, other.size) : null;
+        this.size = other.size;
+        this.slots = other.slots.clone();
+    }
+
+    @Override
+    public Home get(String name) {
+        int index = slots[findSlot(name)];
+        return index == EMPTY ? null : view(index);
+    }
+
+    @Override
+    public boolean contains(String name) {
+        return slots[findSlot(name)] != EMPTY;
+    }
+
+    @Override
+    public boolean put(Home home) {
+        int slot = findSlot(home.getName());
+        int index = slots[slot];
+        boolean added = index == EMPTY;
+        if (added) {
+            if (size == names.length) {
+                grow();
+            }
+            if ((size + 1) * 2 > slots.length) {
+                rehash(slots.length * 2);
+                slot = findSlot(home.getName());
+            }
+            index = size++;
+            slots[slot] = index;
+            names[index] = home.getName();
+        }
+
+        positions[index] = home.getPosition().asLong();
+        rotations[index] = ((long) Float.floatToRawIntBits(home.getYaw()) << 32)
+                | (Float.floatToRawIntBits(home.getPitch()) & 0xFFFFFFFFL);
+        dimensions[index] = (short) DimensionKeys.indexOf(home.getDimension());
+        setOwner(index, home.getOwner());
+        return added;
+    }
+
+    @Override
+    public boolean remove(String name) {
+        int slot = findSlot(name);
+        int index = slots[slot];
+        if (index == EMPTY) {
+            return false;
+        }
+
+        deleteSlot(slot);
+        int last = size - 1;
+        if (index != last) {
+            names[index] = names[last];
+            positions[index] = positions[last];
+            rotations[index] = rotations[last];
+            dimensions[index] = dimensions[last];
+            if (owners != null) {
+                owners[index] = owners[last];
+            }
+            slots[findSlot(names[index])] = index;
+        }
+        names[last] = null;
+        if (owners != null) {
+            owners[last] = null;
+        }
+        size = last;
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Collection<Home> homes() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Home> iterator() {
+                return new IndexIterator<>(PackedHomeStore.this::view);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Set<String> names() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new IndexIterator<>(index -> names[index]);
+            }
+
+            @Override
+            public boolean contains(Object name) {
+                return name instanceof String string && PackedHomeStore.this.contains(string);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public HomeStore copy() {
+        return new PackedHomeStore(this);
+    }
+
+    private Home view(int index) {
+        long rotation = rotations[index];
+        return new Home(
+                names[index],
+                BlockPos.fromLong(positions[index]),
+                DimensionKeys.byIndex(dimensions[index]),
+                Float.intBitsToFloat((int) (rotation >>> 32)),
+                Float.intBitsToFloat((int) rotation),
+                owners != null && owners[index] != null ? owners[index] : owner
+        );
+    }
+
+    private void setOwner(int index, String homeOwner) {
+        if (owner == null) {
+            owner = homeOwner;
+        }
+        if (owner.equals(homeOwner)) {
+            if (owners != null) {
+                owners[index] = null;
+            }
+            return;
+        }
+        if (owners == null) {
+            owners = new String[names.length];
+        }
+        owners[index] = homeOwner;
+    }
+
+    private void grow() {
+        int capacity = names.length + (names.length >> 1) + 1;
+        names = Arrays.copyOf(names, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+        rotations = Arrays.copyOf(rotations, capacity);
+        dimensions = Arrays.copyOf(dimensions, capacity);
+        if (owners != null) {
+            owners = Arrays.copyOf(owners, capacity);
+        }
+    }
+
+    private int findSlot(String name) {
+        int mask = slots.length - 1;
+        int slot = hash(name) & mask;
+        while (slots[slot] != EMPTY && !names[slots[slot]].equals(name)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Empties a slot and shifts later entries of the same probe run back so lookups never stop early.
+     */
+    private void deleteSlot(int slot) {
+        int mask = slots.length - 1;
+        int hole = slot;
+        for (int i = (slot + 1) & mask; slots[i] != EMPTY; i = (i + 1) & mask) {
+            int ideal = hash(names[slots[i]]) & mask;
+            if (((i - ideal) & mask) >= ((i - hole) & mask)) {
+                slots[hole] = slots[i];
+                hole = i;
+            }
+        }
+        slots[hole] = EMPTY;
+    }
+
+    private void rehash(int tableSize) {
+        slots = new int[tableSize];
+        Arrays.fill(slots, EMPTY);
+        for (int index = 0; index < size; index++) {
+            slots[findSlot(names[index])] = index;
+        }
+    }
+
+    private static int[] newSlots(int capacity) {
+        int[] table = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    private static int hash(String name) {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private final class IndexIterator<T> implements Iterator<T> {
+        private final IntFunction<T> getter;
+        private int next;
+
+        private IndexIterator(IntFunction<T> getter) {
+            this.getter = getter;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public T next() {
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            return getter.apply(next++);
+        }
+    }
+}
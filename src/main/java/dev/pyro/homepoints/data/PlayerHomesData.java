@@ -1,54 +1,106 @@
 package dev.pyro.homepoints.data;
 
+import dev.pyro.homepoints.config.HomePointsConfig;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtList;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collection;
 import java.util.Set;
 
 public class PlayerHomesData {
     public static final int MAX_HOMES = 100;
 
-    private final Map<String, Home> homes;
+    private final HomeStore homes;
+    private HomeNameIndex nameIndex;
+    private int version;
 
     public PlayerHomesData() {
-        this.homes = new HashMap<>();
+        this(0);
+    }
+
+    PlayerHomesData(int expectedHomes) {
+        this(HomePointsConfig.compactHomes ? new PackedHomeStore(expectedHomes) : new MapHomeStore(expectedHomes));
+    }
+
+    private PlayerHomesData(HomeStore homes) {
+        this.homes = homes;
     }
 
     public boolean setHome(Home home) {
-        if (!homes.containsKey(home.getName()) && homes.size() >= MAX_HOMES) {
+        if (!homes.contains(home.getName()) && homes.size() >= MAX_HOMES) {
             return false;
         }
-        homes.put(home.getName(), home);
+        putHome(home);
         return true;
     }
 
+    void putHome(Home home) {
+        version++;
+        if (homes.put(home) && nameIndex != null) {
+            nameIndex.add(home.getName());
+        }
+    }
+
     public boolean deleteHome(String name) {
-        return homes.remove(name) != null;
+        if (!homes.remove(name)) {
+            return false;
+        }
+        version++;
+        if (nameIndex != null) {
+            nameIndex.remove(name);
+        }
+        return true;
     }
 
     public Home getHome(String name) {
         return homes.get(name);
     }
 
+    public Collection<Home> getHomes() {
+        return homes.homes();
+    }
+
     public Set<String> getHomeNames() {
-        return homes.keySet();
+        return homes.names();
     }
 
     public boolean hasHome(String name) {
-        return homes.containsKey(name);
+        return homes.contains(name);
+    }
+
+    /**
+     * Returns the sorted name index, building it on first use so players who never tab complete don't pay for it.
+     */
+    public HomeNameIndex getNameIndex() {
+        if (nameIndex == null) {
+            nameIndex = new HomeNameIndex();
+            for (String name : homes.names()) {
+                nameIndex.add(name);
+            }
+        }
+        return nameIndex;
+    }
+
+    /**
+     * Changes whenever a home is added, replaced or deleted. Lets callers cache anything derived from the homes.
+     */
+    public int getVersion() {
+        return version;
     }
 
     public int getHomeCount() {
         return homes.size();
     }
 
+    public PlayerHomesData copy() {
+        return new PlayerHomesData(homes.copy());
+    }
+
     public NbtCompound toNbt() {
         NbtCompound nbt = new NbtCompound();
         NbtList homesList = new NbtList();
 
-        for (Home home : homes.values()) {
+        for (Home home : homes.homes()) {
             homesList.add(home.toNbt());
         }
 
@@ -57,17 +109,16 @@ public class PlayerHomesData {
     }
 
     public static PlayerHomesData fromNbt(NbtCompound nbt) {
-        PlayerHomesData data = new PlayerHomesData();
-
-        if (nbt.contains("homes")) {
-            NbtList homesList = nbt.getList("homes");
-            for (int i = 0; i < homesList.size(); i++) {
-                NbtCompound homeNbt = homesList.getCompound(i);
-                Home home = Home.fromNbt(homeNbt);
-                data.homes.put(home.getName(), home);
-            }
+        if (!nbt.contains("homes")) {
+            return new PlayerHomesData();
         }
 
+        NbtList homesList = nbt.getList("homes");
+        PlayerHomesData data = new PlayerHomesData(homesList.size());
+        for (int i = 0; i < homesList.size(); i++) {
+            NbtCompound homeNbt = homesList.getCompound(i);
+            data.putHome(Home.fromNbt(homeNbt));
+        }
         return data;
     }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package dev.pyro.homepoints.data;
+
+import net.minecraft.server.MinecraftServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Reads player homes from a background thread without stalling the server. Loaded players are copied
+ * on the server thread a small batch at a time; anyone who isn't loaded, or was evicted in the
+ * meantime, is read from the storage, which is up to date once a player can be evicted.
+ */
+final class PlayerHomesScan {
+    private static final int BATCH_SIZE = 256;
+    private static final long SERVER_TIMEOUT_SECONDS = 30;
+
+    interface Visitor {
+        void visit(UUID playerUUID, PlayerHomesData data) throws IOException;
+    }
+
+    private PlayerHomesScan() {
+    }
+
+    /**
+     * Visits every player with homes: all loaded players and, with a {@link HomesStorage}, everyone stored.
+     */
+    static void forEachPlayer(MinecraftServer server, HomesManager manager, Visitor visitor) throws IOException {
+        List<UUID> loaded = onServerThread(server, manager::getLoadedPlayers);
+        forEachOf(server, manager, loaded, visitor);
+
+        HomesStorage storage = manager.getStorage();
+        if (storage == null) {
+            return;
+        }
+        Set<UUID> visited = new HashSet<>(loaded);
+        try {
+            storage.forEachPlayer(playerUUID -> {
+                if (!visited.contains(playerUUID)) {
+                    visitStored(storage, playerUUID, visitor);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Visits the given players. Players without homes anywhere are visited with empty data.
+     */
+    static void forEachOf(MinecraftServer server, HomesManager manager, List<UUID> players, Visitor visitor)
+            throws IOException {
+        HomesStorage storage = manager.getStorage();
+        for (int start = 0; start < players.size(); start += BATCH_SIZE) {
+            List<UUID> batch = players.subList(start, Math.min(players.size(), start + BATCH_SIZE));
+            Map<UUID, PlayerHomesData> copies = onServerThread(server, () -> manager.copyLoadedPlayers(batch));
+            for (UUID playerUUID : batch) {
+                PlayerHomesData data = copies.get(playerUUID);
+                if (data != null) {
+                    visitor.visit(playerUUID, data);
+                } else if (storage != null) {
+                    visitStored(storage, playerUUID, visitor);
+                } else {
+                    visitor.visit(playerUUID, new PlayerHomesData());
+                }
+            }
+        }
+    }
+
+    private static void visitStored(HomesStorage storage, UUID playerUUID, Visitor visitor) {
+        try {
+            PlayerHomesData data = storage.load(playerUUID);
+            visitor.visit(playerUUID, data != null ? data : new PlayerHomesData());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static <T> T onServerThread(MinecraftServer server, Supplier<T> task) throws IOException {
+        try {
+            return server.submit(task).get(SERVER_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the server thread", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IOException("Failed to read homes on the server thread", e);
+        }
+    }
+}
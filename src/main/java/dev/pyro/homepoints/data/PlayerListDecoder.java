@@ -0,0 +1,61 @@
+package dev.pyro.homepoints.data;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtList;
+
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Decodes a list of player entries on the common fork-join pool. Entries are written into arrays
+ * by index so the caller can build its maps in a single pass afterwards.
+ */
+final class PlayerListDecoder extends RecursiveAction {
+    private static final int THRESHOLD = 128;
+
+    private final NbtList list;
+    private final Function<NbtCompound, UUID> idReader;
+    private final BiFunction<NbtCompound, UUID, PlayerHomesData> decoder;
+    private final UUID[] ids;
+    private final PlayerHomesData[] data;
+    private final int from;
+    private final int to;
+
+    private PlayerListDecoder(NbtList list, Function<NbtCompound, UUID> idReader,
+                              BiFunction<NbtCompound, UUID, PlayerHomesData> decoder,
+                              UUID[] ids, PlayerHomesData[] data, int from, int to) {
+        this.list = list;
+        this.idReader = idReader;
+        this.decoder = decoder;
+        this.ids = ids;
+        this.data = data;
+        this.from = from;
+        this.to = to;
+    }
+
+    static void decode(NbtList list, Function<NbtCompound, UUID> idReader,
+                       BiFunction<NbtCompound, UUID, PlayerHomesData> decoder,
+                       UUID[] ids, PlayerHomesData[] data) {
+        ForkJoinPool.commonPool().invoke(new PlayerListDecoder(list, idReader, decoder, ids, data, 0, list.size()));
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= THRESHOLD) {
+            for (int i = from; i < to; i++) {
+                NbtCompound playerNbt = list.getCompound(i);
+                UUID playerUUID = idReader.apply(playerNbt);
+                ids[i] = playerUUID;
+                data[i] = decoder.apply(playerNbt, playerUUID);
+            }
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        invokeAll(new PlayerListDecoder(list, idReader, decoder, ids, data, from, middle),
+                new PlayerListDecoder(list, idReader, decoder, ids, data, middle, to));
+    }
+}
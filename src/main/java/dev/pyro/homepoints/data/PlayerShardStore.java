@@ -0,0 +1,146 @@
+package dev.pyro.homepoints.data;
+
+import dev.pyro.homepoints.HomePoints;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtSizeTracker;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.WorldSavePath;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Keeps each player's homes in their own compressed NBT file under {@code homepoints/players}. In a
+ * {@link SharedHomesDirectory} writes hold its lock, and every written shard is recorded so the
+ * watcher can tell this server's writes from those of others.
+ */
+public class PlayerShardStore implements HomesStorage {
+    private static final String EXTENSION = ".dat";
+
+    private final Path directory;
+    private final SharedHomesDirectory shared;
+
+    public PlayerShardStore(Path directory) {
+        this(directory, null);
+    }
+
+    PlayerShardStore(Path directory, SharedHomesDirectory shared) {
+        this.directory = directory;
+        this.shared = shared;
+    }
+
+    public static PlayerShardStore forServer(MinecraftServer server) {
+        return new PlayerShardStore(server.getSavePath(WorldSavePath.ROOT)
+                .resolve("homepoints")
+                .resolve("players"));
+    }
+
+    @Override
+    public PlayerHomesData load(UUID playerUUID) throws IOException {
+        Path path = pathFor(playerUUID);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        return HomesCodec.decodeShard(NbtIo.readCompressed(path, NbtSizeTracker.ofUnlimitedBytes()), playerUUID);
+    }
+
+    /**
+     * Writes the player's shard, or deletes it once they have no homes left. Returns the size of the written file.
+     */
+    @Override
+    public long save(UUID playerUUID, PlayerHomesData data) throws IOException {
+        if (shared == null) {
+            return write(playerUUID, data);
+        }
+        return shared.locked(() -> write(playerUUID, data));
+    }
+
+    /**
+     * Writes a batch of shards, holding the shared directory's lock once for all of them.
+     */
+    @Override
+    public long saveAll(Map<UUID, PlayerHomesData> players, Consumer<UUID> failed) {
+        if (shared == null) {
+            return HomesStorage.super.saveAll(players, failed);
+        }
+        if (players.isEmpty()) {
+            return 0;
+        }
+        try {
+            return shared.locked(() -> {
+                long bytes = 0;
+                for (Map.Entry<UUID, PlayerHomesData> entry : players.entrySet()) {
+                    try {
+                        bytes += write(entry.getKey(), entry.getValue());
+                    } catch (IOException e) {
+                        HomePoints.LOGGER.error("Failed to save homes of {}", entry.getKey(), e);
+                        failed.accept(entry.getKey());
+                    }
+                }
+                return bytes;
+            });
+        } catch (IOException e) {
+            HomePoints.LOGGER.error("Failed to lock {} to save homes of {} players", directory, players.size(), e);
+            players.keySet().forEach(failed);
+            return 0;
+        }
+    }
+
+    private long write(UUID playerUUID, PlayerHomesData data) throws IOException {
+        Path path = pathFor(playerUUID);
+        long bytes = 0;
+        if (data.getHomeCount() == 0) {
+            Files.deleteIfExists(path);
+        } else {
+            HomesSaver.writeCompressedAtomically(HomesCodec.encodeShard(playerUUID, data), path);
+            bytes = Files.size(path);
+        }
+        if (shared != null) {
+            shared.recordWrite(path);
+        }
+        return bytes;
+    }
+
+    /**
+     * Calls {@code action} for every stored player while walking the directory, without collecting them first.
+     */
+    @Override
+    public void forEachPlayer(Consumer<UUID> action) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path path : stream) {
+                UUID playerUUID = playerOf(path);
+                if (playerUUID != null) {
+                    action.accept(playerUUID);
+                }
+            }
+        }
+    }
+
+    Path pathFor(UUID playerUUID) {
+        return directory.resolve(playerUUID + EXTENSION);
+    }
+
+    /**
+     * Returns the player a shard file belongs to, or {@code null} if {@code path} isn't a shard.
+     */
+    static UUID playerOf(Path path) {
+        String fileName = path.getFileName().toString();
+        if (!fileName.endsWith(EXTENSION)) {
+            return null;
+        }
+        try {
+            return UUID.fromString(fileName.substring(0, fileName.length() - EXTENSION.length()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
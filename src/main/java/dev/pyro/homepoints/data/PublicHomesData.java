@@ -3,37 +3,210 @@ package dev.pyro.homepoints.data;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtList;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 public class PublicHomesData {
+    public static final int MAX_SEARCH_RESULTS = 100;
+
+    public enum SortOrder {
+        NAME,
+        OWNER,
+        DIMENSION
+    }
+
     private final Map<String, Home> publicHomes;
+    private final Set<String> dirtyHomes;
+    private final HomeNameIndex nameIndex;
+    private final HomeSearchIndex searchIndex = new HomeSearchIndex();
+    private final Map<String, HomeNameIndex> ownerIndex = new TreeMap<>();
+    private final Map<String, HomeNameIndex> dimensionIndex = new TreeMap<>();
+    private int version;
 
     public PublicHomesData() {
         this.publicHomes = new HashMap<>();
+        this.dirtyHomes = new HashSet<>();
+        this.nameIndex = new HomeNameIndex();
+    }
+
+    PublicHomesData(int expectedHomes) {
+        this.publicHomes = HashMap.newHashMap(expectedHomes);
+        this.dirtyHomes = new HashSet<>();
+        this.nameIndex = new HomeNameIndex();
     }
 
     public void setPublicHome(Home home) {
-        publicHomes.put(home.getName(), home);
+        putPublicHome(home);
+        dirtyHomes.add(home.getName());
+    }
+
+    void putPublicHome(Home home) {
+        version++;
+        Home previous = publicHomes.put(home.getName(), home);
+        if (previous == null) {
+            nameIndex.add(home.getName());
+            searchIndex.add(home.getName());
+        } else {
+            removeFromGroups(previous);
+        }
+        addToGroups(home);
     }
 
     public boolean deletePublicHome(String name) {
-        return publicHomes.remove(name) != null;
+        if (!removePublicHome(name)) {
+            return false;
+        }
+        dirtyHomes.add(name);
+        return true;
+    }
+
+    boolean removePublicHome(String name) {
+        Home removed = publicHomes.remove(name);
+        if (removed == null) {
+            return false;
+        }
+        nameIndex.remove(name);
+        searchIndex.remove(name);
+        removeFromGroups(removed);
+        version++;
+        return true;
+    }
+
+    private void addToGroups(Home home) {
+        addToGroup(ownerIndex, home.getOwner(), home.getName());
+        addToGroup(dimensionIndex, home.getDimension().getValue().toString(), home.getName());
+    }
+
+    private void removeFromGroups(Home home) {
+        removeFromGroup(ownerIndex, home.getOwner(), home.getName());
+        removeFromGroup(dimensionIndex, home.getDimension().getValue().toString(), home.getName());
+    }
+
+    private static void addToGroup(Map<String, HomeNameIndex> groups, String key, String name) {
+        HomeNameIndex group = groups.get(key);
+        if (group == null) {
+            group = new HomeNameIndex();
+            groups.put(key, group);
+        }
+        group.add(name);
+    }
+
+    private static void removeFromGroup(Map<String, HomeNameIndex> groups, String key, String name) {
+        HomeNameIndex group = groups.get(key);
+        if (group != null) {
+            group.remove(name);
+            if (group.isEmpty()) {
+                groups.remove(key);
+            }
+        }
     }
 
     public Home getPublicHome(String name) {
         return publicHomes.get(name);
     }
 
+    Map<String, Home> asMap() {
+        return publicHomes;
+    }
+
+    public Collection<Home> getPublicHomes() {
+        return publicHomes.values();
+    }
+
     public Set<String> getPublicHomeNames() {
         return publicHomes.keySet();
     }
 
+    public HomeNameIndex getNameIndex() {
+        return nameIndex;
+    }
+
+    /**
+     * Returns the names of the public homes owned by {@code owner}, sorted by name.
+     */
+    public List<String> getPublicHomeNamesOf(String owner) {
+        HomeNameIndex group = ownerIndex.get(owner);
+        return group != null ? group.toList() : List.of();
+    }
+
+    /**
+     * Returns every public home name in the given order. Owner and dimension orders group the
+     * homes by owner UUID or dimension id, sorted by name within each group.
+     */
+    public List<String> getSortedNames(SortOrder order) {
+        if (order == SortOrder.NAME) {
+            return nameIndex.toList();
+        }
+
+        List<String> result = new ArrayList<>(publicHomes.size());
+        for (HomeNameIndex group : (order == SortOrder.OWNER ? ownerIndex : dimensionIndex).values()) {
+            result.addAll(group.toList());
+        }
+        return result;
+    }
+
+    /**
+     * Returns up to {@code limit} public home names containing {@code text}, ignoring case, sorted by name.
+     */
+    public List<String> search(String text, int limit) {
+        String query = text.toLowerCase(Locale.ROOT);
+        if (query.length() < HomeSearchIndex.GRAM_LENGTH) {
+            // Too short to narrow down by slices; walk the sorted names until the limit is reached.
+            return nameIndex.matching(name -> name.toLowerCase(Locale.ROOT).contains(query), limit);
+        }
+
+        List<String> result = new ArrayList<>();
+        for (String name : searchIndex.candidates(query)) {
+            if (name.toLowerCase(Locale.ROOT).contains(query)) {
+                result.add(name);
+            }
+        }
+        result.sort(HomeNameIndex.ORDER);
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
     public boolean hasPublicHome(String name) {
         return publicHomes.containsKey(name);
     }
 
+    /**
+     * Marks every public home as changed, so the next save writes all of them.
+     */
+    void markAllDirty() {
+        dirtyHomes.addAll(publicHomes.keySet());
+    }
+
+    public boolean isDirty() {
+        return !dirtyHomes.isEmpty();
+    }
+
+    /**
+     * Whether the public home was changed or deleted since the last save.
+     */
+    boolean isUnsaved(String name) {
+        return dirtyHomes.contains(name);
+    }
+
+    Map<String, Home> drainChanges() {
+        Map<String, Home> changes = new HashMap<>();
+        for (String name : dirtyHomes) {
+            changes.put(name, publicHomes.get(name));
+        }
+        dirtyHomes.clear();
+        return changes;
+    }
+
     public NbtCompound toNbt() {
         NbtCompound nbt = new NbtCompound();
         NbtList homesList = new NbtList();
@@ -47,17 +220,16 @@ public class PublicHomesData {
     }
 
     public static PublicHomesData fromNbt(NbtCompound nbt) {
-        PublicHomesData data = new PublicHomesData();
-
-        if (nbt.contains("publicHomes")) {
-            NbtList homesList = nbt.getList("publicHomes");
-            for (int i = 0; i < homesList.size(); i++) {
-                NbtCompound homeNbt = homesList.getCompound(i);
-                Home home = Home.fromNbt(homeNbt);
-                data.publicHomes.put(home.getName(), home);
-            }
+        if (!nbt.contains("publicHomes")) {
+            return new PublicHomesData();
         }
 
+        NbtList homesList = nbt.getList("publicHomes");
+        PublicHomesData data = new PublicHomesData(homesList.size());
+        for (int i = 0; i < homesList.size(); i++) {
+            NbtCompound homeNbt = homesList.getCompound(i);
+            data.putPublicHome(Home.fromNbt(homeNbt));
+        }
         return data;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,85 @@
+package dev.pyro.homepoints.data;
+
+public class SaveStats {
+    private int written;
+    private int skipped;
+    private boolean failed;
+    private volatile int lastWritten;
+    private volatile int lastSkipped;
+    private volatile long totalWritten;
+    private volatile long totalSkipped;
+    private volatile long saves;
+    private volatile long failedSaves;
+    private volatile long lastDurationNanos;
+    private volatile long mainFileBytes;
+
+    public void begin() {
+        written = 0;
+        skipped = 0;
+        failed = false;
+    }
+
+    public void written() {
+        written++;
+    }
+
+    public void skipped() {
+        skipped++;
+    }
+
+    public void skipped(int count) {
+        skipped += count;
+    }
+
+    public void failed() {
+        failed = true;
+    }
+
+    public void recordMainFile(long bytes) {
+        mainFileBytes = bytes;
+    }
+
+    public void finish(long durationNanos) {
+        lastDurationNanos = durationNanos;
+        lastWritten = written;
+        lastSkipped = skipped;
+        totalWritten += written;
+        totalSkipped += skipped;
+        saves++;
+        if (failed) {
+            failedSaves++;
+        }
+    }
+
+    public int getLastWritten() {
+        return lastWritten;
+    }
+
+    public int getLastSkipped() {
+        return lastSkipped;
+    }
+
+    public long getTotalWritten() {
+        return totalWritten;
+    }
+
+    public long getTotalSkipped() {
+        return totalSkipped;
+    }
+
+    public long getLastDurationNanos() {
+        return lastDurationNanos;
+    }
+
+    public long getMainFileBytes() {
+        return mainFileBytes;
+    }
+
+    public long getSaves() {
+        return saves;
+    }
+
+    public long getFailedSaves() {
+        return failedSaves;
+    }
+}
@@ -0,0 +1,248 @@
+package dev.pyro.homepoints.data;
+
+import dev.pyro.homepoints.HomePoints;
+import dev.pyro.homepoints.config.HomePointsConfig;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtSizeTracker;
+import net.minecraft.server.MinecraftServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A homes directory shared by several servers on the same host, set with {@code storage.sharedDirectory}.
+ * The player shards and {@code homes.dat} live here, while every server keeps its own caches, journal
+ * and backups in its world.
+ * <p>
+ * Writers hold an exclusive lock on {@code homes.lock} while they replace files, and public homes are
+ * merged into the current homes.dat under that lock rather than overwriting it. Files are replaced by
+ * atomic moves, so readers never need the lock. A watcher thread picks up the files other servers
+ * changed and hands them to the {@link HomesManager} in batches. Shards this server wrote itself are
+ * recognized by their modification time and skipped.
+ */
+public final class SharedHomesDirectory implements Closeable {
+    private static final String DATA_FILE = "homes.dat";
+    private static final String LOCK_FILE = "homes.lock";
+    // Another server's save replaces many shards at once; waiting a moment turns them into one batch
+    private static final long SETTLE_MILLIS = 100;
+    private static final Object DELETED = new Object();
+
+    interface LockedAction<T> {
+        T run() throws IOException;
+    }
+
+    private static final class Changes {
+        private final Map<UUID, Path> players = new HashMap<>();
+        private boolean publicHomes;
+        private boolean overflow;
+    }
+
+    private final Path root;
+    private final Path playersDirectory;
+    private final Object lockGuard = new Object();
+    private final Map<Path, Object> ownWrites = new ConcurrentHashMap<>();
+    private WatchService watchService;
+    private volatile boolean closed;
+
+    private SharedHomesDirectory(Path root) {
+        this.root = root;
+        this.playersDirectory = root.resolve("players");
+    }
+
+    /**
+     * Returns the configured shared directory, or {@code null} if homes are kept in the world.
+     */
+    static SharedHomesDirectory fromConfig() {
+        if (HomePointsConfig.storageSharedDirectory.isEmpty()) {
+            return null;
+        }
+        if (HomePointsConfig.storageMode != HomePointsConfig.StorageMode.SHARDED) {
+            HomePoints.LOGGER.warn("storage.sharedDirectory only works with sharded storage, keeping homes in the world");
+            return null;
+        }
+        try {
+            Path root = Path.of(HomePointsConfig.storageSharedDirectory).toAbsolutePath();
+            HomePoints.LOGGER.info("Sharing homes with other servers through {}", root);
+            return new SharedHomesDirectory(root);
+        } catch (InvalidPathException e) {
+            // Falling back to the world would split the homes between the servers
+            throw new IllegalStateException("Invalid storage.sharedDirectory " + HomePointsConfig.storageSharedDirectory, e);
+        }
+    }
+
+    Path getMainFile() {
+        return root.resolve(DATA_FILE);
+    }
+
+    PlayerShardStore openStore() {
+        return new PlayerShardStore(playersDirectory, this);
+    }
+
+    /**
+     * Runs {@code action} while holding the directory's lock, which other servers respect as well.
+     * The file lock belongs to the whole process, so threads of this server take turns on the side.
+     */
+    <T> T locked(LockedAction<T> action) throws IOException {
+        synchronized (lockGuard) {
+            Files.createDirectories(root);
+            try (FileChannel channel = FileChannel.open(root.resolve(LOCK_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock lock = channel.lock()) {
+                return action.run();
+            }
+        }
+    }
+
+    /**
+     * Remembers a file this server just replaced or deleted, so the watcher doesn't reload it.
+     */
+    void recordWrite(Path path) {
+        Object state = stateOf(path);
+        if (state != null) {
+            ownWrites.put(path, state);
+        }
+    }
+
+    private boolean isOwnWrite(Path path) {
+        Object recorded = ownWrites.get(path);
+        return recorded != null && recorded.equals(stateOf(path));
+    }
+
+    private static Object stateOf(Path path) {
+        try {
+            if (!Files.exists(path)) {
+                return DELETED;
+            }
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the public homes every server has stored, or returns none if there is no homes.dat yet.
+     */
+    Map<String, Home> readPublicHomes() throws IOException {
+        Path mainFile = getMainFile();
+        if (!Files.exists(mainFile)) {
+            return new HashMap<>();
+        }
+        return HomesCodec.decodePublicHomes(NbtIo.readCompressed(mainFile, NbtSizeTracker.ofUnlimitedBytes()));
+    }
+
+    /**
+     * Starts watching for changes made by other servers and applying them to {@code manager}.
+     */
+    void startWatching(MinecraftServer server, HomesManager manager) throws IOException {
+        Files.createDirectories(playersDirectory);
+        watchService = root.getFileSystem().newWatchService();
+        for (Path directory : new Path[]{root, playersDirectory}) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        }
+
+        Thread thread = new Thread(() -> watch(server, manager), "HomePoints-Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch(MinecraftServer server, HomesManager manager) {
+        while (!closed) {
+            Changes changes = new Changes();
+            try {
+                WatchKey key = watchService.take();
+                Thread.sleep(SETTLE_MILLIS);
+                do {
+                    collect(key, changes);
+                    key.reset();
+                    key = watchService.poll();
+                } while (key != null);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            try {
+                reload(server, manager, changes);
+            } catch (IOException e) {
+                HomePoints.LOGGER.warn("Failed to reload homes changed in {}", root, e);
+            }
+        }
+    }
+
+    private void collect(WatchKey key, Changes changes) {
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changes.overflow = true;
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (directory.equals(root)) {
+                changes.publicHomes |= path.getFileName().toString().equals(DATA_FILE);
+            } else {
+                UUID playerUUID = PlayerShardStore.playerOf(path);
+                if (playerUUID != null) {
+                    changes.players.put(playerUUID, path);
+                }
+            }
+        }
+    }
+
+    private void reload(MinecraftServer server, HomesManager manager, Changes changes) throws IOException {
+        if (changes.overflow) {
+            HomePoints.LOGGER.warn("Missed changes in {}, reloading every cached player", root);
+            for (UUID playerUUID : PlayerHomesScan.onServerThread(server, manager::getLoadedPlayers)) {
+                changes.players.putIfAbsent(playerUUID, null);
+            }
+            changes.publicHomes = true;
+        }
+
+        HomesStorage storage = manager.getStorage();
+        Map<UUID, PlayerHomesData> players = new HashMap<>();
+        for (Map.Entry<UUID, Path> entry : changes.players.entrySet()) {
+            UUID playerUUID = entry.getKey();
+            if (entry.getValue() != null && isOwnWrite(entry.getValue())) {
+                continue;
+            }
+            try {
+                // null if the player's shard was deleted
+                players.put(playerUUID, storage.load(playerUUID));
+            } catch (IOException e) {
+                HomePoints.LOGGER.warn("Failed to reload homes of {}", playerUUID, e);
+            }
+        }
+
+        // Reloaded after this server's own writes as well: the merged file may hold public homes
+        // other servers saved in the meantime
+        Map<String, Home> publicHomes = changes.publicHomes ? readPublicHomes() : null;
+
+        if (!players.isEmpty() || publicHomes != null) {
+            HomePoints.LOGGER.debug("Reloading {} players{} changed by other servers", players.size(),
+                    publicHomes != null ? " and public homes" : "");
+            server.execute(() -> manager.applySharedChanges(players, publicHomes));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+}
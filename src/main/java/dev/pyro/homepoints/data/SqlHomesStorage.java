@@ -0,0 +1,357 @@
+package dev.pyro.homepoints.data;
+
+import dev.pyro.homepoints.HomePoints;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.WorldSavePath;
+import net.minecraft.util.math.BlockPos;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Keeps homes in an embedded H2 database, {@code homepoints/homes.mv.db}, with one row per home.
+ * Player homes are keyed by player and name, so loading a player is a single index lookup, and
+ * public homes live in their own table.
+ * <p>
+ * Reads and writes use separate connections, so players can be loaded on the server thread while
+ * the saver is in the middle of a transaction. Each save is one transaction that deletes and
+ * reinserts the homes of every changed player in prepared statement batches.
+ */
+public class SqlHomesStorage implements HomesStorage {
+    private static final String DATABASE_NAME = "homes";
+    private static final int PLAYER_PAGE_SIZE = 1000;
+
+    private static final String[] SCHEMA = {
+            """
+            CREATE TABLE IF NOT EXISTS player_homes (
+                player UUID NOT NULL,
+                name VARCHAR NOT NULL,
+                dimension VARCHAR NOT NULL,
+                x INT NOT NULL,
+                y INT NOT NULL,
+                z INT NOT NULL,
+                yaw REAL NOT NULL,
+                pitch REAL NOT NULL,
+                owner VARCHAR NOT NULL,
+                PRIMARY KEY (player, name)
+            )""",
+            """
+            CREATE TABLE IF NOT EXISTS public_homes (
+                name VARCHAR PRIMARY KEY,
+                dimension VARCHAR NOT NULL,
+                x INT NOT NULL,
+                y INT NOT NULL,
+                z INT NOT NULL,
+                yaw REAL NOT NULL,
+                pitch REAL NOT NULL,
+                owner VARCHAR NOT NULL
+            )"""
+    };
+    private static final String HOME_COLUMNS = "name, dimension, x, y, z, yaw, pitch, owner";
+
+    private final Connection readConnection;
+    private final Connection writeConnection;
+    private final PreparedStatement selectPlayer;
+    private final PreparedStatement selectFirstPlayers;
+    private final PreparedStatement selectNextPlayers;
+    private final PreparedStatement deletePlayer;
+    private final PreparedStatement insertPlayerHome;
+    private final PreparedStatement mergePublicHome;
+    private final PreparedStatement deletePublicHome;
+
+    private SqlHomesStorage(Connection readConnection, Connection writeConnection) throws SQLException {
+        this.readConnection = readConnection;
+        this.writeConnection = writeConnection;
+        try (Statement statement = writeConnection.createStatement()) {
+            for (String sql : SCHEMA) {
+                statement.execute(sql);
+            }
+        }
+        writeConnection.commit();
+
+        this.selectPlayer = readConnection.prepareStatement(
+                "SELECT " + HOME_COLUMNS + " FROM player_homes WHERE player = ?");
+        this.selectFirstPlayers = readConnection.prepareStatement(
+                "SELECT DISTINCT player FROM player_homes ORDER BY player LIMIT " + PLAYER_PAGE_SIZE);
+        this.selectNextPlayers = readConnection.prepareStatement(
+                "SELECT DISTINCT player FROM player_homes WHERE player > ? ORDER BY player LIMIT " + PLAYER_PAGE_SIZE);
+        this.deletePlayer = writeConnection.prepareStatement("DELETE FROM player_homes WHERE player = ?");
+        this.insertPlayerHome = writeConnection.prepareStatement(
+                "INSERT INTO player_homes (player, " + HOME_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        this.mergePublicHome = writeConnection.prepareStatement(
+                "MERGE INTO public_homes (" + HOME_COLUMNS + ") KEY (name) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+        this.deletePublicHome = writeConnection.prepareStatement("DELETE FROM public_homes WHERE name = ?");
+    }
+
+    public static Path databaseFile(MinecraftServer server) {
+        return server.getSavePath(WorldSavePath.ROOT).resolve("homepoints").resolve(DATABASE_NAME + ".mv.db");
+    }
+
+    public static SqlHomesStorage forServer(MinecraftServer server) throws IOException {
+        return open(databaseFile(server));
+    }
+
+    /**
+     * Opens the database at {@code file}, creating it and its tables if needed.
+     */
+    public static SqlHomesStorage open(Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        String url = "jdbc:h2:file:" + file.resolveSibling(fileName.substring(0, fileName.indexOf('.'))).toAbsolutePath();
+        Connection readConnection = null;
+        Connection writeConnection = null;
+        try {
+            Files.createDirectories(file.getParent());
+            // Registers the driver with DriverManager, which can't find it on the mod class path by itself
+            Class.forName("org.h2.Driver");
+            readConnection = DriverManager.getConnection(url);
+            readConnection.setReadOnly(true);
+            writeConnection = DriverManager.getConnection(url);
+            writeConnection.setAutoCommit(false);
+            return new SqlHomesStorage(readConnection, writeConnection);
+        } catch (ClassNotFoundException | SQLException e) {
+            closeQuietly(readConnection);
+            closeQuietly(writeConnection);
+            throw new IOException("Failed to open the homes database " + file, e);
+        }
+    }
+
+    @Override
+    public PlayerHomesData load(UUID playerUUID) throws IOException {
+        synchronized (readConnection) {
+            try {
+                selectPlayer.setObject(1, playerUUID);
+                try (ResultSet result = selectPlayer.executeQuery()) {
+                    PlayerHomesData data = null;
+                    while (result.next()) {
+                        if (data == null) {
+                            data = new PlayerHomesData();
+                        }
+                        data.putHome(readHome(result));
+                    }
+                    return data;
+                }
+            } catch (SQLException e) {
+                throw new IOException("Failed to load homes of " + playerUUID, e);
+            }
+        }
+    }
+
+    @Override
+    public long save(UUID playerUUID, PlayerHomesData data) throws IOException {
+        synchronized (writeConnection) {
+            try {
+                addPlayer(playerUUID, data);
+                commit();
+            } catch (SQLException e) {
+                rollback();
+                throw new IOException("Failed to save homes of " + playerUUID, e);
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public long saveAll(Map<UUID, PlayerHomesData> players, Consumer<UUID> failed) {
+        if (players.isEmpty()) {
+            return 0;
+        }
+        synchronized (writeConnection) {
+            try {
+                for (Map.Entry<UUID, PlayerHomesData> entry : players.entrySet()) {
+                    addPlayer(entry.getKey(), entry.getValue());
+                }
+                commit();
+            } catch (SQLException e) {
+                HomePoints.LOGGER.error("Failed to save homes of {} players", players.size(), e);
+                rollback();
+                players.keySet().forEach(failed);
+            }
+        }
+        return 0;
+    }
+
+    private void addPlayer(UUID playerUUID, PlayerHomesData data) throws SQLException {
+        deletePlayer.setObject(1, playerUUID);
+        deletePlayer.addBatch();
+        for (Home home : data.getHomes()) {
+            insertPlayerHome.setObject(1, playerUUID);
+            bindHome(insertPlayerHome, 2, home);
+            insertPlayerHome.addBatch();
+        }
+    }
+
+    private void commit() throws SQLException {
+        // Deletes have to run first, or reinserted homes would collide with the old rows
+        deletePlayer.executeBatch();
+        insertPlayerHome.executeBatch();
+        deletePublicHome.executeBatch();
+        mergePublicHome.executeBatch();
+        writeConnection.commit();
+    }
+
+    private void rollback() {
+        try {
+            deletePlayer.clearBatch();
+            insertPlayerHome.clearBatch();
+            deletePublicHome.clearBatch();
+            mergePublicHome.clearBatch();
+            writeConnection.rollback();
+        } catch (SQLException e) {
+            HomePoints.LOGGER.error("Failed to roll back the homes database", e);
+        }
+    }
+
+    @Override
+    public void forEachPlayer(Consumer<UUID> action) throws IOException {
+        UUID last = null;
+        while (true) {
+            List<UUID> page = new ArrayList<>(PLAYER_PAGE_SIZE);
+            synchronized (readConnection) {
+                try {
+                    PreparedStatement statement = last == null ? selectFirstPlayers : selectNextPlayers;
+                    if (last != null) {
+                        statement.setObject(1, last);
+                    }
+                    try (ResultSet result = statement.executeQuery()) {
+                        while (result.next()) {
+                            page.add(result.getObject(1, UUID.class));
+                        }
+                    }
+                } catch (SQLException e) {
+                    throw new IOException("Failed to list stored players", e);
+                }
+            }
+
+            // The connection isn't held while visiting, so the action may load players itself
+            page.forEach(action);
+            if (page.size() < PLAYER_PAGE_SIZE) {
+                return;
+            }
+            last = page.get(page.size() - 1);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() throws IOException {
+        synchronized (readConnection) {
+            try (Statement statement = readConnection.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT EXISTS (SELECT 1 FROM player_homes)"
+                         + " OR EXISTS (SELECT 1 FROM public_homes)")) {
+                return !result.next() || !result.getBoolean(1);
+            } catch (SQLException e) {
+                throw new IOException("Failed to query the homes database", e);
+            }
+        }
+    }
+
+    @Override
+    public boolean storesPublicHomes() {
+        return true;
+    }
+
+    @Override
+    public Collection<Home> loadPublicHomes() throws IOException {
+        synchronized (readConnection) {
+            List<Home> homes = new ArrayList<>();
+            try (Statement statement = readConnection.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT " + HOME_COLUMNS + " FROM public_homes")) {
+                while (result.next()) {
+                    homes.add(readHome(result));
+                }
+            } catch (SQLException e) {
+                throw new IOException("Failed to load public homes", e);
+            }
+            return homes;
+        }
+    }
+
+    @Override
+    public void savePublicHomes(Map<String, Home> changes) throws IOException {
+        synchronized (writeConnection) {
+            try {
+                for (Map.Entry<String, Home> entry : changes.entrySet()) {
+                    if (entry.getValue() == null) {
+                        deletePublicHome.setString(1, entry.getKey());
+                        deletePublicHome.addBatch();
+                    } else {
+                        bindHome(mergePublicHome, 1, entry.getValue());
+                        mergePublicHome.addBatch();
+                    }
+                }
+                commit();
+            } catch (SQLException e) {
+                rollback();
+                throw new IOException("Failed to save public homes", e);
+            }
+        }
+    }
+
+    /**
+     * Deletes every stored home, as the first step of copying homes in from another storage.
+     */
+    void clear() throws IOException {
+        synchronized (writeConnection) {
+            try (Statement statement = writeConnection.createStatement()) {
+                statement.execute("DELETE FROM player_homes");
+                statement.execute("DELETE FROM public_homes");
+                writeConnection.commit();
+            } catch (SQLException e) {
+                rollback();
+                throw new IOException("Failed to clear the homes database", e);
+            }
+        }
+    }
+
+    private static void bindHome(PreparedStatement statement, int index, Home home) throws SQLException {
+        BlockPos position = home.getPosition();
+        statement.setString(index, home.getName());
+        statement.setString(index + 1, home.getDimension().getValue().toString());
+        statement.setInt(index + 2, position.getX());
+        statement.setInt(index + 3, position.getY());
+        statement.setInt(index + 4, position.getZ());
+        statement.setFloat(index + 5, home.getYaw());
+        statement.setFloat(index + 6, home.getPitch());
+        statement.setString(index + 7, home.getOwner());
+    }
+
+    private static Home readHome(ResultSet result) throws SQLException {
+        return new Home(result.getString(1),
+                new BlockPos(result.getInt(3), result.getInt(4), result.getInt(5)),
+                DimensionKeys.of(result.getString(2)),
+                result.getFloat(6), result.getFloat(7), result.getString(8));
+    }
+
+    @Override
+    public void close() {
+        synchronized (writeConnection) {
+            closeQuietly(writeConnection);
+        }
+        synchronized (readConnection) {
+            closeQuietly(readConnection);
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            HomePoints.LOGGER.warn("Failed to close the homes database", e);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package dev.pyro.homepoints.loadtest;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * The relative share of each kind of command in a load test, written as {@code sethome=15,home=30,...}.
+ * Operations that are left out are never issued.
+ */
+public final class LoadMix {
+
+    public enum Operation {
+        SETHOME,
+        HOME,
+        HOMES,
+        PHOME,
+        SHAREHOME,
+        SUGGEST;
+
+        public String getKey() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final Map<Operation, Integer> weights;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final int totalWeight;
+
+    private LoadMix(Map<Operation, Integer> weights) {
+        this.weights = weights;
+        this.operations = weights.keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new int[operations.length];
+
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += weights.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+        this.totalWeight = total;
+    }
+
+    /**
+     * Parses a mix such as {@code home=30,suggest=20}.
+     *
+     * @throws IllegalArgumentException if an operation is unknown, a weight is not a positive number or
+     *                                  nothing would be issued
+     */
+    public static LoadMix parse(String text) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : text.split(",")) {
+            if (part.isBlank()) {
+                continue;
+            }
+            int separator = part.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected <operation>=<weight> but got '" + part.trim() + "'");
+            }
+
+            String key = part.substring(0, separator).trim();
+            Operation operation;
+            try {
+                operation = Operation.valueOf(key.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown operation '" + key + "'");
+            }
+
+            int weight;
+            try {
+                weight = Integer.parseInt(part.substring(separator + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid weight for " + key);
+            }
+            if (weight < 0) {
+                throw new IllegalArgumentException("Invalid weight for " + key);
+            }
+            if (weight > 0) {
+                weights.merge(operation, weight, Integer::sum);
+            }
+        }
+
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The mix doesn't issue any commands");
+        }
+        return new LoadMix(weights);
+    }
+
+    public Operation pick(SplittableRandom random) {
+        int roll = random.nextInt(totalWeight);
+        for (int i = 0; i < operations.length; i++) {
+            if (roll < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    public boolean contains(Operation operation) {
+        return weights.containsKey(operation);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<Operation, Integer> entry : weights.entrySet()) {
+            if (!text.isEmpty()) {
+                text.append(',');
+            }
+            text.append(entry.getKey().getKey()).append('=').append(entry.getValue());
+        }
+        return text.toString();
+    }
+}
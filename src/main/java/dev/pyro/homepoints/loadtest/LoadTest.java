@@ -0,0 +1,304 @@
+package dev.pyro.homepoints.loadtest;
+
+import com.mojang.authlib.GameProfile;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import dev.pyro.homepoints.HomePoints;
+import dev.pyro.homepoints.config.HomePointsConfig;
+import dev.pyro.homepoints.data.Home;
+import dev.pyro.homepoints.data.HomesManager;
+import dev.pyro.homepoints.metrics.LatencyHistogram;
+import dev.pyro.homepoints.share.ShareRequests;
+import dev.pyro.homepoints.teleport.HomeTeleporter;
+import dev.pyro.homepoints.teleport.TeleportTimers;
+import net.fabricmc.fabric.api.entity.FakePlayer;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Replays home command traffic from fake players against the running server, through the same
+ * Brigadier tree real players use, and reports tick times, per-command latency and save pauses.
+ * <p>
+ * Fake players are not in the player list. They are registered with {@link HomeTeleporter} instead,
+ * so {@code /home} and {@code /phome} go through warmups, destination preloading and the teleport
+ * queue like for real players. Still not exercised:
+ * <ul>
+ *     <li>{@code /sharehome} stops at the recipient lookup</li>
+ *     <li>a fake player loads no chunks around itself and has no client to send anything to</li>
+ *     <li>fake players aren't rate limited, so throttling never shows up in the report</li>
+ * </ul>
+ * Their homes are saved like anyone else's: run load tests on a copy of the world.
+ */
+public final class LoadTest {
+    public static final int MAX_PLAYERS = 99_999;
+
+    private static final String NAME_PREFIX = "LoadTest";
+    private static final long SEED = 0x484F4D45L;
+    private static final int TICKS_PER_SECOND = 20;
+    private static final long TICK_BUDGET_NANOS = 50_000_000L;
+    private static final String[] SUGGEST_COMMANDS = {"home ", "phome ", "sharehome "};
+
+    private static LoadTest current;
+
+    private final MinecraftServer server;
+    private final ServerCommandSource reportTo;
+    private final boolean stopServerWhenDone;
+    private final LoadMix mix;
+    private final int commandsPerSecond;
+    private final int durationTicks;
+    private final int homesPerPlayer;
+    private final List<FakePlayer> players = new ArrayList<>();
+    private final String[] publicHomeNames;
+    private final SplittableRandom random = new SplittableRandom(SEED);
+
+    private final LatencyHistogram tickTimes = new LatencyHistogram("loadtest", "tick");
+    private final LatencyHistogram saveTimes = new LatencyHistogram("loadtest", "save");
+    private final Map<LoadMix.Operation, LatencyHistogram> latencies = new EnumMap<>(LoadMix.Operation.class);
+    private final long[] failures = new long[LoadMix.Operation.values().length];
+    private long overrunTicks;
+    private int elapsedTicks;
+    private double pendingCommands;
+    private long tickStarted;
+    private long saveStarted;
+
+    private LoadTest(MinecraftServer server, ServerCommandSource reportTo, boolean stopServerWhenDone, LoadMix mix,
+                     int commandsPerSecond, int durationSeconds) {
+        this.server = server;
+        this.reportTo = reportTo;
+        this.stopServerWhenDone = stopServerWhenDone;
+        this.mix = mix;
+        this.commandsPerSecond = commandsPerSecond;
+        this.durationTicks = durationSeconds * TICKS_PER_SECOND;
+        this.homesPerPlayer = HomePointsConfig.loadtestHomesPerPlayer;
+        this.publicHomeNames = HomesManager.get(server).getPublicHomesData().getPublicHomes().stream()
+                .map(Home::getName)
+                .toArray(String[]::new);
+
+        for (LoadMix.Operation operation : LoadMix.Operation.values()) {
+            if (mix.contains(operation)) {
+                latencies.put(operation, new LatencyHistogram("loadtest", operation.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Spawns the fake players and starts issuing commands from the next tick on.
+     *
+     * @param reportTo           receives the report when the run ends, may be {@code null} to only log it
+     * @param stopServerWhenDone whether to shut the server down after the report, for unattended runs
+     * @throws IllegalStateException    if a load test is already running
+     * @throws IllegalArgumentException if the configured mix is invalid
+     */
+    public static LoadTest start(MinecraftServer server, ServerCommandSource reportTo, int playerCount,
+                                 int commandsPerSecond, int durationSeconds, boolean stopServerWhenDone) {
+        if (current != null) {
+            throw new IllegalStateException("A load test is already running");
+        }
+
+        LoadMix mix = LoadMix.parse(HomePointsConfig.loadtestMix);
+        LoadTest test = new LoadTest(server, reportTo, stopServerWhenDone, mix, commandsPerSecond, durationSeconds);
+        test.spawnPlayers(Math.min(playerCount, MAX_PLAYERS));
+        current = test;
+
+        HomePoints.LOGGER.info("Started a load test with {} fake players at {} commands/s for {} s, mix {}",
+                test.players.size(), commandsPerSecond, durationSeconds, mix);
+        return test;
+    }
+
+    /**
+     * Ends the running load test early and reports what was measured so far.
+     */
+    public static boolean stop() {
+        if (current == null) {
+            return false;
+        }
+        current.finish();
+        return true;
+    }
+
+    public static LoadTest current() {
+        return current;
+    }
+
+    public static void clear() {
+        current = null;
+    }
+
+    public static void onTickStart(MinecraftServer server) {
+        if (current != null && current.server == server) {
+            current.tickStarted = System.nanoTime();
+            current.issueCommands();
+        }
+    }
+
+    public static void onTickEnd(MinecraftServer server) {
+        // A test started by a command only counts from the next full tick
+        if (current == null || current.server != server || current.tickStarted == 0) {
+            return;
+        }
+        LoadTest test = current;
+        long duration = System.nanoTime() - test.tickStarted;
+        test.tickTimes.record(duration);
+        if (duration > TICK_BUDGET_NANOS) {
+            test.overrunTicks++;
+        }
+        if (++test.elapsedTicks >= test.durationTicks) {
+            test.finish();
+        }
+    }
+
+    public static void onBeforeSave(MinecraftServer server) {
+        if (current != null && current.server == server) {
+            current.saveStarted = System.nanoTime();
+        }
+    }
+
+    public static void onAfterSave(MinecraftServer server) {
+        if (current != null && current.server == server && current.saveStarted != 0) {
+            current.saveTimes.record(System.nanoTime() - current.saveStarted);
+            current.saveStarted = 0;
+        }
+    }
+
+    private void spawnPlayers(int count) {
+        ServerWorld world = server.getOverworld();
+        HomesManager manager = HomesManager.get(server);
+        int spread = HomePointsConfig.loadtestSpreadBlocks;
+
+        for (int i = 0; i < count; i++) {
+            String name = NAME_PREFIX + i;
+            UUID uuid = UUID.nameUUIDFromBytes(("homepoints-loadtest:" + i).getBytes(StandardCharsets.UTF_8));
+            FakePlayer player = FakePlayer.get(world, new GameProfile(uuid, name));
+            player.refreshPositionAndAngles(random.nextInt(-spread, spread + 1), world.getSeaLevel() + 1,
+                    random.nextInt(-spread, spread + 1), random.nextFloat() * 360 - 180, 0);
+            players.add(player);
+            HomeTeleporter.addUnlistedPlayer(player);
+            manager.onPlayerJoin(uuid);
+        }
+    }
+
+    private void issueCommands() {
+        if (players.isEmpty()) {
+            return;
+        }
+        pendingCommands += (double) commandsPerSecond / TICKS_PER_SECOND;
+        CommandDispatcher<ServerCommandSource> dispatcher = server.getCommandManager().getDispatcher();
+
+        while (pendingCommands >= 1) {
+            pendingCommands--;
+            FakePlayer player = players.get(random.nextInt(players.size()));
+            LoadMix.Operation operation = mix.pick(random);
+            issue(dispatcher, player, operation, commandFor(operation, player));
+        }
+    }
+
+    private String commandFor(LoadMix.Operation operation, FakePlayer player) {
+        String homeName = "home" + random.nextInt(homesPerPlayer);
+        return switch (operation) {
+            case SETHOME -> "sethome " + homeName;
+            case HOME -> "home " + homeName;
+            case HOMES -> "homes";
+            case PHOME -> publicHomeNames.length == 0
+                    ? "phome nearest"
+                    : "phome " + publicHomeNames[random.nextInt(publicHomeNames.length)];
+            case SHAREHOME -> "sharehome " + homeName + " " + players.get(random.nextInt(players.size()))
+                    .getName().getString();
+            case SUGGEST -> SUGGEST_COMMANDS[random.nextInt(SUGGEST_COMMANDS.length)]
+                    + homeName.substring(0, random.nextInt(homeName.length()));
+        };
+    }
+
+    private void issue(CommandDispatcher<ServerCommandSource> dispatcher, FakePlayer player,
+                       LoadMix.Operation operation, String command) {
+        ServerCommandSource source = player.getCommandSource();
+        boolean succeeded = true;
+        long started = System.nanoTime();
+        try {
+            if (operation == LoadMix.Operation.SUGGEST) {
+                dispatcher.getCompletionSuggestions(dispatcher.parse(command, source)).join();
+            } else {
+                succeeded = dispatcher.execute(command, source) > 0;
+            }
+        } catch (CommandSyntaxException e) {
+            succeeded = false;
+        } catch (RuntimeException e) {
+            HomePoints.LOGGER.warn("Load test command '/{}' failed", command, e);
+            succeeded = false;
+        }
+        latencies.get(operation).record(System.nanoTime() - started);
+        if (!succeeded) {
+            failures[operation.ordinal()]++;
+        }
+    }
+
+    private void finish() {
+        current = null;
+
+        List<Text> report = report();
+        for (Text line : report) {
+            HomePoints.LOGGER.info(line.getString());
+            if (reportTo != null) {
+                reportTo.sendFeedback(() -> line, false);
+            }
+        }
+
+        HomesManager manager = HomesManager.get(server);
+        for (FakePlayer player : players) {
+            HomeTeleporter.cancel(player.getUuid());
+            TeleportTimers.removePlayer(player.getUuid());
+            HomeTeleporter.removeUnlistedPlayer(player.getUuid());
+            ShareRequests.removePlayer(player.getUuid());
+            manager.onPlayerLeave(player.getUuid());
+        }
+        players.clear();
+
+        if (stopServerWhenDone) {
+            HomePoints.LOGGER.info("Load test finished, stopping the server");
+            server.stop(false);
+        }
+    }
+
+    /**
+     * Returns the results so far, formatted like {@code /homepoints stats}.
+     */
+    public List<Text> report() {
+        List<Text> lines = new ArrayList<>();
+        lines.add(Text.literal("=== Load test: " + players.size() + " players, " + commandsPerSecond
+                + " commands/s, " + elapsedTicks / TICKS_PER_SECOND + "/" + durationTicks / TICKS_PER_SECOND
+                + " s ===").formatted(Formatting.GOLD));
+
+        lines.add(line("tick", summary(tickTimes) + ", " + overrunTicks + " over 50 ms"));
+        for (Map.Entry<LoadMix.Operation, LatencyHistogram> entry : latencies.entrySet()) {
+            lines.add(line(entry.getKey().getKey(),
+                    summary(entry.getValue()) + ", " + failures[entry.getKey().ordinal()] + " failed"));
+        }
+        lines.add(line("save", summary(saveTimes)));
+        return lines;
+    }
+
+    private static Text line(String name, String value) {
+        return Text.literal("  • ").formatted(Formatting.GRAY)
+                .append(Text.literal(name).formatted(Formatting.AQUA))
+                .append(Text.literal(" - ").formatted(Formatting.GRAY))
+                .append(Text.literal(value).formatted(Formatting.YELLOW));
+    }
+
+    private static String summary(LatencyHistogram histogram) {
+        return String.format(Locale.ROOT, "%dx, avg %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+                histogram.getCount(), histogram.getAverageNanos() / 1e6,
+                histogram.getQuantileNanos(0.5) / 1e6, histogram.getQuantileNanos(0.99) / 1e6,
+                histogram.getMaxNanos() / 1e6);
+    }
+}
@@ -0,0 +1,21 @@
+package dev.pyro.homepoints.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("dev.pyro.homepoints.Command")
+@Label("Command")
+@Category("HomePoints")
+@Description("A HomePoints command or tab completion handler")
+@StackTrace(false)
+final class CommandEvent extends Event {
+    @Label("Handler")
+    String handler;
+
+    @Label("Suggestions")
+    boolean suggestions;
+}
@@ -0,0 +1,26 @@
+package dev.pyro.homepoints.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("dev.pyro.homepoints.Load")
+@Label("Load")
+@Category("HomePoints")
+@Description("Reading the homes file when a world starts")
+@StackTrace(false)
+public final class LoadEvent extends Event {
+    @Label("Players")
+    public int players;
+
+    @Label("Public Homes")
+    public int publicHomes;
+
+    @Label("Bytes Read")
+    @DataAmount
+    public long bytes;
+}
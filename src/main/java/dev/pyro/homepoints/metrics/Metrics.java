@@ -0,0 +1,99 @@
+package dev.pyro.homepoints.metrics;
+
+import com.mojang.brigadier.Command;
+import com.mojang.brigadier.suggestion.SuggestionProvider;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide registry of the mod's histograms, counters and gauges. Histograms are grouped into
+ * families such as {@code command} with one label per handler, which is also how they are exported.
+ * Everything here may be read and recorded from any thread.
+ */
+public final class Metrics {
+    private static final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    public static LatencyHistogram histogram(String family, String label) {
+        return histograms.computeIfAbsent(family + "/" + label, key -> new LatencyHistogram(family, label));
+    }
+
+    public static LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Registers a value that is read whenever the metrics are shown or scraped. The supplier may be
+     * called from any thread, so it should only read a single field or size.
+     */
+    public static void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Wraps a command handler so every run is recorded in the {@code command} family and, while a
+     * flight recording is running, emitted as a {@link CommandEvent}.
+     */
+    public static <S> Command<S> timed(String name, Command<S> command) {
+        LatencyHistogram histogram = histogram("command", name);
+        return context -> {
+            CommandEvent event = new CommandEvent();
+            event.begin();
+            long started = System.nanoTime();
+            try {
+                return command.run(context);
+            } finally {
+                histogram.record(System.nanoTime() - started);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.handler = name;
+                    event.commit();
+                }
+            }
+        };
+    }
+
+    /**
+     * Same as {@link #timed(String, Command)} for tab completion, recorded in the {@code suggestion} family.
+     */
+    public static <S> SuggestionProvider<S> timedSuggestions(String name, SuggestionProvider<S> provider) {
+        LatencyHistogram histogram = histogram("suggestion", name);
+        return (context, builder) -> {
+            CommandEvent event = new CommandEvent();
+            event.begin();
+            long started = System.nanoTime();
+            try {
+                return provider.getSuggestions(context, builder);
+            } finally {
+                histogram.record(System.nanoTime() - started);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.handler = name;
+                    event.suggestions = true;
+                    event.commit();
+                }
+            }
+        };
+    }
+
+    public static Collection<LatencyHistogram> getHistograms() {
+        return Collections.unmodifiableCollection(histograms.values());
+    }
+
+    public static Map<String, LongAdder> getCounters() {
+        return Collections.unmodifiableMap(counters);
+    }
+
+    public static Map<String, LongSupplier> getGauges() {
+        return Collections.unmodifiableMap(gauges);
+    }
+}
@@ -0,0 +1,125 @@
+package dev.pyro.homepoints.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.pyro.homepoints.HomePoints;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Serves the metrics in the Prometheus text format on {@code http://127.0.0.1:<port>/metrics}. Only
+ * the loopback address is bound; put a reverse proxy in front of it to scrape from elsewhere.
+ */
+public final class PrometheusExporter {
+    private static final String PREFIX = "homepoints_";
+    // Bucket bounds are powers of two nanoseconds, from about 1 µs to about 17 s.
+    private static final int FIRST_BUCKET_EXPONENT = 10;
+    private static final int LAST_BUCKET_EXPONENT = 34;
+
+    private static HttpServer server;
+    private static ExecutorService executor;
+
+    private PrometheusExporter() {
+    }
+
+    public static void start(int port) {
+        if (server != null) {
+            return;
+        }
+
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            HomePoints.LOGGER.error("Failed to start the metrics endpoint on port {}", port, e);
+            return;
+        }
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "HomePoints-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", PrometheusExporter::handle);
+        server.start();
+        HomePoints.LOGGER.info("Serving metrics on http://127.0.0.1:{}/metrics", port);
+    }
+
+    public static void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        executor.shutdown();
+        server = null;
+        executor = null;
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        byte[] body = render().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    static String render() {
+        StringBuilder text = new StringBuilder(4096);
+
+        String family = null;
+        for (LatencyHistogram histogram : Metrics.getHistograms()) {
+            String name = PREFIX + sanitize(histogram.getFamily()) + "_seconds";
+            if (!histogram.getFamily().equals(family)) {
+                family = histogram.getFamily();
+                text.append("# TYPE ").append(name).append(" histogram\n");
+            }
+
+            String label = "name=\"" + escape(histogram.getLabel()) + "\"";
+            long count = histogram.getCount();
+            for (int exponent = FIRST_BUCKET_EXPONENT; exponent <= LAST_BUCKET_EXPONENT; exponent++) {
+                text.append(name).append("_bucket{").append(label).append(",le=\"")
+                        .append(seconds(1L << exponent)).append("\"} ")
+                        .append(histogram.getCountBelow(exponent)).append('\n');
+            }
+            text.append(name).append("_bucket{").append(label).append(",le=\"+Inf\"} ").append(count).append('\n');
+            text.append(name).append("_sum{").append(label).append("} ")
+                    .append(seconds(histogram.getTotalNanos())).append('\n');
+            text.append(name).append("_count{").append(label).append("} ").append(count).append('\n');
+        }
+
+        for (Map.Entry<String, LongAdder> counter : Metrics.getCounters().entrySet()) {
+            String name = PREFIX + sanitize(counter.getKey()) + "_total";
+            text.append("# TYPE ").append(name).append(" counter\n");
+            text.append(name).append(' ').append(counter.getValue().sum()).append('\n');
+        }
+
+        for (Map.Entry<String, LongSupplier> gauge : Metrics.getGauges().entrySet()) {
+            String name = PREFIX + sanitize(gauge.getKey());
+            text.append("# TYPE ").append(name).append(" gauge\n");
+            text.append(name).append(' ').append(gauge.getValue().getAsLong()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    private static String sanitize(String name) {
+        return name.replaceAll("[^a-zA-Z0-9_]", "_");
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,26 @@
+package dev.pyro.homepoints.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("dev.pyro.homepoints.Save")
+@Label("Save")
+@Category("HomePoints")
+@Description("One background save of changed homes")
+@StackTrace(false)
+public final class SaveEvent extends Event {
+    @Label("Segments Written")
+    public int written;
+
+    @Label("Segments Skipped")
+    public int skipped;
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,26 @@
+package dev.pyro.homepoints.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("dev.pyro.homepoints.Teleport")
+@Label("Teleport")
+@Category("HomePoints")
+@Description("Moving one player to a home")
+@StackTrace(false)
+public final class TeleportEvent extends Event {
+    @Label("Home")
+    public String home;
+
+    @Label("Dimension")
+    public String dimension;
+
+    @Label("Queued For")
+    @Timespan(Timespan.NANOSECONDS)
+    public long queuedNanos;
+}
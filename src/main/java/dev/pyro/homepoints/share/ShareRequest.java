@@ -0,0 +1,9 @@
+package dev.pyro.homepoints.share;
+
+import java.util.UUID;
+
+/**
+ * A pending offer from {@code sender} to copy one of their homes into {@code recipient}'s homes.
+ */
+public record ShareRequest(UUID sender, String senderName, UUID recipient, String homeName, long expiresAtTick) {
+}
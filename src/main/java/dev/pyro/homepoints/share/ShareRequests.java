@@ -0,0 +1,173 @@
+package dev.pyro.homepoints.share;
+
+import dev.pyro.homepoints.config.HomePointsConfig;
+import dev.pyro.homepoints.util.TimerWheel;
+import net.minecraft.server.MinecraftServer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Pending home share requests, indexed by recipient for accepting and listing and by sender for caps
+ * and cleanup. Every request expires after the configured time through a timer wheel advanced once
+ * per server tick, and all requests of a player are dropped when they disconnect.
+ */
+public class ShareRequests {
+    private static final int WHEEL_BUCKETS = 512;
+
+    public enum Result {
+        SENT,
+        REFRESHED,
+        SENDER_LIMIT,
+        RECIPIENT_LIMIT
+    }
+
+    private record Key(UUID sender, String homeName) {
+    }
+
+    private static final Map<UUID, Map<Key, TimerWheel.Timeout<ShareRequest>>> byRecipient = new HashMap<>();
+    private static final Map<UUID, Set<TimerWheel.Timeout<ShareRequest>>> bySender = new HashMap<>();
+    private static TimerWheel<ShareRequest> wheel = new TimerWheel<>(WHEEL_BUCKETS, 0);
+    private static long expired;
+    private static long rejected;
+
+    public static Result offer(MinecraftServer server, UUID sender, String senderName, UUID recipient, String homeName) {
+        Key key = new Key(sender, homeName);
+        Map<Key, TimerWheel.Timeout<ShareRequest>> incoming = byRecipient.get(recipient);
+        TimerWheel.Timeout<ShareRequest> existing = incoming != null ? incoming.get(key) : null;
+
+        if (existing == null) {
+            Set<TimerWheel.Timeout<ShareRequest>> outgoing = bySender.get(sender);
+            if (outgoing != null && outgoing.size() >= HomePointsConfig.sharesMaxPerSender) {
+                rejected++;
+                return Result.SENDER_LIMIT;
+            }
+            if (incoming != null && incoming.size() >= HomePointsConfig.sharesMaxPerRecipient) {
+                rejected++;
+                return Result.RECIPIENT_LIMIT;
+            }
+        } else {
+            unlink(existing);
+        }
+
+        long expiresAt = (long) server.getTicks() + HomePointsConfig.sharesTtlSeconds * 20L;
+        TimerWheel.Timeout<ShareRequest> timeout = wheel.schedule(
+                new ShareRequest(sender, senderName, recipient, homeName, expiresAt), expiresAt);
+        byRecipient.computeIfAbsent(recipient, uuid -> new LinkedHashMap<>()).put(key, timeout);
+        bySender.computeIfAbsent(sender, uuid -> new LinkedHashSet<>()).add(timeout);
+        return existing == null ? Result.SENT : Result.REFRESHED;
+    }
+
+    public static ShareRequest find(UUID recipient, UUID sender, String homeName) {
+        Map<Key, TimerWheel.Timeout<ShareRequest>> incoming = byRecipient.get(recipient);
+        if (incoming == null) {
+            return null;
+        }
+        TimerWheel.Timeout<ShareRequest> timeout = incoming.get(new Key(sender, homeName));
+        return timeout != null ? timeout.getValue() : null;
+    }
+
+    public static boolean remove(ShareRequest request) {
+        Map<Key, TimerWheel.Timeout<ShareRequest>> incoming = byRecipient.get(request.recipient());
+        if (incoming == null) {
+            return false;
+        }
+        TimerWheel.Timeout<ShareRequest> timeout = incoming.get(new Key(request.sender(), request.homeName()));
+        if (timeout == null) {
+            return false;
+        }
+        unlink(timeout);
+        return true;
+    }
+
+    /**
+     * Returns the requests waiting for {@code recipient}, oldest first.
+     */
+    public static List<ShareRequest> getIncoming(UUID recipient) {
+        Map<Key, TimerWheel.Timeout<ShareRequest>> incoming = byRecipient.get(recipient);
+        if (incoming == null) {
+            return List.of();
+        }
+        List<ShareRequest> requests = new ArrayList<>(incoming.size());
+        for (TimerWheel.Timeout<ShareRequest> timeout : incoming.values()) {
+            requests.add(timeout.getValue());
+        }
+        return requests;
+    }
+
+    public static void tick(MinecraftServer server) {
+        wheel.advanceTo(server.getTicks(), request -> {
+            expired++;
+            Map<Key, TimerWheel.Timeout<ShareRequest>> incoming = byRecipient.get(request.recipient());
+            TimerWheel.Timeout<ShareRequest> timeout = incoming.get(new Key(request.sender(), request.homeName()));
+            unlink(timeout);
+        });
+    }
+
+    /**
+     * Drops every request sent by or waiting for {@code player}.
+     */
+    public static void removePlayer(UUID player) {
+        Set<TimerWheel.Timeout<ShareRequest>> outgoing = bySender.get(player);
+        if (outgoing != null) {
+            for (TimerWheel.Timeout<ShareRequest> timeout : new ArrayList<>(outgoing)) {
+                unlink(timeout);
+            }
+        }
+        Map<Key, TimerWheel.Timeout<ShareRequest>> incoming = byRecipient.get(player);
+        if (incoming != null) {
+            for (TimerWheel.Timeout<ShareRequest> timeout : new ArrayList<>(incoming.values())) {
+                unlink(timeout);
+            }
+        }
+    }
+
+    public static void clear() {
+        byRecipient.clear();
+        bySender.clear();
+        wheel = new TimerWheel<>(WHEEL_BUCKETS, 0);
+    }
+
+    public static int getPendingCount() {
+        return wheel.size();
+    }
+
+    public static int getSenderCount() {
+        return bySender.size();
+    }
+
+    public static int getRecipientCount() {
+        return byRecipient.size();
+    }
+
+    public static long getExpiredCount() {
+        return expired;
+    }
+
+    public static long getRejectedCount() {
+        return rejected;
+    }
+
+    private static void unlink(TimerWheel.Timeout<ShareRequest> timeout) {
+        ShareRequest request = timeout.getValue();
+        wheel.cancel(timeout);
+
+        Map<Key, TimerWheel.Timeout<ShareRequest>> incoming = byRecipient.get(request.recipient());
+        incoming.remove(new Key(request.sender(), request.homeName()));
+        if (incoming.isEmpty()) {
+            byRecipient.remove(request.recipient());
+        }
+
+        Set<TimerWheel.Timeout<ShareRequest>> outgoing = bySender.get(request.sender());
+        outgoing.remove(timeout);
+        if (outgoing.isEmpty()) {
+            bySender.remove(request.sender());
+        }
+    }
+}
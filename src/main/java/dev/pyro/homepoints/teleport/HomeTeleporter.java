@@ -0,0 +1,246 @@
+package dev.pyro.homepoints.teleport;
+
+import dev.pyro.homepoints.HomePoints;
+import dev.pyro.homepoints.config.HomePointsConfig;
+import dev.pyro.homepoints.data.Home;
+import dev.pyro.homepoints.metrics.LatencyHistogram;
+import dev.pyro.homepoints.metrics.Metrics;
+import dev.pyro.homepoints.metrics.TeleportEvent;
+import dev.pyro.homepoints.util.Messages;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ChunkTicketType;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Queues home teleports and carries them out at the end of each tick, within a per-tick count and
+ * time budget. Requests for the same destination chunk are grouped so the chunk is preloaded once
+ * and its players are moved together. Unloaded destinations get a short-lived portal ticket and wait
+ * until the chunk is ready or the timeout passes, so the server thread never blocks on loading or
+ * generating the chunk.
+ */
+public class HomeTeleporter {
+    private static final int PRELOAD_RADIUS = 1;
+
+    private static final Map<Destination, TeleportGroup> groups = new LinkedHashMap<>();
+    private static final Map<UUID, Destination> queuedPlayers = new HashMap<>();
+    private static final Map<UUID, ServerPlayerEntity> unlistedPlayers = new HashMap<>();
+    private static final TeleportStats stats = new TeleportStats();
+    private static final LatencyHistogram MOVE_TIME = Metrics.histogram("teleport", "move");
+    private static final LatencyHistogram WAIT_TIME = Metrics.histogram("teleport", "queued");
+    private static final LatencyHistogram TICK_TIME = Metrics.histogram("teleport", "tick");
+
+    private record Destination(ServerWorld world, ChunkPos chunk) {
+    }
+
+    private record PendingTeleport(UUID playerUUID, Home home, Text arrivalMessage, boolean preloaded,
+                                   long requestedNanos) {
+    }
+
+    private static class TeleportGroup {
+        private final ArrayDeque<PendingTeleport> players = new ArrayDeque<>();
+        // A group outlives ticks while over budget, and its chunk may unload in the meantime
+        private boolean ticketed;
+        private int ticketTick;
+    }
+
+    public static void teleport(ServerPlayerEntity player, ServerWorld world, Home home, Text arrivalMessage) {
+        cancel(player.getUuid());
+
+        Destination destination = new Destination(world, new ChunkPos(home.getPosition()));
+        TeleportGroup group = groups.get(destination);
+        boolean preloaded = false;
+        if (group == null) {
+            group = new TeleportGroup();
+            groups.put(destination, group);
+        }
+        if (HomePointsConfig.teleportPreloadChunks && !isLoaded(destination)) {
+            if (!group.ticketed) {
+                preload(destination, group, world.getServer().getTicks());
+            }
+            preloaded = true;
+        }
+
+        group.players.add(new PendingTeleport(player.getUuid(), home, arrivalMessage, preloaded, System.nanoTime()));
+        queuedPlayers.put(player.getUuid(), destination);
+    }
+
+    public static void tick(MinecraftServer server) {
+        if (groups.isEmpty()) {
+            return;
+        }
+
+        long started = System.nanoTime();
+        long budget = HomePointsConfig.teleportTickBudgetMicros * 1_000L;
+        int moved = 0;
+
+        Iterator<Map.Entry<Destination, TeleportGroup>> iterator = groups.entrySet().iterator();
+        while (iterator.hasNext() && moved < HomePointsConfig.teleportMaxPerTick
+                && System.nanoTime() - started < budget) {
+            Map.Entry<Destination, TeleportGroup> entry = iterator.next();
+            Destination destination = entry.getKey();
+            TeleportGroup group = entry.getValue();
+
+            boolean timedOut = false;
+            if (HomePointsConfig.teleportPreloadChunks && !isLoaded(destination)) {
+                if (!group.ticketed) {
+                    preload(destination, group, server.getTicks());
+                    continue;
+                }
+                if (server.getTicks() - group.ticketTick < HomePointsConfig.teleportPreloadTimeoutTicks) {
+                    continue;
+                }
+                HomePoints.LOGGER.debug("Chunk {} in {} not ready after {} ticks, falling back to {}",
+                        destination.chunk(), destination.world().getRegistryKey().getValue(),
+                        server.getTicks() - group.ticketTick, HomePointsConfig.teleportPreloadFallback);
+                if (HomePointsConfig.teleportPreloadFallback == HomePointsConfig.PreloadFallback.CANCEL) {
+                    for (PendingTeleport teleport : group.players) {
+                        stats.recordTimeout(System.nanoTime() - teleport.requestedNanos());
+                        queuedPlayers.remove(teleport.playerUUID());
+                        ServerPlayerEntity player = getPlayer(server, teleport.playerUUID());
+                        if (player != null) {
+                            player.sendMessage(Messages.error("The destination took too long to load, teleport cancelled!"));
+                        }
+                    }
+                    iterator.remove();
+                    continue;
+                }
+                timedOut = true;
+            } else {
+                // Loaded now, should it unload again the group needs a new ticket
+                group.ticketed = false;
+            }
+
+            while (!group.players.isEmpty() && moved < HomePointsConfig.teleportMaxPerTick
+                    && System.nanoTime() - started < budget) {
+                PendingTeleport teleport = group.players.poll();
+                queuedPlayers.remove(teleport.playerUUID());
+                ServerPlayerEntity player = getPlayer(server, teleport.playerUUID());
+                if (player == null) {
+                    continue;
+                }
+
+                long waited = System.nanoTime() - teleport.requestedNanos();
+                if (timedOut) {
+                    stats.recordTimeout(waited);
+                } else if (teleport.preloaded()) {
+                    stats.recordPreloaded(waited);
+                } else {
+                    stats.recordImmediate();
+                }
+                WAIT_TIME.record(waited);
+                TeleportEvent event = new TeleportEvent();
+                event.begin();
+                long moveStarted = System.nanoTime();
+                moveTo(player, destination.world(), teleport.home(), teleport.arrivalMessage());
+                MOVE_TIME.record(System.nanoTime() - moveStarted);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.home = teleport.home().getName();
+                    event.dimension = destination.world().getRegistryKey().getValue().toString();
+                    event.queuedNanos = waited;
+                    event.commit();
+                }
+                moved++;
+            }
+            if (group.players.isEmpty()) {
+                iterator.remove();
+            }
+        }
+
+        long tickNanos = System.nanoTime() - started;
+        stats.recordTick(tickNanos, moved);
+        TICK_TIME.record(tickNanos);
+    }
+
+    public static void cancel(UUID playerUUID) {
+        Destination destination = queuedPlayers.remove(playerUUID);
+        if (destination == null) {
+            return;
+        }
+
+        TeleportGroup group = groups.get(destination);
+        group.players.removeIf(teleport -> teleport.playerUUID().equals(playerUUID));
+        if (group.players.isEmpty()) {
+            groups.remove(destination);
+        }
+    }
+
+    public static void clear() {
+        groups.clear();
+        queuedPlayers.clear();
+        unlistedPlayers.clear();
+    }
+
+    /**
+     * Lets teleports and their warmups find a player that isn't in the player list, such as the fake
+     * players of a load test, until {@link #removeUnlistedPlayer} is called.
+     */
+    public static void addUnlistedPlayer(ServerPlayerEntity player) {
+        unlistedPlayers.put(player.getUuid(), player);
+    }
+
+    public static void removeUnlistedPlayer(UUID playerUUID) {
+        unlistedPlayers.remove(playerUUID);
+    }
+
+    /**
+     * Looks up a player by UUID, whether they are in the player list or were added with {@link #addUnlistedPlayer}.
+     */
+    static ServerPlayerEntity getPlayer(MinecraftServer server, UUID playerUUID) {
+        ServerPlayerEntity player = server.getPlayerManager().getPlayer(playerUUID);
+        return player != null || unlistedPlayers.isEmpty() ? player : unlistedPlayers.get(playerUUID);
+    }
+
+    public static int getQueuedCount() {
+        return queuedPlayers.size();
+    }
+
+    public static int getDestinationCount() {
+        return groups.size();
+    }
+
+    public static TeleportStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Adds the preload ticket of a group. The timeout counts from here.
+     */
+    private static void preload(Destination destination, TeleportGroup group, int tick) {
+        destination.world().getChunkManager().addTicket(ChunkTicketType.PORTAL, destination.chunk(), PRELOAD_RADIUS);
+        group.ticketed = true;
+        group.ticketTick = tick;
+    }
+
+    private static boolean isLoaded(Destination destination) {
+        return destination.world().getChunkManager().isChunkLoaded(destination.chunk().x, destination.chunk().z);
+    }
+
+    private static void moveTo(ServerPlayerEntity player, ServerWorld world, Home home, Text arrivalMessage) {
+        BlockPos pos = home.getPosition();
+
+        if (player.getEntityWorld() == world) {
+            player.teleport(pos.getX() + 0.5, pos.getY(), pos.getZ() + 0.5, true);
+        } else {
+            player.teleport(world, pos.getX() + 0.5, pos.getY(), pos.getZ() + 0.5,
+                    Set.of(), home.getYaw(), home.getPitch(), true);
+        }
+
+        player.setYaw(home.getYaw());
+        player.setPitch(home.getPitch());
+
+        player.sendMessage(arrivalMessage);
+    }
+}
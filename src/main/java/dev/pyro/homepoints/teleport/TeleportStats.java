@@ -0,0 +1,84 @@
+package dev.pyro.homepoints.teleport;
+
+public class TeleportStats {
+    private long immediate;
+    private long preloaded;
+    private long timedOut;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private long lastWaitNanos;
+    private long ticks;
+    private long totalTickNanos;
+    private long maxTickNanos;
+    private long lastTickNanos;
+    private int lastTickMoved;
+
+    public void recordImmediate() {
+        immediate++;
+    }
+
+    public void recordPreloaded(long waitNanos) {
+        preloaded++;
+        record(waitNanos);
+    }
+
+    public void recordTimeout(long waitNanos) {
+        timedOut++;
+        record(waitNanos);
+    }
+
+    private void record(long waitNanos) {
+        lastWaitNanos = waitNanos;
+        totalWaitNanos += waitNanos;
+        maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+    }
+
+    public void recordTick(long nanos, int moved) {
+        ticks++;
+        totalTickNanos += nanos;
+        maxTickNanos = Math.max(maxTickNanos, nanos);
+        lastTickNanos = nanos;
+        lastTickMoved = moved;
+    }
+
+    public long getImmediate() {
+        return immediate;
+    }
+
+    public long getPreloaded() {
+        return preloaded;
+    }
+
+    public long getTimedOut() {
+        return timedOut;
+    }
+
+    public long getAverageWaitNanos() {
+        long waited = preloaded + timedOut;
+        return waited == 0 ? 0 : totalWaitNanos / waited;
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos;
+    }
+
+    public long getLastWaitNanos() {
+        return lastWaitNanos;
+    }
+
+    public long getAverageTickNanos() {
+        return ticks == 0 ? 0 : totalTickNanos / ticks;
+    }
+
+    public long getMaxTickNanos() {
+        return maxTickNanos;
+    }
+
+    public long getLastTickNanos() {
+        return lastTickNanos;
+    }
+
+    public int getLastTickMoved() {
+        return lastTickMoved;
+    }
+}
@@ -0,0 +1,204 @@
+package dev.pyro.homepoints.teleport;
+
+import dev.pyro.homepoints.config.HomePointsConfig;
+import dev.pyro.homepoints.data.Home;
+import dev.pyro.homepoints.metrics.Metrics;
+import dev.pyro.homepoints.util.Messages;
+import dev.pyro.homepoints.util.TimerWheel;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Warmups and cooldowns of home teleports, configured per command. Every timer lives on one timer
+ * wheel advanced once per server tick, so starting or cancelling one is O(1) however many players
+ * are waiting. A warmup hands the teleport to {@link HomeTeleporter} when it ends, unless the player
+ * took damage or moved away from where they started it in the meantime; the cooldown starts once the
+ * teleport does. Only players with a running warmup are checked for movement each tick.
+ */
+public class TeleportTimers {
+    private static final int WHEEL_BUCKETS = 256;
+    private static final double MAX_MOVE_DISTANCE_SQUARED = 0.5 * 0.5;
+
+    public enum Kind {
+        HOME("home"),
+        PUBLIC_HOME("phome");
+
+        private final String command;
+
+        Kind(String command) {
+            this.command = command;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        int getWarmupTicks() {
+            return (this == HOME ? HomePointsConfig.teleportHomeWarmupSeconds : HomePointsConfig.teleportPhomeWarmupSeconds) * 20;
+        }
+
+        int getCooldownTicks() {
+            return (this == HOME ? HomePointsConfig.teleportHomeCooldownSeconds : HomePointsConfig.teleportPhomeCooldownSeconds) * 20;
+        }
+    }
+
+    private interface Timer {
+        UUID playerUUID();
+
+        Kind kind();
+    }
+
+    private record Warmup(UUID playerUUID, Kind kind, ServerWorld world, Home home, Text arrivalMessage,
+                          ServerWorld originWorld, Vec3d origin) implements Timer {
+    }
+
+    private record Cooldown(UUID playerUUID, Kind kind) implements Timer {
+    }
+
+    private static final Map<UUID, TimerWheel.Timeout<Timer>> warmups = new HashMap<>();
+    private static final Map<Kind, Map<UUID, TimerWheel.Timeout<Timer>>> cooldowns = new EnumMap<>(Kind.class);
+    private static TimerWheel<Timer> wheel = new TimerWheel<>(WHEEL_BUCKETS, 0);
+
+    static {
+        for (Kind kind : Kind.values()) {
+            cooldowns.put(kind, new HashMap<>());
+        }
+    }
+
+    /**
+     * Starts the teleport, after a warmup if one is configured. Returns {@code false} if the player
+     * is still cooling down from the last teleport of this kind, which they are told about.
+     */
+    public static boolean request(ServerPlayerEntity player, Kind kind, ServerWorld world, Home home, Text arrivalMessage) {
+        UUID playerUUID = player.getUuid();
+        int now = world.getServer().getTicks();
+        TimerWheel.Timeout<Timer> cooldown = cooldowns.get(kind).get(playerUUID);
+        if (cooldown != null) {
+            player.sendMessage(Messages.error("You can use /" + kind.getCommand() + " again in "
+                    + formatSeconds(cooldown.getDeadline() - now) + "!"));
+            return false;
+        }
+
+        // A new request replaces the one still warming up
+        cancelWarmup(playerUUID);
+        int warmupTicks = kind.getWarmupTicks();
+        if (warmupTicks == 0) {
+            start(player, kind, world, home, arrivalMessage);
+            return true;
+        }
+
+        Warmup warmup = new Warmup(playerUUID, kind, world, home, arrivalMessage,
+                player.getEntityWorld(), player.getEntityPos());
+        warmups.put(playerUUID, wheel.schedule(warmup, (long) now + warmupTicks));
+        player.sendMessage(Messages.info("Teleporting in " + formatSeconds(warmupTicks) + ", don't move!"));
+        return true;
+    }
+
+    public static void tick(MinecraftServer server) {
+        if (!warmups.isEmpty()) {
+            checkMovement(server);
+        }
+        wheel.advanceTo(server.getTicks(), timer -> {
+            if (timer instanceof Warmup warmup) {
+                finishWarmup(server, warmup);
+            } else {
+                cooldowns.get(timer.kind()).remove(timer.playerUUID());
+            }
+        });
+    }
+
+    /**
+     * Cancels the player's warmup once they took damage.
+     */
+    public static void onDamaged(ServerPlayerEntity player) {
+        if (cancelWarmup(player.getUuid())) {
+            Metrics.counter("teleports.warmups_cancelled").increment();
+            player.sendMessage(Messages.error("You took damage, teleport cancelled!"));
+        }
+    }
+
+    /**
+     * Drops the player's warmup. Cooldowns are kept, so reconnecting doesn't skip them.
+     */
+    public static void removePlayer(UUID playerUUID) {
+        cancelWarmup(playerUUID);
+    }
+
+    private static boolean cancelWarmup(UUID playerUUID) {
+        TimerWheel.Timeout<Timer> timeout = warmups.remove(playerUUID);
+        return timeout != null && wheel.cancel(timeout);
+    }
+
+    private static void checkMovement(MinecraftServer server) {
+        Iterator<TimerWheel.Timeout<Timer>> iterator = warmups.values().iterator();
+        while (iterator.hasNext()) {
+            TimerWheel.Timeout<Timer> timeout = iterator.next();
+            Warmup warmup = (Warmup) timeout.getValue();
+            ServerPlayerEntity player = HomeTeleporter.getPlayer(server, warmup.playerUUID());
+            if (player != null && hasMoved(player, warmup)) {
+                iterator.remove();
+                wheel.cancel(timeout);
+                Metrics.counter("teleports.warmups_cancelled").increment();
+                player.sendMessage(Messages.error("You moved, teleport cancelled!"));
+            }
+        }
+    }
+
+    private static boolean hasMoved(ServerPlayerEntity player, Warmup warmup) {
+        return player.getEntityWorld() != warmup.originWorld()
+                || player.getEntityPos().squaredDistanceTo(warmup.origin()) > MAX_MOVE_DISTANCE_SQUARED;
+    }
+
+    private static void finishWarmup(MinecraftServer server, Warmup warmup) {
+        warmups.remove(warmup.playerUUID());
+        ServerPlayerEntity player = HomeTeleporter.getPlayer(server, warmup.playerUUID());
+        if (player == null) {
+            return;
+        }
+        start(player, warmup.kind(), warmup.world(), warmup.home(), warmup.arrivalMessage());
+    }
+
+    private static void start(ServerPlayerEntity player, Kind kind, ServerWorld world, Home home, Text arrivalMessage) {
+        HomeTeleporter.teleport(player, world, home, arrivalMessage);
+        int cooldownTicks = kind.getCooldownTicks();
+        if (cooldownTicks > 0) {
+            UUID playerUUID = player.getUuid();
+            cooldowns.get(kind).put(playerUUID, wheel.schedule(new Cooldown(playerUUID, kind),
+                    (long) world.getServer().getTicks() + cooldownTicks));
+        }
+    }
+
+    private static String formatSeconds(long ticks) {
+        long seconds = Math.max(1, (ticks + 19) / 20);
+        return String.format(Locale.ROOT, "%d second%s", seconds, seconds == 1 ? "" : "s");
+    }
+
+    public static void clear() {
+        warmups.clear();
+        for (Map<UUID, TimerWheel.Timeout<Timer>> byPlayer : cooldowns.values()) {
+            byPlayer.clear();
+        }
+        wheel = new TimerWheel<>(WHEEL_BUCKETS, 0);
+    }
+
+    /**
+     * Number of warmups and cooldowns currently running.
+     */
+    public static int getActiveCount() {
+        return wheel.size();
+    }
+
+    public static int getWarmupCount() {
+        return warmups.size();
+    }
+}
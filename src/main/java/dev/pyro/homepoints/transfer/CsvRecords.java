@@ -0,0 +1,126 @@
+package dev.pyro.homepoints.transfer;
+
+import dev.pyro.homepoints.data.Home;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Comma-separated values with a header row, one row per home. Public homes have the scope
+ * {@code public} and an empty player column. Fields may be quoted as in RFC 4180, but a record
+ * can't span several lines.
+ */
+final class CsvRecords {
+    static final String HEADER = "scope,player,name,dimension,x,y,z,yaw,pitch,owner";
+    private static final int COLUMNS = 10;
+
+    private CsvRecords() {
+    }
+
+    static final class Writer implements HomeRecordWriter {
+        private final BufferedWriter out;
+        private final StringBuilder row = new StringBuilder(128);
+
+        Writer(BufferedWriter out) throws IOException {
+            this.out = out;
+            out.write(HEADER);
+            out.newLine();
+        }
+
+        @Override
+        public void write(HomeRecord record) throws IOException {
+            Home home = record.home();
+            row.setLength(0);
+            row.append(record.isPublic() ? HomeRecords.PUBLIC_SCOPE : HomeRecords.PLAYER_SCOPE).append(',');
+            if (!record.isPublic()) {
+                row.append(record.player());
+            }
+            row.append(',');
+            appendField(home.getName()).append(',');
+            appendField(home.getDimension().getValue().toString()).append(',');
+            row.append(home.getPosition().getX()).append(',')
+                    .append(home.getPosition().getY()).append(',')
+                    .append(home.getPosition().getZ()).append(',')
+                    .append(home.getYaw()).append(',')
+                    .append(home.getPitch()).append(',');
+            appendField(home.getOwner());
+            out.append(row);
+            out.newLine();
+        }
+
+        private StringBuilder appendField(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+                return row.append(value);
+            }
+            return row.append('"').append(value.replace("\"", "\"\"")).append('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    static final class Reader extends LineRecordReader {
+
+        Reader(BufferedReader in, String source) {
+            super(in, source);
+        }
+
+        @Override
+        HomeRecord parse(String line, long lineNumber) {
+            if (lineNumber == 1 && line.startsWith("scope,")) {
+                return null;
+            }
+
+            List<String> fields = split(line);
+            if (fields.size() < COLUMNS) {
+                throw new IllegalArgumentException("Expected " + COLUMNS + " columns but got " + fields.size());
+            }
+            boolean isPublic = HomeRecords.PUBLIC_SCOPE.equals(fields.get(0));
+            UUID player = isPublic ? null : UUID.fromString(fields.get(1));
+            String owner = fields.get(9);
+
+            return HomeRecords.create(player, fields.get(2), fields.get(3),
+                    Double.parseDouble(fields.get(4)), Double.parseDouble(fields.get(5)),
+                    Double.parseDouble(fields.get(6)), Float.parseFloat(fields.get(7)),
+                    Float.parseFloat(fields.get(8)), owner.isEmpty() ? null : owner);
+        }
+
+        private static List<String> split(String line) {
+            List<String> fields = new ArrayList<>(COLUMNS);
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            if (quoted) {
+                throw new IllegalArgumentException("Unterminated quote");
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
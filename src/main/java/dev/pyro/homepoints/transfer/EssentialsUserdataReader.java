@@ -0,0 +1,176 @@
+package dev.pyro.homepoints.transfer;
+
+import dev.pyro.homepoints.HomePoints;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reads the homes out of an EssentialsX {@code userdata} folder, which holds one YAML file per
+ * player named after their UUID:
+ * <pre>
+ * homes:
+ *   base:
+ *     world: 5f8a...   (or the world name in older versions)
+ *     world-name: world
+ *     x: 120.5
+ *     y: 64.0
+ *     z: -33.2
+ *     yaw: 90.0
+ *     pitch: 0.0
+ * </pre>
+ * Only the {@code homes} section is read, with a small line-based parser rather than a YAML library.
+ * Worlds are mapped by their Bukkit folder name: {@code *_nether} to the Nether, {@code *_the_end}
+ * to the End and anything else to the Overworld. Files are read one at a time.
+ */
+final class EssentialsUserdataReader implements HomeRecordReader {
+    private static final String EXTENSION = ".yml";
+    private static final int MAX_LOGGED_SKIPS = 20;
+
+    private final DirectoryStream<Path> files;
+    private final Iterator<Path> iterator;
+    private final ArrayDeque<HomeRecord> pending = new ArrayDeque<>();
+    private long skipped;
+
+    EssentialsUserdataReader(Path directory) throws IOException {
+        this.files = Files.newDirectoryStream(directory, "*" + EXTENSION);
+        this.iterator = files.iterator();
+    }
+
+    @Override
+    public HomeRecord next() {
+        while (pending.isEmpty() && iterator.hasNext()) {
+            Path file = iterator.next();
+            try {
+                readFile(file);
+            } catch (IOException e) {
+                skip(file, e.toString());
+            }
+        }
+        return pending.poll();
+    }
+
+    private void readFile(Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        UUID player;
+        try {
+            player = UUID.fromString(fileName.substring(0, fileName.length() - EXTENSION.length()));
+        } catch (IllegalArgumentException e) {
+            skip(file, "not named after a player UUID");
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            boolean inHomes = false;
+            int homeIndent = -1;
+            String homeName = null;
+            Map<String, String> properties = new HashMap<>();
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.strip();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                int indent = line.indexOf(trimmed.charAt(0));
+
+                if (indent == 0) {
+                    if (inHomes) {
+                        break;
+                    }
+                    inHomes = trimmed.equals("homes:");
+                    continue;
+                }
+                if (!inHomes) {
+                    continue;
+                }
+
+                int colon = trimmed.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                String key = unquote(trimmed.substring(0, colon).strip());
+                String value = unquote(trimmed.substring(colon + 1).strip());
+
+                if (homeIndent < 0) {
+                    homeIndent = indent;
+                }
+                if (indent == homeIndent) {
+                    addHome(file, player, homeName, properties);
+                    homeName = key;
+                    properties.clear();
+                } else if (homeName != null) {
+                    properties.put(key, value);
+                }
+            }
+            addHome(file, player, homeName, properties);
+        }
+    }
+
+    private void addHome(Path file, UUID player, String homeName, Map<String, String> properties) {
+        if (homeName == null) {
+            return;
+        }
+        try {
+            String world = properties.getOrDefault("world-name", properties.get("world"));
+            pending.add(HomeRecords.create(player, homeName, dimensionOf(world),
+                    Double.parseDouble(properties.get("x")), Double.parseDouble(properties.get("y")),
+                    Double.parseDouble(properties.get("z")), parseFloat(properties.get("yaw")),
+                    parseFloat(properties.get("pitch")), null));
+        } catch (RuntimeException e) {
+            skip(file, "home '" + homeName + "': " + e.getMessage());
+        }
+    }
+
+    private static String dimensionOf(String world) {
+        if (world == null) {
+            throw new IllegalArgumentException("Missing world");
+        }
+        String name = world.toLowerCase(Locale.ROOT);
+        if (name.endsWith("_nether")) {
+            return "minecraft:the_nether";
+        }
+        if (name.endsWith("_the_end")) {
+            return "minecraft:the_end";
+        }
+        return "minecraft:overworld";
+    }
+
+    private static float parseFloat(String value) {
+        return value == null ? 0 : Float.parseFloat(value);
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && (value.charAt(0) == '\'' || value.charAt(0) == '"')
+                && value.charAt(value.length() - 1) == value.charAt(0)) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    private void skip(Path file, String reason) {
+        if (skipped++ < MAX_LOGGED_SKIPS) {
+            HomePoints.LOGGER.warn("Skipping {}: {}", file.getFileName(), reason);
+        }
+    }
+
+    @Override
+    public long getSkipped() {
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        files.close();
+    }
+}
@@ -0,0 +1,15 @@
+package dev.pyro.homepoints.transfer;
+
+import dev.pyro.homepoints.data.Home;
+
+import java.util.UUID;
+
+/**
+ * One home in an export or import file: a player's home, or a public home when {@code player} is {@code null}.
+ */
+public record HomeRecord(UUID player, Home home) {
+
+    public boolean isPublic() {
+        return player == null;
+    }
+}
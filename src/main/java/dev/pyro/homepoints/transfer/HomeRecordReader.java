@@ -0,0 +1,21 @@
+package dev.pyro.homepoints.transfer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads records one at a time. Records that can't be turned into a valid home are logged and
+ * skipped rather than failing the whole file.
+ */
+public interface HomeRecordReader extends Closeable {
+
+    /**
+     * Returns the next record, or {@code null} at the end of the input.
+     */
+    HomeRecord next() throws IOException;
+
+    /**
+     * Returns how many records were skipped so far.
+     */
+    long getSkipped();
+}
@@ -0,0 +1,9 @@
+package dev.pyro.homepoints.transfer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+public interface HomeRecordWriter extends Closeable {
+
+    void write(HomeRecord record) throws IOException;
+}
@@ -0,0 +1,53 @@
+package dev.pyro.homepoints.transfer;
+
+import dev.pyro.homepoints.data.DimensionKeys;
+import dev.pyro.homepoints.data.Home;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+final class HomeRecords {
+    static final String PUBLIC_SCOPE = "public";
+    static final String PLAYER_SCOPE = "player";
+
+    // Same rule as /sethome, so imported homes can be used from commands
+    private static final Pattern NAME = Pattern.compile("[a-zA-Z0-9_]+");
+
+    private HomeRecords() {
+    }
+
+    /**
+     * Builds a record from parsed fields.
+     *
+     * @throws IllegalArgumentException if the name, dimension or owner is invalid
+     */
+    static HomeRecord create(UUID player, String name, String dimension, double x, double y, double z,
+                             float yaw, float pitch, String owner) {
+        if (name == null || !NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid home name '" + name + "'");
+        }
+        if (dimension == null || dimension.isEmpty()) {
+            throw new IllegalArgumentException("Missing dimension for home '" + name + "'");
+        }
+
+        BlockPos position = new BlockPos((int) Math.floor(x), (int) Math.floor(y), (int) Math.floor(z));
+        if (owner == null && player == null) {
+            throw new IllegalArgumentException("Missing owner for public home '" + name + "'");
+        }
+        return new HomeRecord(player, new Home(name, position, DimensionKeys.of(dimension), yaw, pitch,
+                owner != null ? parseOwner(owner, name) : player.toString()));
+    }
+
+    /**
+     * Owners are compared against player UUIDs, so anything else, such as a player name, would leave
+     * a home nobody can update or remove.
+     */
+    private static String parseOwner(String owner, String name) {
+        try {
+            return UUID.fromString(owner).toString();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Owner '" + owner + "' of home '" + name + "' is not a UUID");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package dev.pyro.homepoints.transfer;
+
+import dev.pyro.homepoints.HomePoints;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * Base for formats with one record per line. Bad lines are skipped; only the first few are logged so
+ * a broken file of millions of lines doesn't flood the log.
+ */
+abstract class LineRecordReader implements HomeRecordReader {
+    private static final int MAX_LOGGED_SKIPS = 20;
+
+    private final BufferedReader reader;
+    private final String source;
+    private long lineNumber;
+    private long skipped;
+
+    LineRecordReader(BufferedReader reader, String source) {
+        this.reader = reader;
+        this.source = source;
+    }
+
+    /**
+     * Parses one non-blank line, or returns {@code null} if the line holds no record, like a header.
+     *
+     * @throws RuntimeException if the line is malformed
+     */
+    abstract HomeRecord parse(String line, long lineNumber);
+
+    @Override
+    public HomeRecord next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                HomeRecord record = parse(line, lineNumber);
+                if (record != null) {
+                    return record;
+                }
+            } catch (RuntimeException e) {
+                if (skipped++ < MAX_LOGGED_SKIPS) {
+                    HomePoints.LOGGER.warn("Skipping line {} of {}: {}", lineNumber, source, e.getMessage());
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public long getSkipped() {
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,92 @@
+package dev.pyro.homepoints.transfer;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dev.pyro.homepoints.data.Home;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Newline-delimited JSON, one object per home:
+ * <pre>{"scope":"player","player":"&lt;uuid&gt;","name":"base","dimension":"minecraft:overworld","x":1,"y":64,"z":-3,"yaw":90.0,"pitch":0.0,"owner":"&lt;uuid&gt;"}</pre>
+ * Public homes have {@code "scope":"public"} and no player.
+ */
+final class NdjsonRecords {
+
+    private NdjsonRecords() {
+    }
+
+    static final class Writer implements HomeRecordWriter {
+        private final BufferedWriter out;
+
+        Writer(BufferedWriter out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(HomeRecord record) throws IOException {
+            Home home = record.home();
+            JsonObject json = new JsonObject();
+            json.addProperty("scope", record.isPublic() ? HomeRecords.PUBLIC_SCOPE : HomeRecords.PLAYER_SCOPE);
+            if (!record.isPublic()) {
+                json.addProperty("player", record.player().toString());
+            }
+            json.addProperty("name", home.getName());
+            json.addProperty("dimension", home.getDimension().getValue().toString());
+            json.addProperty("x", home.getPosition().getX());
+            json.addProperty("y", home.getPosition().getY());
+            json.addProperty("z", home.getPosition().getZ());
+            json.addProperty("yaw", home.getYaw());
+            json.addProperty("pitch", home.getPitch());
+            json.addProperty("owner", home.getOwner());
+            out.write(json.toString());
+            out.newLine();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    static final class Reader extends LineRecordReader {
+
+        Reader(BufferedReader in, String source) {
+            super(in, source);
+        }
+
+        @Override
+        HomeRecord parse(String line, long lineNumber) {
+            JsonObject json = JsonParser.parseString(line).getAsJsonObject();
+            boolean isPublic = HomeRecords.PUBLIC_SCOPE.equals(string(json, "scope"));
+            UUID player = isPublic ? null : UUID.fromString(required(json, "player").getAsString());
+
+            return HomeRecords.create(player, string(json, "name"), string(json, "dimension"),
+                    required(json, "x").getAsDouble(), required(json, "y").getAsDouble(),
+                    required(json, "z").getAsDouble(), number(json, "yaw"), number(json, "pitch"),
+                    string(json, "owner"));
+        }
+
+        private static JsonElement required(JsonObject json, String key) {
+            JsonElement element = json.get(key);
+            if (element == null || element.isJsonNull()) {
+                throw new IllegalArgumentException("Missing '" + key + "'");
+            }
+            return element;
+        }
+
+        private static String string(JsonObject json, String key) {
+            JsonElement element = json.get(key);
+            return element == null || element.isJsonNull() ? null : element.getAsString();
+        }
+
+        private static float number(JsonObject json, String key) {
+            JsonElement element = json.get(key);
+            return element == null || element.isJsonNull() ? 0 : element.getAsFloat();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package dev.pyro.homepoints.transfer;
+
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.WorldSavePath;
+
+import java.nio.file.Path;
+
+/**
+ * Exports are written to and imports read from {@code <world>/homepoints/transfer}, so commands can
+ * never touch files outside of it.
+ */
+public final class TransferFiles {
+
+    private TransferFiles() {
+    }
+
+    public static Path directory(MinecraftServer server) {
+        return server.getSavePath(WorldSavePath.ROOT).resolve("homepoints").resolve("transfer");
+    }
+
+    /**
+     * Resolves a file name given in a command.
+     *
+     * @throws IllegalArgumentException if the name points outside the transfer directory
+     */
+    public static Path resolve(MinecraftServer server, String name) {
+        Path directory = directory(server).toAbsolutePath().normalize();
+        Path path = directory.resolve(name).normalize();
+        if (!path.startsWith(directory) || path.equals(directory)) {
+            throw new IllegalArgumentException("'" + name + "' is not a file in " + directory);
+        }
+        return path;
+    }
+}
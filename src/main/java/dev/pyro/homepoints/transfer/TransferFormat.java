@@ -0,0 +1,55 @@
+package dev.pyro.homepoints.transfer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * The file formats homes can be exported to and imported from.
+ */
+public enum TransferFormat {
+    NDJSON(true),
+    CSV(true),
+    ESSENTIALS(false);
+
+    private final boolean exportable;
+
+    TransferFormat(boolean exportable) {
+        this.exportable = exportable;
+    }
+
+    public String getKey() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    public boolean isExportable() {
+        return exportable;
+    }
+
+    /**
+     * Opens {@code path} for writing, replacing any existing file.
+     *
+     * @throws UnsupportedOperationException if homes can't be exported in this format
+     */
+    public HomeRecordWriter openWriter(Path path) throws IOException {
+        return switch (this) {
+            case NDJSON -> new NdjsonRecords.Writer(Files.newBufferedWriter(path, StandardCharsets.UTF_8));
+            case CSV -> new CsvRecords.Writer(Files.newBufferedWriter(path, StandardCharsets.UTF_8));
+            case ESSENTIALS -> throw new UnsupportedOperationException("Can't export homes as " + getKey());
+        };
+    }
+
+    /**
+     * Opens a file, or for {@link #ESSENTIALS} a {@code userdata} folder, for reading.
+     */
+    public HomeRecordReader openReader(Path path) throws IOException {
+        String source = path.getFileName().toString();
+        return switch (this) {
+            case NDJSON -> new NdjsonRecords.Reader(Files.newBufferedReader(path, StandardCharsets.UTF_8), source);
+            case CSV -> new CsvRecords.Reader(Files.newBufferedReader(path, StandardCharsets.UTF_8), source);
+            case ESSENTIALS -> new EssentialsUserdataReader(path);
+        };
+    }
+}
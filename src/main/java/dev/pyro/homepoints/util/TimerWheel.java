@@ -0,0 +1,171 @@
+package dev.pyro.homepoints.util;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timer wheel counted in server ticks. The first level has one bucket per tick; every
+ * level above it has buckets as wide as a whole turn of the level below. A timeout goes into the
+ * lowest level whose turn contains its deadline and is moved down a level each time the wheel
+ * reaches its bucket, so scheduling and cancelling are O(1) and advancing a tick only touches the
+ * buckets that are due. Deadlines beyond the top level wait in it and are placed again every turn.
+ */
+public final class TimerWheel<T> {
+    private static final int LEVELS = 4;
+
+    private final Timeout<T>[] buckets;
+    private final int shift;
+    private final int mask;
+    private long currentTick;
+    private int size;
+
+    public static final class Timeout<T> {
+        private final T value;
+        private final long deadline;
+        private int bucket = -1;
+        private Timeout<T> previous;
+        private Timeout<T> next;
+
+        private Timeout(T value, long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        public boolean isScheduled() {
+            return bucket >= 0;
+        }
+    }
+
+    /**
+     * @param bucketCount number of buckets per level, rounded up to a power of two
+     * @param startTick   the tick the wheel starts at
+     */
+    @SuppressWarnings("unchecked")
+    public TimerWheel(int bucketCount, long startTick) {
+        int length = Integer.highestOneBit(Math.max(bucketCount, 2) - 1) << 1;
+        this.buckets = (Timeout<T>[]) new Timeout[length * LEVELS];
+        this.shift = Integer.numberOfTrailingZeros(length);
+        this.mask = length - 1;
+        this.currentTick = startTick;
+    }
+
+    /**
+     * Schedules {@code value} to expire at {@code deadline}. Deadlines that already passed expire on the next tick.
+     */
+    public Timeout<T> schedule(T value, long deadline) {
+        Timeout<T> timeout = new Timeout<>(value, Math.max(deadline, currentTick + 1));
+        place(timeout);
+        size++;
+        return timeout;
+    }
+
+    public boolean cancel(Timeout<T> timeout) {
+        if (!timeout.isScheduled()) {
+            return false;
+        }
+        unlink(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * Moves the wheel forward to {@code tick}, handing every timeout whose deadline has been reached to
+     * {@code expired}. The timeout is already unscheduled when the consumer sees it. Meant to be called
+     * every tick; the wheel steps through skipped ticks one by one unless it is empty.
+     */
+    public void advanceTo(long tick, Consumer<T> expired) {
+        while (currentTick < tick) {
+            if (size == 0) {
+                currentTick = tick;
+                return;
+            }
+            currentTick++;
+
+            // Higher levels first, so timeouts they hand down to a bucket that is due now are
+            // handed down again or expired in this same step
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (shift * level)) - 1)) == 0) {
+                    int bucket = level * (mask + 1) + (int) ((currentTick >>> (shift * level)) & mask);
+                    Timeout<T> timeout = detach(bucket);
+                    while (timeout != null) {
+                        Timeout<T> next = timeout.next;
+                        timeout.next = null;
+                        place(timeout);
+                        timeout = next;
+                    }
+                }
+            }
+
+            // Everything in the first level's bucket is due. Taken one at a time, as the consumer may
+            // cancel other timeouts of the same bucket.
+            int due = (int) (currentTick & mask);
+            Timeout<T> timeout;
+            while ((timeout = buckets[due]) != null) {
+                unlink(timeout);
+                size--;
+                expired.accept(timeout.value);
+            }
+        }
+    }
+
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Links the timeout into the lowest level on which its deadline and the current tick are in the
+     * same turn, or into the top level if no level reaches that far.
+     */
+    private void place(Timeout<T> timeout) {
+        int level = 0;
+        while (level < LEVELS - 1 && (timeout.deadline >>> (shift * (level + 1))) != (currentTick >>> (shift * (level + 1)))) {
+            level++;
+        }
+        int bucket = level * (mask + 1) + (int) ((timeout.deadline >>> (shift * level)) & mask);
+        timeout.bucket = bucket;
+        timeout.previous = null;
+        timeout.next = buckets[bucket];
+        if (timeout.next != null) {
+            timeout.next.previous = timeout;
+        }
+        buckets[bucket] = timeout;
+    }
+
+    /**
+     * Empties a bucket and returns its chain, to be placed again right away.
+     */
+    private Timeout<T> detach(int bucket) {
+        Timeout<T> head = buckets[bucket];
+        buckets[bucket] = null;
+        for (Timeout<T> timeout = head; timeout != null; timeout = timeout.next) {
+            timeout.previous = null;
+            timeout.bucket = -1;
+        }
+        return head;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+    }
+}
@@ -0,0 +1,80 @@
+package dev.pyro.homepoints.util;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Token buckets for many players under one limit, keyed by entity id. Each bucket is a slot in
+ * primitive arrays found through a primitive map, so checking a request allocates nothing once the
+ * player has a slot. Buckets start full and refill continuously. Only used from the server thread.
+ */
+public final class TokenBuckets {
+    private static final int INITIAL_SLOTS = 64;
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final Int2IntOpenHashMap slots = new Int2IntOpenHashMap();
+    private double[] tokens = new double[INITIAL_SLOTS];
+    private long[] updatedNanos = new long[INITIAL_SLOTS];
+    private int[] freeSlots = new int[INITIAL_SLOTS];
+    private int freeCount;
+    private int used;
+
+    /**
+     * @param capacity  the most requests allowed in a burst
+     * @param perMinute how many requests are allowed per minute after that
+     */
+    public TokenBuckets(int capacity, int perMinute) {
+        this.capacity = capacity;
+        this.tokensPerNano = perMinute / 60e9;
+        slots.defaultReturnValue(-1);
+    }
+
+    /**
+     * Takes a token from the bucket of {@code key} if it has one left.
+     */
+    public boolean tryAcquire(int key, long nowNanos) {
+        int slot = slots.get(key);
+        if (slot < 0) {
+            slot = allocate(key);
+            tokens[slot] = capacity;
+        } else {
+            tokens[slot] = Math.min(capacity, tokens[slot] + (nowNanos - updatedNanos[slot]) * tokensPerNano);
+        }
+        updatedNanos[slot] = nowNanos;
+
+        if (tokens[slot] < 1) {
+            return false;
+        }
+        tokens[slot] -= 1;
+        return true;
+    }
+
+    public void remove(int key) {
+        int slot = slots.remove(key);
+        if (slot >= 0) {
+            freeSlots[freeCount++] = slot;
+        }
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    private int allocate(int key) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (used == tokens.length) {
+                tokens = Arrays.copyOf(tokens, used * 2);
+                updatedNanos = Arrays.copyOf(updatedNanos, used * 2);
+                freeSlots = Arrays.copyOf(freeSlots, used * 2);
+            }
+            slot = used++;
+        }
+        slots.put(key, slot);
+        return slot;
+    }
+}
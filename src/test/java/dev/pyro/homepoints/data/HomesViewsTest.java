@@ -0,0 +1,278 @@
+package dev.pyro.homepoints.data;
+
+import dev.pyro.homepoints.api.HomePointsApi;
+import dev.pyro.homepoints.api.HomesView;
+import net.minecraft.util.math.BlockPos;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exercises the views the way the API uses them: one thread standing in for the server thread
+ * makes every change, while any number of other threads read.
+ */
+class HomesViewsTest {
+    private static final int READERS = 4;
+    private static final int VERSIONS = 2_000;
+
+    private final UUID playerUUID = UUID.randomUUID();
+    private final PlayerHomesData data = new PlayerHomesData();
+    private final AtomicInteger loads = new AtomicInteger();
+    private ExecutorService serverThread;
+    private Thread server;
+    private HomesViews views;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        serverThread = Executors.newSingleThreadExecutor(runnable -> {
+            server = new Thread(runnable, "HomePoints-TestServer");
+            return server;
+        });
+        serverThread.submit(() -> writeVersion(1)).get();
+        views = new HomesViews(serverThread, () -> Thread.currentThread() == server, playerUUID -> {
+            loads.incrementAndGet();
+            return playerUUID.equals(this.playerUUID) ? data : null;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        HomesViews.close(views);
+        serverThread.shutdownNow();
+    }
+
+    @Test
+    void readersOnlySeeCompleteImmutableViews() throws Exception {
+        views.homesOf(playerUUID);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ConcurrentLinkedQueue<String> problems = new ConcurrentLinkedQueue<>();
+        CountDownLatch started = new CountDownLatch(READERS);
+
+        ExecutorService readers = Executors.newFixedThreadPool(READERS);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < READERS; i++) {
+            results.add(readers.submit(() -> {
+                started.countDown();
+                int lastVersion = 0;
+                int reads = 0;
+                while (writing.get() || reads == 0) {
+                    HomesView view = views.homesOf(playerUUID);
+                    int version = checkView(view, problems);
+                    if (version < lastVersion) {
+                        problems.add("Version went back from " + lastVersion + " to " + version);
+                    }
+                    lastVersion = version;
+                    reads++;
+                }
+                return reads;
+            }));
+        }
+
+        started.await();
+        Future<?> writer = serverThread.submit(() -> {
+            for (int version = 2; version <= VERSIONS; version++) {
+                writeVersion(version);
+            }
+        });
+        writer.get(30, TimeUnit.SECONDS);
+        writing.set(false);
+        for (Future<Integer> result : results) {
+            assertTrue(result.get(30, TimeUnit.SECONDS) > 0);
+        }
+        readers.shutdown();
+
+        assertTrue(problems.isEmpty(), () -> String.join("\n", problems));
+        assertEquals(VERSIONS, checkView(views.homesOf(playerUUID), problems));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void viewsCannotBeModified() {
+        HomesView view = views.homesOf(playerUUID);
+        assertThrows(UnsupportedOperationException.class, () -> view.homes().add(home("extra", 1)));
+        assertThrows(UnsupportedOperationException.class, () -> view.homes().remove(0));
+    }
+
+    @Test
+    void repeatedCallsReturnTheSameView() throws Exception {
+        HomesViews.publish(views);
+        HomesView first = HomePointsApi.homesOf(playerUUID);
+        assertSame(first, HomePointsApi.homesOf(playerUUID));
+        assertSame(first, views.homesOf(playerUUID));
+        assertSame(first.get("home0"), HomePointsApi.homeOf(playerUUID, "home0"));
+        assertEquals(1, loads.get());
+
+        serverThread.submit(() -> writeVersion(2)).get();
+        HomesView second = HomePointsApi.homesOf(playerUUID);
+        assertNotSame(first, second);
+        assertSame(second, HomePointsApi.homesOf(playerUUID));
+        assertEquals(1, loads.get());
+        // The old view still shows what it was built from
+        assertEquals(1, checkView(first, new ConcurrentLinkedQueue<>()));
+    }
+
+    @Test
+    void viewsAreBuiltOnTheServerThread() {
+        AtomicBoolean onServer = new AtomicBoolean();
+        HomesViews checked = new HomesViews(serverThread, () -> Thread.currentThread() == server, uuid -> {
+            onServer.set(Thread.currentThread() == server);
+            return data;
+        });
+        checked.homesOf(playerUUID);
+        assertTrue(onServer.get());
+    }
+
+    @Test
+    void changesToUnreadPlayersBuildNothing() throws Exception {
+        serverThread.submit(() -> writeVersion(2)).get();
+        assertEquals(0, loads.get());
+        assertEquals(2, checkView(views.homesOf(playerUUID), new ConcurrentLinkedQueue<>()));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void evictedPlayersAreLoadedAgain() throws Exception {
+        HomesView before = views.homesOf(playerUUID);
+        serverThread.submit(() -> views.playerEvicted(playerUUID)).get();
+
+        HomesView after = views.homesOf(playerUUID);
+        assertNotSame(before, after);
+        assertEquals(2, loads.get());
+        assertEquals(before.homes(), after.homes());
+    }
+
+    @Test
+    void playersWithoutHomesGetTheEmptyView() {
+        assertSame(HomesView.EMPTY, views.homesOf(UUID.randomUUID()));
+    }
+
+    @Test
+    void playersWithoutHomesAreOnlyLookedUpOnce() throws Exception {
+        UUID homeless = UUID.randomUUID();
+        assertSame(HomesView.EMPTY, views.homesOf(homeless));
+        assertEquals(1, loads.get());
+
+        // Reading them again must not wait for the server thread, even while it's stalled
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> stall = serverThread.submit(() -> {
+            release.await();
+            return null;
+        });
+        try {
+            for (int i = 0; i < 1_000; i++) {
+                assertSame(HomesView.EMPTY, views.homesOf(homeless));
+            }
+        } finally {
+            release.countDown();
+        }
+        stall.get(30, TimeUnit.SECONDS);
+        assertEquals(1, loads.get());
+
+        PlayerHomesData first = new PlayerHomesData();
+        first.setHome(home("first", 1));
+        serverThread.submit(() -> views.playerChanged(homeless, first)).get();
+        assertEquals(1, views.homesOf(homeless).size());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void closedViewsStopLoading() {
+        HomesViews.publish(views);
+        assertTrue(HomePointsApi.isAvailable());
+        HomesView built = HomePointsApi.homesOf(playerUUID);
+
+        HomesViews.close(views);
+        assertNull(HomesViews.current());
+        assertFalse(HomePointsApi.isAvailable());
+        assertSame(HomesView.EMPTY, HomePointsApi.homesOf(playerUUID));
+        assertTrue(HomePointsApi.publicHomes().isEmpty());
+
+        // Views handed out before stay usable, nothing new is loaded
+        assertSame(built, views.homesOf(playerUUID));
+        assertSame(HomesView.EMPTY, views.homesOf(UUID.randomUUID()));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void closingAnOldServerKeepsTheCurrentOne() {
+        HomesViews next = new HomesViews(serverThread, () -> Thread.currentThread() == server, uuid -> data);
+        HomesViews.publish(next);
+        HomesViews.close(views);
+        assertSame(next, HomesViews.current());
+        HomesViews.close(next);
+    }
+
+    @Test
+    void publicHomesFollowChanges() throws Exception {
+        serverThread.submit(() -> views.publicHomeChanged(home("spawn", 1))).get();
+        assertEquals(1, views.publicHomes().size());
+        assertEquals(1f, views.publicHome("spawn").getYaw());
+        assertThrows(UnsupportedOperationException.class, () -> views.publicHomes().clear());
+
+        serverThread.submit(() -> views.publicHomeDeleted("spawn")).get();
+        assertNull(views.publicHome("spawn"));
+        assertTrue(views.publicHomes().isEmpty());
+    }
+
+    /**
+     * Replaces the player's homes with {@code version % 7 + 1} homes that all carry the version as
+     * their yaw, then publishes them like the manager does. Runs on the server thread.
+     */
+    private void writeVersion(int version) {
+        for (Home home : List.copyOf(data.getHomes())) {
+            data.deleteHome(home.getName());
+        }
+        for (int i = 0; i < version % 7 + 1; i++) {
+            data.setHome(home("home" + i, version));
+        }
+        if (views != null) {
+            views.playerChanged(playerUUID, data);
+        }
+    }
+
+    /**
+     * Returns the version a view was built from, recording anything that shows it was built from
+     * homes that were only partly written.
+     */
+    private static int checkView(HomesView view, ConcurrentLinkedQueue<String> problems) {
+        List<Home> homes = view.homes();
+        int version = (int) homes.get(0).getYaw();
+        if (homes.size() != version % 7 + 1 || view.size() != homes.size()) {
+            problems.add("Version " + version + " has " + homes.size() + " homes");
+        }
+        for (Home home : homes) {
+            if (home.getYaw() != version) {
+                problems.add("Version " + version + " mixed with " + home.getYaw());
+            }
+            if (view.get(home.getName()) != home) {
+                problems.add("Version " + version + " lookup of " + home.getName() + " disagrees");
+            }
+        }
+        return version;
+    }
+
+    private Home home(String name, int version) {
+        return new Home(name, new BlockPos(version, 64, 0), DimensionKeys.of("minecraft:overworld"),
+                version, 0, playerUUID.toString());
+    }
+}